@@ -11,7 +11,18 @@ public enum ALGORITHM {
     SHA256("SHA256"),
     SHA384("SHA384"),
     SHA512("SHA512"),
-    MD5("MD5");
+    MD5("MD5"),
+    BLAKE2B256("BLAKE2B256"),
+    BLAKE3("BLAKE3"),
+
+    // Keyed, generated with a GUIDSecret: the GUIDs cannot be predicted without the secret key
+    HMACSHA256("HMACSHA256"),
+    HMACSHA512("HMACSHA512"),
+    BLAKE2B256MAC("BLAKE2B256MAC"),
+
+    // Non-cryptographic, for content that is not chosen by an adversary (e.g. dedup keys and cache IDs)
+    XXH128("XXH128"),
+    MURMUR3("MURMUR3");
 
     private final String text;
 
@@ -0,0 +1,183 @@
+package uk.ac.standrews.cs.guid;
+
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.util.concurrent.*;
+
+/**
+ * Generates GUIDs asynchronously.
+ *
+ * The number of sources being read at the same time and the number of threads hashing at the same time
+ * are bounded independently, so that thousands of pending requests neither exhaust file descriptors
+ * nor oversubscribe the CPUs.
+ *
+ * Cancelling a returned future stops the reading of its source at the next buffer boundary.
+ *
+ * By default the tasks run on virtual threads, when the JVM supports them, or on a cached pool of daemon threads.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class AsyncGUIDFactory implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_CONCURRENT_READS = 64;
+
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final Semaphore reads;
+    private final Semaphore hashing;
+
+    public AsyncGUIDFactory() {
+        this(DEFAULT_MAX_CONCURRENT_READS, Runtime.getRuntime().availableProcessors());
+    }
+
+    public AsyncGUIDFactory(int maxConcurrentReads, int maxConcurrentHashing) {
+        this(defaultExecutor(), maxConcurrentReads, maxConcurrentHashing, true);
+    }
+
+    /**
+     * @param executor the executor running the tasks. It is not shut down by {@link #close()}
+     * @param maxConcurrentReads the maximum number of sources read at the same time
+     * @param maxConcurrentHashing the maximum number of threads hashing at the same time
+     */
+    public AsyncGUIDFactory(Executor executor, int maxConcurrentReads, int maxConcurrentHashing) {
+        this(executor, maxConcurrentReads, maxConcurrentHashing, false);
+    }
+
+    private AsyncGUIDFactory(Executor executor, int maxConcurrentReads, int maxConcurrentHashing, boolean owned) {
+        if (executor == null || maxConcurrentReads < 1 || maxConcurrentHashing < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.executor = executor;
+        this.ownedExecutor = owned ? (ExecutorService) executor : null;
+        this.reads = new Semaphore(maxConcurrentReads, true);
+        this.hashing = new Semaphore(maxConcurrentHashing, true);
+    }
+
+    public CompletableFuture<IGUID> generateGUID(File file) {
+        return generateGUID(ALGORITHM.SHA256, file);
+    }
+
+    public CompletableFuture<IGUID> generateGUID(ALGORITHM algorithm, File file) {
+
+        return submit(future -> {
+            reads.acquire();
+            try (InputStream inputStream = new FileInputStream(file)) {
+                return hash(algorithm, inputStream, future);
+            } finally {
+                reads.release();
+            }
+        });
+    }
+
+    public CompletableFuture<IGUID> generateGUID(InputStream inputStream) {
+        return generateGUID(ALGORITHM.SHA256, inputStream);
+    }
+
+    /**
+     * The stream is read until its end, but it is not closed.
+     */
+    public CompletableFuture<IGUID> generateGUID(ALGORITHM algorithm, InputStream inputStream) {
+
+        return submit(future -> {
+            if (inputStream == null) throw new GUIDGenerationException();
+
+            reads.acquire();
+            try {
+                return hash(algorithm, inputStream, future);
+            } finally {
+                reads.release();
+            }
+        });
+    }
+
+    public CompletableFuture<IGUID> generateGUID(ALGORITHM algorithm, byte[] bytes) {
+
+        return submit(future -> {
+            hashing.acquire();
+            try {
+                return GUIDFactory.generateGUID(algorithm, bytes);
+            } finally {
+                hashing.release();
+            }
+        });
+    }
+
+    /**
+     * Shut down the default executor, if this factory created it.
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    private CompletableFuture<IGUID> submit(Task task) {
+
+        CompletableFuture<IGUID> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) return;
+
+                try {
+                    future.complete(task.run(future));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private IGUID hash(ALGORITHM algorithm, InputStream source, CompletableFuture<IGUID> future) throws GUIDGenerationException, IOException, InterruptedException {
+
+        MessageDigest digest = KeyFactory.messageDigest(algorithm);
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        int read;
+        while ((read = source.read(buffer)) != -1) {
+            if (future.isDone()) throw new CancellationException();
+
+            hashing.acquire();
+            try {
+                digest.update(buffer, 0, read);
+            } finally {
+                hashing.release();
+            }
+        }
+
+        return (KeyImpl) KeyFactory.recreateKey(algorithm, digest.digest());
+    }
+
+    private static ExecutorService defaultExecutor() {
+
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "guid-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private interface Task {
+
+        IGUID run(CompletableFuture<IGUID> future) throws Exception;
+    }
+}
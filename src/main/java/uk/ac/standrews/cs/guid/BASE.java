@@ -5,7 +5,10 @@ package uk.ac.standrews.cs.guid;
  */
 public enum BASE {
 
-    INVALID(0), CANON(1), HEX(16), BASE_64(64);
+    INVALID(0), CANON(1), HEX(16), BASE_32(32), BASE_58(58), BASE_64(64),
+
+    // URL-safe base 64, without padding. It has no radix of its own, so 65 tells it apart from BASE_64 in multihashes
+    BASE_64_URL(65);
 
     private final int val;
 
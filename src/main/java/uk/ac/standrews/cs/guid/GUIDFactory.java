@@ -1,17 +1,29 @@
 package uk.ac.standrews.cs.guid;
 
-import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
 import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
 import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.codecs.Base32Codec;
+import uk.ac.standrews.cs.guid.impl.codecs.Base58Codec;
+import uk.ac.standrews.cs.guid.impl.codecs.Base64Codec;
+import uk.ac.standrews.cs.guid.impl.codecs.HexCodec;
 import uk.ac.standrews.cs.guid.impl.keys.InvalidID;
 import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+import uk.ac.standrews.cs.guid.metrics.FileHashEvent;
+import uk.ac.standrews.cs.guid.metrics.GUIDMetrics;
+import uk.ac.standrews.cs.guid.metrics.RecreateGUIDFailureEvent;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.Base64;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static uk.ac.standrews.cs.guid.IKey.MULTI_HASH_DELIMITER;
 
@@ -41,6 +53,10 @@ public class GUIDFactory {
         return (KeyImpl) KeyFactory.generateKey(algorithm, string);
     }
 
+    public static IGUID generateGUID(ALGORITHM algorithm, CharSequence chars) throws GUIDGenerationException {
+        return (KeyImpl) KeyFactory.generateKey(algorithm, chars);
+    }
+
     public static IGUID generateGUID(InputStream inputStream) throws GUIDGenerationException {
         return (KeyImpl) KeyFactory.generateKey(inputStream);
     }
@@ -50,10 +66,34 @@ public class GUIDFactory {
     }
 
     public static IGUID generateGUID(File file) throws GUIDGenerationException, FileNotFoundException {
-        return (KeyImpl) KeyFactory.generateKey(new FileInputStream(file));
+        FileHashEvent event = FileHashEvent.start();
+        IGUID guid = (KeyImpl) KeyFactory.generateKey(new FileInputStream(file));
+        event.finish(file, ALGORITHM.SHA256);
+        return guid;
     }
 
+    /**
+     * Generate a GUID from the content of a file.
+     * With BLAKE3, files of up to 2GB are memory-mapped and their chunks hashed in parallel.
+     */
     public static IGUID generateGUID(ALGORITHM algorithm, File file) throws GUIDGenerationException, FileNotFoundException {
+        FileHashEvent event = FileHashEvent.start();
+        IGUID guid = hash(algorithm, file);
+        event.finish(file, algorithm);
+        return guid;
+    }
+
+    private static IGUID hash(ALGORITHM algorithm, File file) throws GUIDGenerationException, FileNotFoundException {
+        if (algorithm == ALGORITHM.BLAKE3 && file.isFile() && file.length() > 0 && file.length() <= Integer.MAX_VALUE) {
+            try (FileChannel channel = new FileInputStream(file).getChannel()) {
+                return (KeyImpl) KeyFactory.generateKey(algorithm, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new GUIDGenerationException("IOException while generating GUID");
+            }
+        }
+
         return (KeyImpl) KeyFactory.generateKey(algorithm, new FileInputStream(file));
     }
 
@@ -65,6 +105,136 @@ public class GUIDFactory {
         return (KeyImpl) KeyFactory.generateKey(algorithm, bytes);
     }
 
+    public static IGUID generateGUID(ByteBuffer buffer) throws GUIDGenerationException {
+        return (KeyImpl) KeyFactory.generateKey(buffer);
+    }
+
+    /**
+     * Generate a GUID from the bytes between the position and the limit of the buffer.
+     * The buffer is hashed in place and its position and limit are left untouched.
+     *
+     * @param algorithm the algorithm used to hash the buffer
+     * @param buffer a heap or direct buffer
+     * @return the GUID of the remaining bytes of the buffer
+     * @throws GUIDGenerationException if the buffer is null or has no remaining bytes
+     */
+    public static IGUID generateGUID(ALGORITHM algorithm, ByteBuffer buffer) throws GUIDGenerationException {
+        return (KeyImpl) KeyFactory.generateKey(algorithm, buffer);
+    }
+
+    /**
+     * Generate a keyed GUID, which cannot be predicted without the secret.
+     *
+     * @param secret the secret key and keyed algorithm
+     * @param bytes the bytes to hash
+     * @return the keyed GUID of the bytes
+     * @throws GUIDGenerationException if the secret is null or the bytes are null or empty
+     */
+    public static IGUID generateGUID(GUIDSecret secret, byte[] bytes) throws GUIDGenerationException {
+        return (KeyImpl) KeyFactory.generateKey(secret, bytes);
+    }
+
+    public static IGUID generateGUID(GUIDSecret secret, String string) throws GUIDGenerationException {
+        return (KeyImpl) KeyFactory.generateKey(secret, string);
+    }
+
+    public static IGUID generateGUID(GUIDSecret secret, InputStream inputStream) throws GUIDGenerationException {
+        return (KeyImpl) KeyFactory.generateKey(secret, inputStream);
+    }
+
+    public static IGUID generateGUID(GUIDSecret secret, ByteBuffer buffer) throws GUIDGenerationException {
+        return (KeyImpl) KeyFactory.generateKey(secret, buffer);
+    }
+
+    public static IGUID generateGUID(ReadableByteChannel channel) throws GUIDGenerationException {
+        return (KeyImpl) KeyFactory.generateKey(channel);
+    }
+
+    public static IGUID generateGUID(ALGORITHM algorithm, ReadableByteChannel channel) throws GUIDGenerationException {
+        return (KeyImpl) KeyFactory.generateKey(algorithm, channel);
+    }
+
+    /**
+     * Generate a GUID for each of the given messages.
+     *
+     * @param algorithm the algorithm used to hash the messages
+     * @param messages the messages to hash
+     * @return the GUIDs, in the same order as the messages
+     * @throws GUIDGenerationException if any of the messages is null or empty
+     */
+    public static IGUID[] generateGUIDs(ALGORITHM algorithm, byte[][] messages) throws GUIDGenerationException {
+
+        IKey[] keys = KeyFactory.generateKeys(algorithm, messages);
+
+        IGUID[] guids = new IGUID[keys.length];
+        for(int i = 0; i < keys.length; i++) {
+            guids[i] = (KeyImpl) keys[i];
+        }
+        return guids;
+    }
+
+    /**
+     * Generate a GUID for each of the given algorithms, reading the stream only once.
+     *
+     * @param algorithms the algorithms used to hash the stream
+     * @param inputStream the stream to hash
+     * @return a map from algorithm to GUID
+     * @throws GUIDGenerationException if the GUIDs could not be generated
+     */
+    public static Map<ALGORITHM, IGUID> generateGUIDs(Set<ALGORITHM> algorithms, InputStream inputStream) throws GUIDGenerationException {
+        return toGUIDs(KeyFactory.generateKeys(algorithms, inputStream));
+    }
+
+    /**
+     * Generate a GUID for each of the given algorithms, reading the stream only once.
+     * The digests are computed concurrently on the given executor.
+     *
+     * @param algorithms the algorithms used to hash the stream
+     * @param inputStream the stream to hash
+     * @param executor the executor running the digests
+     * @return a map from algorithm to GUID
+     * @throws GUIDGenerationException if the GUIDs could not be generated
+     */
+    public static Map<ALGORITHM, IGUID> generateGUIDs(Set<ALGORITHM> algorithms, InputStream inputStream, Executor executor) throws GUIDGenerationException {
+        return toGUIDs(KeyFactory.generateKeys(algorithms, inputStream, executor));
+    }
+
+    public static Map<ALGORITHM, IGUID> generateGUIDs(Set<ALGORITHM> algorithms, File file) throws GUIDGenerationException, FileNotFoundException {
+
+        FileHashEvent event = FileHashEvent.start();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            Map<ALGORITHM, IGUID> guids = generateGUIDs(algorithms, inputStream);
+            event.finish(file, algorithms);
+            return guids;
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new GUIDGenerationException("IOException while generating GUID");
+        }
+    }
+
+    public static Map<ALGORITHM, IGUID> generateGUIDs(Set<ALGORITHM> algorithms, File file, Executor executor) throws GUIDGenerationException, FileNotFoundException {
+
+        FileHashEvent event = FileHashEvent.start();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            Map<ALGORITHM, IGUID> guids = generateGUIDs(algorithms, inputStream, executor);
+            event.finish(file, algorithms);
+            return guids;
+        } catch (FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new GUIDGenerationException("IOException while generating GUID");
+        }
+    }
+
+    public static Map<ALGORITHM, IGUID> generateGUIDs(Set<ALGORITHM> algorithms, ReadableByteChannel channel) throws GUIDGenerationException {
+        return toGUIDs(KeyFactory.generateKeys(algorithms, channel));
+    }
+
+    public static Map<ALGORITHM, IGUID> generateGUIDs(Set<ALGORITHM> algorithms, ReadableByteChannel channel, Executor executor) throws GUIDGenerationException {
+        return toGUIDs(KeyFactory.generateKeys(algorithms, channel, executor));
+    }
+
     /**
      * Recreate a GUID from its multihash string format.
      *
@@ -74,10 +244,22 @@ public class GUIDFactory {
      */
     public static IGUID recreateGUID(String multihash) throws GUIDGenerationException {
 
+        try {
+            return parse(multihash);
+        } catch (GUIDGenerationException e) {
+            GUIDMetrics.recordParseFailure(multihash);
+            RecreateGUIDFailureEvent.record(multihash);
+            throw e;
+        }
+    }
+
+    private static IGUID parse(String multihash) throws GUIDGenerationException {
+
         if (multihash == null || multihash.isEmpty()) throw new GUIDGenerationException();
 
-        String[] multihashComponents = multihash.split(MULTI_HASH_DELIMITER);
-        if (multihashComponents.length != 3) throw new GUIDGenerationException();
+        // The key itself may contain the delimiter (e.g. in URL-safe base 64)
+        String[] multihashComponents = multihash.split(MULTI_HASH_DELIMITER, 3);
+        if (multihashComponents.length != 3 || multihashComponents[2].isEmpty()) throw new GUIDGenerationException();
 
         try {
             ALGORITHM algorithm = ALGORITHM.get(multihashComponents[0]);
@@ -86,28 +268,51 @@ public class GUIDFactory {
             switch (base) {
                 case HEX:
                 {
-                    byte[] input = Hex.decodeHex(multihashComponents[2].toCharArray());
+                    byte[] input = HexCodec.decode(multihashComponents[2]);
                     return (KeyImpl) KeyFactory.recreateKey(algorithm, input);
                 }
                 case CANON:
                 {
-                    String cleanedKey = multihashComponents[2].replace("-", "");
-                    byte[] input = Hex.decodeHex(cleanedKey.toCharArray());
+                    byte[] input = HexCodec.decodeIgnoringDashes(multihashComponents[2]);
+                    return (KeyImpl) KeyFactory.recreateKey(algorithm, input);
+                }
+                case BASE_32:
+                {
+                    byte[] input = Base32Codec.decode(multihashComponents[2]);
+                    return (KeyImpl) KeyFactory.recreateKey(algorithm, input);
+                }
+                case BASE_58:
+                {
+                    byte[] input = Base58Codec.decode(multihashComponents[2]);
                     return (KeyImpl) KeyFactory.recreateKey(algorithm, input);
                 }
                 case BASE_64:
                 {
-                    byte[] input = Base64.getDecoder().decode(multihashComponents[2]);
+                    byte[] input = Base64Codec.decode(multihashComponents[2]);
+                    return (KeyImpl) KeyFactory.recreateKey(algorithm, input);
+                }
+                case BASE_64_URL:
+                {
+                    byte[] input = Base64Codec.decodeUrlSafe(multihashComponents[2]);
                     return (KeyImpl) KeyFactory.recreateKey(algorithm, input);
                 }
                 case INVALID:
                 default:
                     return new InvalidID();
             }
-        } catch (DecoderException | IllegalArgumentException e) {
+        } catch (IllegalArgumentException e) {
             throw new GUIDGenerationException();
         }
 
     }
 
+    private static Map<ALGORITHM, IGUID> toGUIDs(Map<ALGORITHM, IKey> keys) {
+
+        Map<ALGORITHM, IGUID> guids = new EnumMap<>(ALGORITHM.class);
+        for(Map.Entry<ALGORITHM, IKey> entry:keys.entrySet()) {
+            guids.put(entry.getKey(), (KeyImpl) entry.getValue());
+        }
+        return guids;
+    }
+
 }
@@ -0,0 +1,60 @@
+package uk.ac.standrews.cs.guid;
+
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+
+import java.security.MessageDigest;
+
+/**
+ * A secret key for keyed GUIDs (HMACSHA256, HMACSHA512 or BLAKE2B256MAC), whose values cannot be predicted
+ * without the key. Pass it to {@link GUIDFactory#generateGUID(GUIDSecret, byte[])} and the other keyed methods.
+ *
+ * Initialising a Mac is far more expensive than hashing a short input, so each thread keeps its own initialised
+ * instance for the lifetime of the secret: create a secret once per key and share it between threads.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDSecret {
+
+    private final ALGORITHM algorithm;
+    private final ThreadLocal<MessageDigest> macs;
+
+    /**
+     * @param algorithm a keyed algorithm
+     * @param key the secret key. It is copied, so the caller can clear it
+     * @throws GUIDGenerationException if the algorithm is not keyed or the key is not valid for the algorithm
+     */
+    public GUIDSecret(ALGORITHM algorithm, byte[] key) throws GUIDGenerationException {
+        if (key == null || key.length == 0) {
+            throw new GUIDGenerationException("Empty secret key");
+        }
+
+        byte[] copy = key.clone();
+        KeyFactory.messageDigest(algorithm, copy);
+
+        this.algorithm = algorithm;
+        this.macs = ThreadLocal.withInitial(() -> mac(algorithm, copy));
+    }
+
+    public ALGORITHM algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the MAC of the calling thread, reset for a new input
+     */
+    public MessageDigest mac() {
+        MessageDigest mac = macs.get();
+        mac.reset();
+        return mac;
+    }
+
+    private static MessageDigest mac(ALGORITHM algorithm, byte[] key) {
+        try {
+            return KeyFactory.messageDigest(algorithm, key);
+        } catch (GUIDGenerationException e) {
+            // The algorithm and key were checked when the secret was created
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package uk.ac.standrews.cs.guid.exceptions;
+
+import uk.ac.standrews.cs.guid.IGUID;
+
+import java.io.IOException;
+
+/**
+ * Thrown while reading content that does not match the GUID it was expected to have.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDMismatchException extends IOException {
+
+    private final IGUID expected;
+    private final IGUID actual;
+
+    public GUIDMismatchException(IGUID expected, IGUID actual) {
+        super("Expected " + expected.toMultiHash() + " but content hashes to " + actual.toMultiHash());
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public GUIDMismatchException(String message) {
+        super(message);
+        this.expected = null;
+        this.actual = null;
+    }
+
+    /**
+     * @return the GUID the content was expected to have, or null if the mismatch is not about a GUID (e.g. a length)
+     */
+    public IGUID expected() {
+        return expected;
+    }
+
+    /**
+     * @return the GUID of the content actually read, or null if the mismatch is not about a GUID (e.g. a length)
+     */
+    public IGUID actual() {
+        return actual;
+    }
+}
@@ -5,15 +5,35 @@ package uk.ac.standrews.cs.guid.impl;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDSecret;
 import uk.ac.standrews.cs.guid.IKey;
 import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.digests.Blake2bDigest;
+import uk.ac.standrews.cs.guid.impl.digests.Blake3Digest;
+import uk.ac.standrews.cs.guid.impl.digests.MacDigest;
+import uk.ac.standrews.cs.guid.impl.digests.Murmur3Digest;
+import uk.ac.standrews.cs.guid.impl.digests.UTF8Digester;
+import uk.ac.standrews.cs.guid.impl.digests.XXH128Digest;
 import uk.ac.standrews.cs.guid.impl.keys.*;
+import uk.ac.standrews.cs.guid.metrics.EntropyWaitEvent;
+import uk.ac.standrews.cs.guid.metrics.GUIDMetrics;
+import uk.ac.standrews.cs.guid.metrics.GenerateGUIDEvent;
+import uk.ac.standrews.cs.guid.metrics.InputType;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
-import java.util.Random;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import static uk.ac.standrews.cs.guid.ALGORITHM.SHA256;
 
@@ -26,6 +46,9 @@ import static uk.ac.standrews.cs.guid.ALGORITHM.SHA256;
  */
 public class KeyFactory {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFER_SLOTS = 4;
+
     /**
      * Creates a key with an arbitrary value.
      *
@@ -46,11 +69,29 @@ public class KeyFactory {
      * @return a key with a value generated from s
      */
     public static IKey generateKey(ALGORITHM algorithm, String string) throws GUIDGenerationException {
-        if (string == null || string.isEmpty()) {
+        return generateKey(algorithm, (CharSequence) string);
+    }
+
+    /**
+     * Creates a key with a value generated from the UTF-8 encoding of the given characters.
+     * The characters are encoded and hashed incrementally, so no copy of the whole encoding is made.
+     *
+     * @param chars the characters from which to generate the key's value
+     * @return a key with a value generated from chars
+     */
+    public static IKey generateKey(ALGORITHM algorithm, CharSequence chars) throws GUIDGenerationException {
+        if (chars == null || chars.length() == 0) {
             throw new GUIDGenerationException();
         }
 
-        return generateKey(algorithm, string.getBytes(Charset.forName("UTF-8")));
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        MessageDigest digest = messageDigest(algorithm);
+        long bytes = UTF8Digester.update(digest, chars);
+        IKey key = recreateKey(algorithm, digest.digest());
+        GUIDMetrics.record(algorithm, InputType.CHARS, bytes, start);
+        event.finish(algorithm, InputType.CHARS, bytes);
+        return key;
     }
 
     public static IKey generateKey(InputStream source) throws GUIDGenerationException {
@@ -69,8 +110,14 @@ public class KeyFactory {
             throw new GUIDGenerationException();
         }
 
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        CountingInputStream counted = start == GUIDMetrics.DISABLED && !event.isEnabled() ? null : new CountingInputStream(source);
         try {
-            return hash(algorithm, source);
+            IKey key = hash(algorithm, counted == null ? source : counted);
+            GUIDMetrics.record(algorithm, InputType.STREAM, counted == null ? 0 : counted.count, start);
+            event.finish(algorithm, InputType.STREAM, counted == null ? 0 : counted.count);
+            return key;
         } catch (IOException e) {
             throw new GUIDGenerationException("IOException while generating GUID");
         }
@@ -85,7 +132,253 @@ public class KeyFactory {
             throw new GUIDGenerationException();
         }
 
-        return hash(algorithm, bytes);
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        IKey key = hash(algorithm, bytes);
+        GUIDMetrics.record(algorithm, InputType.BYTES, bytes.length, start);
+        event.finish(algorithm, InputType.BYTES, bytes.length);
+        return key;
+    }
+
+    public static IKey generateKey(ByteBuffer buffer) throws GUIDGenerationException {
+        return generateKey(SHA256, buffer);
+    }
+
+    /**
+     * Creates a key with a value generated from the remaining bytes of the given buffer.
+     * Direct buffers are hashed in place, and large buffers are hashed in parallel with BLAKE3.
+     * The position and limit of the buffer are not modified.
+     *
+     * @param buffer the buffer from which to generate the key's value
+     * @return a key with a value generated from the bytes between the buffer's position and limit
+     * @throws GUIDGenerationException if the buffer is null or has no remaining bytes
+     */
+    public static IKey generateKey(ALGORITHM algorithm, ByteBuffer buffer) throws GUIDGenerationException {
+        if (buffer == null || !buffer.hasRemaining()) {
+            throw new GUIDGenerationException();
+        }
+
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        IKey key;
+        if (algorithm == ALGORITHM.BLAKE3) {
+            key = recreateKey(algorithm, Blake3Digest.hash(buffer));
+        } else {
+            MessageDigest digest = messageDigest(algorithm);
+            digest.update(buffer.duplicate());
+            key = recreateKey(algorithm, digest.digest());
+        }
+        GUIDMetrics.record(algorithm, InputType.BUFFER, buffer.remaining(), start);
+        event.finish(algorithm, InputType.BUFFER, buffer.remaining());
+        return key;
+    }
+
+    /**
+     * Creates a keyed key with a value generated from the given bytes.
+     *
+     * @param secret the secret key and keyed algorithm
+     * @param bytes the bytes from which to generate the key's value
+     * @return a key with a value that cannot be predicted without the secret
+     * @throws GUIDGenerationException if the secret is null or the bytes are null or empty
+     */
+    public static IKey generateKey(GUIDSecret secret, byte[] bytes) throws GUIDGenerationException {
+        if (secret == null || bytes == null || bytes.length == 0) {
+            throw new GUIDGenerationException();
+        }
+
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        IKey key = recreateKey(secret.algorithm(), secret.mac().digest(bytes));
+        GUIDMetrics.record(secret.algorithm(), InputType.BYTES, bytes.length, start);
+        event.finish(secret.algorithm(), InputType.BYTES, bytes.length);
+        return key;
+    }
+
+    /**
+     * Creates a keyed key with a value generated from the UTF-8 encoding of the given characters.
+     */
+    public static IKey generateKey(GUIDSecret secret, CharSequence chars) throws GUIDGenerationException {
+        if (secret == null || chars == null || chars.length() == 0) {
+            throw new GUIDGenerationException();
+        }
+
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        MessageDigest mac = secret.mac();
+        long bytes = UTF8Digester.update(mac, chars);
+        IKey key = recreateKey(secret.algorithm(), mac.digest());
+        GUIDMetrics.record(secret.algorithm(), InputType.CHARS, bytes, start);
+        event.finish(secret.algorithm(), InputType.CHARS, bytes);
+        return key;
+    }
+
+    /**
+     * Creates a keyed key with a value generated from the given input stream.
+     */
+    public static IKey generateKey(GUIDSecret secret, InputStream source) throws GUIDGenerationException {
+        if (secret == null || source == null) {
+            throw new GUIDGenerationException();
+        }
+
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        CountingInputStream counted = start == GUIDMetrics.DISABLED && !event.isEnabled() ? null : new CountingInputStream(source);
+        try {
+            IKey key = recreateKey(secret.algorithm(), DigestUtils.updateDigest(secret.mac(), counted == null ? source : counted).digest());
+            GUIDMetrics.record(secret.algorithm(), InputType.STREAM, counted == null ? 0 : counted.count, start);
+            event.finish(secret.algorithm(), InputType.STREAM, counted == null ? 0 : counted.count);
+            return key;
+        } catch (IOException e) {
+            throw new GUIDGenerationException("IOException while generating GUID");
+        }
+    }
+
+    /**
+     * Creates a keyed key with a value generated from the remaining bytes of the given buffer.
+     * The position and limit of the buffer are not modified.
+     */
+    public static IKey generateKey(GUIDSecret secret, ByteBuffer buffer) throws GUIDGenerationException {
+        if (secret == null || buffer == null || !buffer.hasRemaining()) {
+            throw new GUIDGenerationException();
+        }
+
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        MessageDigest mac = secret.mac();
+        mac.update(buffer.duplicate());
+        IKey key = recreateKey(secret.algorithm(), mac.digest());
+        GUIDMetrics.record(secret.algorithm(), InputType.BUFFER, buffer.remaining(), start);
+        event.finish(secret.algorithm(), InputType.BUFFER, buffer.remaining());
+        return key;
+    }
+
+    public static IKey generateKey(ReadableByteChannel source) throws GUIDGenerationException {
+        return generateKey(SHA256, source);
+    }
+
+    /**
+     * Creates a key with a value generated from the bytes read from the given channel, until its end.
+     *
+     * @param source the channel from which to generate the key's value
+     * @return a key with a value generated from the channel's content
+     * @throws GUIDGenerationException if the channel is null or could not be read
+     */
+    public static IKey generateKey(ALGORITHM algorithm, ReadableByteChannel source) throws GUIDGenerationException {
+        if (source == null) {
+            throw new GUIDGenerationException();
+        }
+
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        MessageDigest digest = messageDigest(algorithm);
+        long bytes;
+        try {
+            bytes = update(new MessageDigest[]{digest}, buffer -> source.read(ByteBuffer.wrap(buffer)));
+        } catch (IOException e) {
+            throw new GUIDGenerationException("IOException while generating GUID");
+        }
+        IKey key = recreateKey(algorithm, digest.digest());
+        GUIDMetrics.record(algorithm, InputType.CHANNEL, bytes, start);
+        event.finish(algorithm, InputType.CHANNEL, bytes);
+        return key;
+    }
+
+    /**
+     * Creates a key for each of the given messages.
+     *
+     * The messages are hashed one by one with a single digest, which saves looking up a digest for each message.
+     * The keys are the same as the ones returned by {@link #generateKey(ALGORITHM, byte[])} for each message.
+     *
+     * @param algorithm the algorithm used to hash the messages
+     * @param messages the messages to hash
+     * @return the keys, in the same order as the messages
+     * @throws GUIDGenerationException if any of the messages is null or empty
+     */
+    public static IKey[] generateKeys(ALGORITHM algorithm, byte[][] messages) throws GUIDGenerationException {
+        if (messages == null) {
+            throw new GUIDGenerationException();
+        }
+
+        for(byte[] message:messages) {
+            if (message == null || message.length == 0) {
+                throw new GUIDGenerationException();
+            }
+        }
+
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        IKey[] keys = new IKey[messages.length];
+        switch(algorithm) {
+            case SHA1:
+            case SHA256:
+            case SHA384:
+            case SHA512:
+            case MD5:
+                // One digest for the whole batch: the JDK digests use CPU intrinsics, and looking them up costs more than hashing a short message
+                MessageDigest digest = messageDigest(algorithm);
+                for(int i = 0; i < messages.length; i++) {
+                    keys[i] = recreateKey(algorithm, digest.digest(messages[i]));
+                }
+                break;
+            default:
+                for(int i = 0; i < messages.length; i++) {
+                    keys[i] = hash(algorithm, messages[i]);
+                }
+        }
+
+        GUIDMetrics.record(algorithm, InputType.BATCH, length(messages), start);
+        event.finish(algorithm, InputType.BATCH, length(messages));
+        return keys;
+    }
+
+    /**
+     * Creates a key for each of the given algorithms, reading the input stream only once.
+     *
+     * @param algorithms the algorithms used to hash the stream
+     * @param source the stream to hash
+     * @return a map from algorithm to key
+     * @throws GUIDGenerationException if the stream could not be read or an algorithm is not supported
+     */
+    public static Map<ALGORITHM, IKey> generateKeys(Set<ALGORITHM> algorithms, InputStream source) throws GUIDGenerationException {
+        if (source == null) {
+            throw new GUIDGenerationException();
+        }
+
+        return hash(algorithms, source::read, null, InputType.STREAM);
+    }
+
+    /**
+     * Creates a key for each of the given algorithms, reading the input stream only once.
+     * Each algorithm consumes the read buffers on the given executor, while the stream is read on the calling thread.
+     *
+     * @param algorithms the algorithms used to hash the stream
+     * @param source the stream to hash
+     * @param executor the executor running the digests
+     * @return a map from algorithm to key
+     * @throws GUIDGenerationException if the stream could not be read or an algorithm is not supported
+     */
+    public static Map<ALGORITHM, IKey> generateKeys(Set<ALGORITHM> algorithms, InputStream source, Executor executor) throws GUIDGenerationException {
+        if (source == null || executor == null) {
+            throw new GUIDGenerationException();
+        }
+
+        return hash(algorithms, source::read, executor, InputType.STREAM);
+    }
+
+    public static Map<ALGORITHM, IKey> generateKeys(Set<ALGORITHM> algorithms, ReadableByteChannel source) throws GUIDGenerationException {
+        if (source == null) {
+            throw new GUIDGenerationException();
+        }
+
+        return hash(algorithms, buffer -> source.read(ByteBuffer.wrap(buffer)), null, InputType.CHANNEL);
+    }
+
+    public static Map<ALGORITHM, IKey> generateKeys(Set<ALGORITHM> algorithms, ReadableByteChannel source, Executor executor) throws GUIDGenerationException {
+        if (source == null || executor == null) {
+            throw new GUIDGenerationException();
+        }
+
+        return hash(algorithms, buffer -> source.read(ByteBuffer.wrap(buffer)), executor, InputType.CHANNEL);
     }
 
     public static IKey recreateKey(byte[] string) throws GUIDGenerationException {
@@ -105,14 +398,30 @@ public class KeyFactory {
                 return new SHA512Key(string);
             case MD5:
                 return new MD5Key(string);
+            case BLAKE2B256:
+                return new Blake2b256Key(string);
+            case BLAKE3:
+                return new Blake3Key(string);
+            case XXH128:
+                return new XXH128Key(string);
+            case MURMUR3:
+                return new Murmur3Key(string);
+            case HMACSHA256:
+                return new HmacSHA256Key(string);
+            case HMACSHA512:
+                return new HmacSHA512Key(string);
+            case BLAKE2B256MAC:
+                return new Blake2b256MacKey(string);
             default:
                 throw new GUIDGenerationException("Unsupported sha algorithm: " + algorithm);
         }
     }
 
     public static IKey generateRandomKey() throws GUIDGenerationException {
-        Random rand = new SecureRandom();
+        EntropyWaitEvent event = EntropyWaitEvent.start();
+        SecureRandom rand = new SecureRandom();
         long seed = rand.nextLong();
+        event.finish(rand.getAlgorithm());
         return generateKey(SHA256, String.valueOf(seed));
     }
 
@@ -122,8 +431,10 @@ public class KeyFactory {
      * @return a key with a pseudo-random value
      */
     public static IKey generateRandomKey(ALGORITHM algorithm) throws GUIDGenerationException {
-        Random rand = new SecureRandom();
+        EntropyWaitEvent event = EntropyWaitEvent.start();
+        SecureRandom rand = new SecureRandom();
         long seed = rand.nextLong();
+        event.finish(rand.getAlgorithm());
         return generateKey(algorithm, String.valueOf(seed));
     }
 
@@ -146,6 +457,18 @@ public class KeyFactory {
             case MD5:
                 bytes = DigestUtils.md5(source);
                 return new MD5Key(bytes);
+            case BLAKE2B256:
+                bytes = messageDigest(algorithm).digest(source);
+                return new Blake2b256Key(bytes);
+            case BLAKE3:
+                bytes = Blake3Digest.hash(ByteBuffer.wrap(source));
+                return new Blake3Key(bytes);
+            case XXH128:
+                bytes = XXH128Digest.hash(source, 0, source.length);
+                return new XXH128Key(bytes);
+            case MURMUR3:
+                bytes = Murmur3Digest.hash(source, 0, source.length);
+                return new Murmur3Key(bytes);
             default:
                 throw new GUIDGenerationException("Unsupported algorithm: " + algorithm);
         }
@@ -171,10 +494,214 @@ public class KeyFactory {
             case MD5:
                 bytes = DigestUtils.md5(source);
                 return new MD5Key(bytes);
+            case BLAKE2B256:
+            case BLAKE3:
+            case XXH128:
+            case MURMUR3:
+                bytes = DigestUtils.updateDigest(messageDigest(algorithm), source).digest();
+                return recreateKey(algorithm, bytes);
             default:
                 throw new GUIDGenerationException("Unsupported algorithm: " + algorithm);
         }
 
     }
 
+    private static Map<ALGORITHM, IKey> hash(Set<ALGORITHM> algorithms, Source source, Executor executor, InputType input) throws GUIDGenerationException {
+        if (algorithms == null || algorithms.isEmpty()) {
+            throw new GUIDGenerationException();
+        }
+
+        ALGORITHM[] keys = algorithms.toArray(new ALGORITHM[0]);
+        MessageDigest[] digests = new MessageDigest[keys.length];
+        for(int i = 0; i < keys.length; i++) {
+            digests[i] = messageDigest(keys[i]);
+        }
+
+        long start = GUIDMetrics.start();
+        GenerateGUIDEvent event = GenerateGUIDEvent.start();
+        long bytes;
+        try {
+            if (executor == null) {
+                bytes = update(digests, source);
+            } else {
+                bytes = update(digests, source, executor);
+            }
+        } catch (IOException e) {
+            throw new GUIDGenerationException("IOException while generating GUID");
+        } catch (CompletionException e) {
+            throw new GUIDGenerationException("Unable to hash the input: " + e.getCause());
+        }
+
+        Map<ALGORITHM, IKey> retval = new EnumMap<>(ALGORITHM.class);
+        for(int i = 0; i < keys.length; i++) {
+            retval.put(keys[i], recreateKey(keys[i], digests[i].digest()));
+            GUIDMetrics.record(keys[i], input, bytes, start);
+        }
+        event.finish(retval.keySet(), input, bytes);
+        return retval;
+    }
+
+    /**
+     * @return the number of bytes read
+     */
+    private static long update(MessageDigest[] digests, Source source) throws IOException {
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = source.read(buffer)) != -1) {
+            for(MessageDigest digest:digests) {
+                digest.update(buffer, 0, read);
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Read the source into a small ring of buffers. Each digest has its own chain of update tasks,
+     * so updates to the same digest stay in order, while different digests run concurrently.
+     * A buffer is only reused once all the digests are done with it.
+     *
+     * @return the number of bytes read
+     */
+    private static long update(MessageDigest[] digests, Source source, Executor executor) throws IOException {
+
+        byte[][] buffers = new byte[BUFFER_SLOTS][BUFFER_SIZE];
+        CompletableFuture<?>[][] inFlight = new CompletableFuture<?>[BUFFER_SLOTS][];
+
+        CompletableFuture<?>[] tails = new CompletableFuture<?>[digests.length];
+        Arrays.fill(tails, CompletableFuture.completedFuture(null));
+
+        long total = 0;
+        int slot = 0;
+        while (true) {
+            if (inFlight[slot] != null) {
+                CompletableFuture.allOf(inFlight[slot]).join();
+            }
+
+            byte[] buffer = buffers[slot];
+            int read = source.read(buffer);
+            if (read == -1) break;
+            if (read == 0) continue;
+
+            for(int i = 0; i < digests.length; i++) {
+                MessageDigest digest = digests[i];
+                tails[i] = tails[i].thenRunAsync(() -> digest.update(buffer, 0, read), executor);
+            }
+
+            inFlight[slot] = tails.clone();
+            slot = (slot + 1) % BUFFER_SLOTS;
+            total += read;
+        }
+
+        CompletableFuture.allOf(tails).join();
+        return total;
+    }
+
+    /**
+     * @param algorithm the algorithm of the digest
+     * @return a new message digest for the given algorithm
+     * @throws GUIDGenerationException if the algorithm is not supported
+     */
+    public static MessageDigest messageDigest(ALGORITHM algorithm) throws GUIDGenerationException {
+
+        switch(algorithm) {
+            case SHA1:
+                return DigestUtils.getSha1Digest();
+            case SHA256:
+                return DigestUtils.getSha256Digest();
+            case SHA384:
+                return DigestUtils.getSha384Digest();
+            case SHA512:
+                return DigestUtils.getSha512Digest();
+            case MD5:
+                return DigestUtils.getMd5Digest();
+            case BLAKE2B256:
+                return new Blake2bDigest(32);
+            case BLAKE3:
+                return new Blake3Digest();
+            case XXH128:
+                return new XXH128Digest();
+            case MURMUR3:
+                return new Murmur3Digest();
+            default:
+                throw new GUIDGenerationException("Unsupported algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * Keyed algorithms can only be used through a {@link GUIDSecret}, which caches the digests returned here.
+     *
+     * @param algorithm a keyed algorithm
+     * @param key the secret key
+     * @return a new message digest for the given algorithm, initialised with the key
+     * @throws GUIDGenerationException if the algorithm is not keyed or not supported, or the key is not valid for the algorithm
+     */
+    public static MessageDigest messageDigest(ALGORITHM algorithm, byte[] key) throws GUIDGenerationException {
+
+        try {
+            switch(algorithm) {
+                case HMACSHA256:
+                    return macDigest("HmacSHA256", key);
+                case HMACSHA512:
+                    return macDigest("HmacSHA512", key);
+                case BLAKE2B256MAC:
+                    return new Blake2bDigest(32, key);
+                default:
+                    throw new GUIDGenerationException("Unsupported keyed algorithm: " + algorithm);
+            }
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new GUIDGenerationException("Invalid secret key for " + algorithm + ": " + e.getMessage());
+        }
+    }
+
+    private static MessageDigest macDigest(String algorithm, byte[] key) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(key, algorithm));
+        return new MacDigest(mac);
+    }
+
+    private static long length(byte[][] messages) {
+        long length = 0;
+        for(byte[] message:messages) {
+            length += message.length;
+        }
+        return length;
+    }
+
+    /**
+     * Counts the bytes read, for the metrics.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) count += read;
+            return read;
+        }
+    }
+
+    private interface Source {
+
+        /**
+         * @return the number of bytes read into the buffer, or -1 at the end of the source
+         */
+        int read(byte[] buffer) throws IOException;
+    }
+
 }
@@ -0,0 +1,151 @@
+package uk.ac.standrews.cs.guid.impl.codecs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table-driven base 32 encoding and decoding (RFC 4648), in lowercase and without padding,
+ * as in the multibase "b" encoding.
+ *
+ * Each group of 5 bytes is read as a long and written as 8 characters. Decoding accepts either case and
+ * trailing padding, and, as the other codecs, checks the looked up values once per input.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Base32Codec {
+
+    private static final byte[] CHARACTERS = "abcdefghijklmnopqrstuvwxyz234567".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUES = new byte[128];
+    private static final char PADDING = '=';
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for(int i = 0; i < CHARACTERS.length; i++) {
+            VALUES[CHARACTERS[i]] = (byte) i;
+            VALUES[Character.toUpperCase(CHARACTERS[i])] = (byte) i;
+        }
+    }
+
+    private Base32Codec() {}
+
+    /**
+     * @return the lowercase base 32 encoding of the bytes, without padding
+     */
+    public static String encode(byte[] bytes) {
+        byte[] out = new byte[encodedLength(bytes.length)];
+        encode(bytes, 0, bytes.length, out, 0);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return the number of characters of the encoding of the given number of bytes
+     */
+    public static int encodedLength(int length) {
+        return (length * 8 + 4) / 5;
+    }
+
+    /**
+     * Write the base 32 encoding of the bytes, as ASCII, into an array.
+     *
+     * @param bytes the bytes to encode
+     * @param offset the offset of the first byte to encode
+     * @param length the number of bytes to encode
+     * @param out the array to write the {@link #encodedLength(int)} characters to
+     * @param outOffset the offset of the first character in the output array
+     * @return the number of characters written
+     */
+    public static int encode(byte[] bytes, int offset, int length, byte[] out, int outOffset) {
+
+        int j = outOffset;
+        int end = offset + length;
+        for(int i = offset; i < end; i += 5) {
+            int group = Math.min(5, end - i);
+
+            long bits = 0;
+            for(int k = 0; k < 5; k++) {
+                bits = (bits << 8) | (k < group ? bytes[i + k] & 0xff : 0);
+            }
+
+            int characters = (group * 8 + 4) / 5;
+            for(int k = 0; k < characters; k++) {
+                out[j++] = CHARACTERS[(int) (bits >>> (35 - 5 * k)) & 0x1f];
+            }
+        }
+        return j - outOffset;
+    }
+
+    /**
+     * @param base32 the base 32 encoding, in either case, with or without padding
+     * @return the bytes
+     * @throws IllegalArgumentException if the input is not valid base 32
+     */
+    public static byte[] decode(CharSequence base32) {
+        byte[] out = new byte[decodedLength(base32)];
+        decode(base32, out, 0);
+        return out;
+    }
+
+    /**
+     * Decode base 32 into an array.
+     *
+     * @param base32 the base 32 encoding, in either case, with or without padding
+     * @param out the array to write the {@link #decodedLength(CharSequence)} bytes to
+     * @param outOffset the offset of the first byte in the output array
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the input is not valid base 32
+     */
+    public static int decode(CharSequence base32, byte[] out, int outOffset) {
+
+        int length = unpaddedLength(base32);
+        int invalid = 0;
+        int j = outOffset;
+        for(int i = 0; i < length; i += 8) {
+            int group = Math.min(8, length - i);
+
+            long bits = 0;
+            for(int k = 0; k < 8; k++) {
+                int value = k < group ? value(base32.charAt(i + k)) : 0;
+                invalid |= value;
+                bits = (bits << 5) | (value & 0x1f);
+            }
+
+            int bytes = group * 5 / 8;
+            for(int k = 0; k < bytes; k++) {
+                out[j++] = (byte) (bits >>> (32 - 8 * k));
+            }
+        }
+
+        if (invalid < 0) {
+            throw new IllegalArgumentException("Not a base 32 string: " + base32);
+        }
+        return j - outOffset;
+    }
+
+    /**
+     * @return the number of bytes encoded by the given base 32 characters
+     * @throws IllegalArgumentException if the input does not have the length of a base 32 encoding
+     */
+    public static int decodedLength(CharSequence base32) {
+        return unpaddedLength(base32) * 5 / 8;
+    }
+
+    private static int unpaddedLength(CharSequence base32) {
+
+        int length = base32.length();
+        while (length > 0 && base32.charAt(length - 1) == PADDING) {
+            length--;
+        }
+
+        // 1, 3 and 6 characters in the last group do not encode a whole number of bytes
+        int last = length % 8;
+        if (last == 1 || last == 3 || last == 6 || base32.length() - length >= 8) {
+            throw new IllegalArgumentException("Invalid base 32 length: " + base32.length());
+        }
+        return length;
+    }
+
+    // -1 for anything that is not in the alphabet
+    private static int value(char c) {
+        return c < 128 ? VALUES[c] : -1;
+    }
+}
@@ -0,0 +1,169 @@
+package uk.ac.standrews.cs.guid.impl.codecs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Base 58 encoding and decoding with the Bitcoin alphabet, as in the multibase "z" encoding.
+ *
+ * Base 58 does not map groups of bytes to groups of characters, so the whole input is converted as one number.
+ * The conversion works in place in the output array, which must have room for {@link #maxEncodedLength(int)}
+ * characters or {@link #maxDecodedLength(int)} bytes; the actual length is returned. Leading zero bytes are
+ * encoded as leading '1' characters and vice versa.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Base58Codec {
+
+    private static final byte[] CHARACTERS = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VALUES = new byte[128];
+    private static final byte ZERO = CHARACTERS[0];
+
+    static {
+        Arrays.fill(VALUES, (byte) -1);
+        for(int i = 0; i < CHARACTERS.length; i++) {
+            VALUES[CHARACTERS[i]] = (byte) i;
+        }
+    }
+
+    private Base58Codec() {}
+
+    /**
+     * @return the base 58 encoding of the bytes
+     */
+    public static String encode(byte[] bytes) {
+        byte[] out = new byte[maxEncodedLength(bytes.length)];
+        int length = encode(bytes, 0, bytes.length, out, 0);
+        return new String(out, 0, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return an upper bound of the number of characters of the encoding of the given number of bytes (log(256) / log(58) ~ 1.37)
+     */
+    public static int maxEncodedLength(int length) {
+        return length * 138 / 100 + 1;
+    }
+
+    /**
+     * @return an upper bound of the number of bytes encoded by the given number of characters. Each leading '1' is
+     * a byte, so the bound is the number of characters, although the other characters take only ~0.732 bytes each
+     */
+    public static int maxDecodedLength(int length) {
+        return length;
+    }
+
+    /**
+     * Write the base 58 encoding of the bytes, as ASCII, into an array.
+     *
+     * @param bytes the bytes to encode
+     * @param offset the offset of the first byte to encode
+     * @param length the number of bytes to encode
+     * @param out the array to write the characters to, with room for {@link #maxEncodedLength(int)} characters
+     * @param outOffset the offset of the first character in the output array
+     * @return the number of characters written
+     */
+    public static int encode(byte[] bytes, int offset, int length, byte[] out, int outOffset) {
+
+        int zeros = 0;
+        while (zeros < length && bytes[offset + zeros] == 0) {
+            zeros++;
+        }
+
+        // Base 58 digits, most significant first, are accumulated in out[start, end)
+        int start = outOffset + zeros;
+        int end = start + (length - zeros) * 138 / 100 + 1;
+        Arrays.fill(out, start, end, (byte) 0);
+
+        int highest = end - 1;
+        for(int i = offset + zeros; i < offset + length; i++) {
+            int carry = bytes[i] & 0xff;
+            int k = end - 1;
+            for(; k >= start && (carry != 0 || k > highest); k--) {
+                carry += (out[k] & 0xff) << 8;
+                out[k] = (byte) (carry % 58);
+                carry /= 58;
+            }
+            highest = k;
+        }
+
+        int first = start;
+        while (first < end && out[first] == 0) {
+            first++;
+        }
+
+        Arrays.fill(out, outOffset, start, ZERO);
+        int j = start;
+        for(int k = first; k < end; k++) {
+            out[j++] = CHARACTERS[out[k]];
+        }
+        return j - outOffset;
+    }
+
+    /**
+     * @param base58 the base 58 encoding
+     * @return the bytes
+     * @throws IllegalArgumentException if the input is not valid base 58
+     */
+    public static byte[] decode(CharSequence base58) {
+        byte[] out = new byte[maxDecodedLength(base58.length())];
+        int length = decode(base58, out, 0);
+        return length == out.length ? out : Arrays.copyOf(out, length);
+    }
+
+    /**
+     * Decode base 58 into an array.
+     *
+     * @param base58 the base 58 encoding
+     * @param out the array to write the bytes to, with room for {@link #maxDecodedLength(int)} bytes
+     * @param outOffset the offset of the first byte in the output array
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the input is not valid base 58
+     */
+    public static int decode(CharSequence base58, byte[] out, int outOffset) {
+
+        int length = base58.length();
+        int zeros = 0;
+        while (zeros < length && base58.charAt(zeros) == ZERO) {
+            zeros++;
+        }
+        if (zeros == length) {
+            Arrays.fill(out, outOffset, outOffset + zeros, (byte) 0);
+            return zeros;
+        }
+
+        // Bytes, most significant first, are accumulated in out[start, end), at most length - zeros of them (log(58) / log(256) ~ 0.732)
+        int start = outOffset + zeros;
+        int end = start + (length - zeros) * 733 / 1000 + 1;
+        Arrays.fill(out, start, end, (byte) 0);
+
+        int highest = end - 1;
+        for(int i = zeros; i < length; i++) {
+            int carry = value(base58.charAt(i));
+            if (carry < 0) {
+                throw new IllegalArgumentException("Not a base 58 string: " + base58);
+            }
+
+            int k = end - 1;
+            for(; k >= start && (carry != 0 || k > highest); k--) {
+                carry += (out[k] & 0xff) * 58;
+                out[k] = (byte) carry;
+                carry >>>= 8;
+            }
+            highest = k;
+        }
+
+        int first = start;
+        while (first < end && out[first] == 0) {
+            first++;
+        }
+
+        Arrays.fill(out, outOffset, start, (byte) 0);
+        System.arraycopy(out, first, out, start, end - first);
+        return start + end - first - outOffset;
+    }
+
+    // -1 for anything that is not in the alphabet
+    private static int value(char c) {
+        return c < 128 ? VALUES[c] : -1;
+    }
+}
@@ -0,0 +1,245 @@
+package uk.ac.standrews.cs.guid.impl.codecs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table-driven base 64 encoding and decoding (RFC 4648).
+ *
+ * The standard alphabet is written with padding, and is compatible with {@link java.util.Base64#getEncoder()} and
+ * {@link java.util.Base64#getDecoder()}. The URL-safe alphabet (- and _ instead of + and /) is written without padding,
+ * so that it can be used as is in URLs, file names and database keys. Both decoders accept input with or without padding.
+ *
+ * Encoding looks up 12 bits at a time, two output characters at once, in a 4096-entry table.
+ * Decoding looks up each character in a 128-entry table where invalid characters are -1; the lookups are OR-ed
+ * together and checked once per input, so valid input takes no branch per character.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Base64Codec {
+
+    private static final byte PADDING = '=';
+
+    private static final Alphabet STANDARD = new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", true);
+    private static final Alphabet URL_SAFE = new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_", false);
+
+    private Base64Codec() {}
+
+    public static String encode(byte[] bytes) {
+        return STANDARD.encode(bytes);
+    }
+
+    /**
+     * @return the URL-safe encoding of the bytes, without padding
+     */
+    public static String encodeUrlSafe(byte[] bytes) {
+        return URL_SAFE.encode(bytes);
+    }
+
+    /**
+     * @return the number of characters of the standard encoding of the given number of bytes, padding included
+     */
+    public static int encodedLength(int length) {
+        return STANDARD.encodedLength(length);
+    }
+
+    /**
+     * @return the number of characters of the URL-safe encoding of the given number of bytes
+     */
+    public static int encodedLengthUrlSafe(int length) {
+        return URL_SAFE.encodedLength(length);
+    }
+
+    /**
+     * Write the standard base 64 encoding of the bytes, as ASCII, into an array.
+     *
+     * @param bytes the bytes to encode
+     * @param offset the offset of the first byte to encode
+     * @param length the number of bytes to encode
+     * @param out the array to write the {@link #encodedLength(int)} characters to
+     * @param outOffset the offset of the first character in the output array
+     */
+    public static void encode(byte[] bytes, int offset, int length, byte[] out, int outOffset) {
+        STANDARD.encode(bytes, offset, length, out, outOffset);
+    }
+
+    /**
+     * Write the URL-safe base 64 encoding of the bytes, as ASCII, into an array.
+     *
+     * @param out the array to write the {@link #encodedLengthUrlSafe(int)} characters to
+     * @see #encode(byte[], int, int, byte[], int)
+     */
+    public static void encodeUrlSafe(byte[] bytes, int offset, int length, byte[] out, int outOffset) {
+        URL_SAFE.encode(bytes, offset, length, out, outOffset);
+    }
+
+    /**
+     * @param base64 the standard base 64 encoding, with or without padding
+     * @return the bytes
+     * @throws IllegalArgumentException if the input is not valid base 64
+     */
+    public static byte[] decode(CharSequence base64) {
+        byte[] out = new byte[decodedLength(base64)];
+        STANDARD.decode(base64, out, 0);
+        return out;
+    }
+
+    /**
+     * @param base64 the URL-safe base 64 encoding, with or without padding
+     * @return the bytes
+     * @throws IllegalArgumentException if the input is not valid URL-safe base 64
+     */
+    public static byte[] decodeUrlSafe(CharSequence base64) {
+        byte[] out = new byte[decodedLength(base64)];
+        URL_SAFE.decode(base64, out, 0);
+        return out;
+    }
+
+    /**
+     * Decode standard base 64 into an array.
+     *
+     * @param base64 the standard base 64 encoding, with or without padding
+     * @param out the array to write the bytes to
+     * @param outOffset the offset of the first byte in the output array
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the input is not valid base 64
+     */
+    public static int decode(CharSequence base64, byte[] out, int outOffset) {
+        return STANDARD.decode(base64, out, outOffset);
+    }
+
+    /**
+     * Decode URL-safe base 64 into an array.
+     *
+     * @see #decode(CharSequence, byte[], int)
+     */
+    public static int decodeUrlSafe(CharSequence base64, byte[] out, int outOffset) {
+        return URL_SAFE.decode(base64, out, outOffset);
+    }
+
+    /**
+     * @return the number of bytes encoded by the given base 64 characters
+     * @throws IllegalArgumentException if the input does not have the length of a base 64 encoding
+     */
+    public static int decodedLength(CharSequence base64) {
+        int length = unpaddedLength(base64);
+        return length / 4 * 3 + Math.max(0, length % 4 - 1);
+    }
+
+    // The length without padding, after checking that the padding is consistent with it
+    private static int unpaddedLength(CharSequence base64) {
+
+        int length = base64.length();
+        while (length > 0 && base64.charAt(length - 1) == PADDING && base64.length() - length < 2) {
+            length--;
+        }
+        if (length % 4 == 1 || (length != base64.length() && base64.length() % 4 != 0)) {
+            throw new IllegalArgumentException("Invalid base 64 length: " + base64.length());
+        }
+        return length;
+    }
+
+    private static class Alphabet {
+
+        private final byte[] characters;
+        private final boolean padding;
+        private final short[] pairs = new short[4096];
+        private final byte[] values = new byte[128];
+
+        Alphabet(String characters, boolean padding) {
+            this.characters = characters.getBytes(StandardCharsets.US_ASCII);
+            this.padding = padding;
+
+            for(int i = 0; i < pairs.length; i++) {
+                pairs[i] = (short) ((this.characters[i >>> 6] << 8) | this.characters[i & 0x3f]);
+            }
+
+            Arrays.fill(values, (byte) -1);
+            for(int i = 0; i < this.characters.length; i++) {
+                values[this.characters[i]] = (byte) i;
+            }
+        }
+
+        String encode(byte[] bytes) {
+            byte[] out = new byte[encodedLength(bytes.length)];
+            encode(bytes, 0, bytes.length, out, 0);
+            return new String(out, StandardCharsets.ISO_8859_1);
+        }
+
+        int encodedLength(int length) {
+            return padding ? (length + 2) / 3 * 4 : length / 3 * 4 + (length % 3 == 0 ? 0 : length % 3 + 1);
+        }
+
+        void encode(byte[] bytes, int offset, int length, byte[] out, int outOffset) {
+
+            int end = offset + length / 3 * 3;
+            int i = offset;
+            for(; i < end; i += 3) {
+                int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+                short high = pairs[bits >>> 12];
+                short low = pairs[bits & 0xfff];
+                out[outOffset++] = (byte) (high >>> 8);
+                out[outOffset++] = (byte) high;
+                out[outOffset++] = (byte) (low >>> 8);
+                out[outOffset++] = (byte) low;
+            }
+
+            int remaining = offset + length - i;
+            if (remaining > 0) {
+                int bits = (bytes[i] & 0xff) << 16 | (remaining == 2 ? (bytes[i + 1] & 0xff) << 8 : 0);
+                out[outOffset++] = characters[bits >>> 18];
+                out[outOffset++] = characters[(bits >>> 12) & 0x3f];
+                if (remaining == 2) {
+                    out[outOffset++] = characters[(bits >>> 6) & 0x3f];
+                } else if (padding) {
+                    out[outOffset++] = PADDING;
+                }
+                if (padding) {
+                    out[outOffset] = PADDING;
+                }
+            }
+        }
+
+        int decode(CharSequence base64, byte[] out, int outOffset) {
+
+            int length = unpaddedLength(base64);
+            int invalid = 0;
+            int i = 0;
+            int j = outOffset;
+            for(int end = length / 4 * 4; i < end; i += 4) {
+                int a = value(base64.charAt(i));
+                int b = value(base64.charAt(i + 1));
+                int c = value(base64.charAt(i + 2));
+                int d = value(base64.charAt(i + 3));
+                invalid |= a | b | c | d;
+
+                int bits = a << 18 | b << 12 | c << 6 | d;
+                out[j++] = (byte) (bits >>> 16);
+                out[j++] = (byte) (bits >>> 8);
+                out[j++] = (byte) bits;
+            }
+
+            int remaining = length - i;
+            if (remaining > 0) {
+                int a = value(base64.charAt(i));
+                int b = value(base64.charAt(i + 1));
+                int c = remaining == 3 ? value(base64.charAt(i + 2)) : 0;
+                invalid |= a | b | c;
+
+                int bits = a << 18 | b << 12 | c << 6;
+                out[j++] = (byte) (bits >>> 16);
+                if (remaining == 3) out[j++] = (byte) (bits >>> 8);
+            }
+
+            if (invalid < 0) {
+                throw new IllegalArgumentException("Not a base 64 string: " + base64);
+            }
+            return j - outOffset;
+        }
+
+        // -1 for anything that is not in the alphabet
+        private int value(char c) {
+            return c < 128 ? values[c] : -1;
+        }
+    }
+}
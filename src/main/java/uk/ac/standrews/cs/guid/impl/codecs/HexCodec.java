@@ -0,0 +1,136 @@
+package uk.ac.standrews.cs.guid.impl.codecs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table-driven hex encoding and decoding of digests.
+ *
+ * Encoding looks up the two digits of a byte at once in a 512-entry table and builds the String from Latin-1 bytes,
+ * which compact strings keep as they are. Decoding looks up each digit in a 128-entry table where invalid
+ * digits are -1; the lookups are OR-ed together and checked once at the end, so valid input takes no branch per digit.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class HexCodec {
+
+    private static final byte[] LOWER_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] UPPER_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] LOWER_PAIRS = pairs(LOWER_DIGITS);
+    private static final byte[] UPPER_PAIRS = pairs(UPPER_DIGITS);
+    private static final byte[] NIBBLES = new byte[128];
+
+    static {
+        Arrays.fill(NIBBLES, (byte) -1);
+        for(int i = 0; i < 16; i++) {
+            NIBBLES[LOWER_DIGITS[i]] = (byte) i;
+            NIBBLES[UPPER_DIGITS[i]] = (byte) i;
+        }
+    }
+
+    private HexCodec() {}
+
+    /**
+     * @return the lowercase hex digits of the bytes
+     */
+    public static String encode(byte[] bytes) {
+        byte[] out = new byte[bytes.length * 2];
+        encode(bytes, 0, bytes.length, out, 0, LOWER_PAIRS);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return the uppercase hex digits of the bytes
+     */
+    public static String encodeUpperCase(byte[] bytes) {
+        byte[] out = new byte[bytes.length * 2];
+        encode(bytes, 0, bytes.length, out, 0, UPPER_PAIRS);
+        return new String(out, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Write the lowercase hex digits of the bytes, as ASCII, into an array.
+     *
+     * @param bytes the bytes to encode
+     * @param offset the offset of the first byte to encode
+     * @param length the number of bytes to encode
+     * @param out the array to write the 2 * length digits to
+     * @param outOffset the offset of the first digit in the output array
+     */
+    public static void encode(byte[] bytes, int offset, int length, byte[] out, int outOffset) {
+        encode(bytes, offset, length, out, outOffset, LOWER_PAIRS);
+    }
+
+    /**
+     * @param hex an even number of hex digits, in any case
+     * @return the bytes
+     * @throws IllegalArgumentException if the input has an odd length or a character that is not a hex digit
+     */
+    public static byte[] decode(CharSequence hex) {
+
+        int length = hex.length();
+        if ((length & 1) != 0) {
+            throw new IllegalArgumentException("Odd number of hex digits: " + length);
+        }
+
+        byte[] out = new byte[length / 2];
+        int invalid = 0;
+        for(int i = 0, j = 0; j < out.length; i += 2, j++) {
+            int high = nibble(hex.charAt(i));
+            int low = nibble(hex.charAt(i + 1));
+            invalid |= high | low;
+            out[j] = (byte) ((high << 4) | low);
+        }
+
+        if (invalid < 0) {
+            throw new IllegalArgumentException("Not a hex string: " + hex);
+        }
+        return out;
+    }
+
+    /**
+     * Decode hex digits ignoring dashes, as in the canonical representation of a GUID (e.g. 3A7BD3E2-360A-...).
+     *
+     * @throws IllegalArgumentException if the input is not made of hex digits and dashes, or has an odd number of digits
+     */
+    public static byte[] decodeIgnoringDashes(CharSequence hex) {
+
+        int digits = 0;
+        for(int i = 0; i < hex.length(); i++) {
+            if (hex.charAt(i) != '-') digits++;
+        }
+        if (digits == hex.length()) {
+            return decode(hex);
+        }
+
+        StringBuilder builder = new StringBuilder(digits);
+        for(int i = 0; i < hex.length(); i++) {
+            char c = hex.charAt(i);
+            if (c != '-') builder.append(c);
+        }
+        return decode(builder);
+    }
+
+    private static void encode(byte[] bytes, int offset, int length, byte[] out, int outOffset, byte[] pairs) {
+        for(int i = 0; i < length; i++) {
+            int pair = (bytes[offset + i] & 0xff) << 1;
+            out[outOffset++] = pairs[pair];
+            out[outOffset++] = pairs[pair + 1];
+        }
+    }
+
+    // -1 for anything that is not a hex digit
+    private static int nibble(char c) {
+        return c < 128 ? NIBBLES[c] : -1;
+    }
+
+    private static byte[] pairs(byte[] digits) {
+        byte[] pairs = new byte[512];
+        for(int i = 0; i < 256; i++) {
+            pairs[2 * i] = digits[i >>> 4];
+            pairs[2 * i + 1] = digits[i & 0xf];
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,350 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * BLAKE3, with a 256-bit output.
+ *
+ * BLAKE3 splits its input into 1 KiB chunks, hashes each chunk independently and combines the chaining values of
+ * the chunks in a binary tree whose left subtrees are always complete. As a MessageDigest, chunks are hashed one
+ * after the other and merged on a stack of chaining values as soon as a subtree is complete.
+ * {@link #hash(ByteBuffer, ForkJoinPool)} instead splits large inputs along the tree and hashes the subtrees
+ * in parallel, in place, which gives the same digest.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Blake3Digest extends MessageDigest {
+
+    public static final int DIGEST_LENGTH = 32;
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final int CHUNK_LENGTH = 1024;
+    private static final int BLOCK_LENGTH = 64;
+    private static final int MAX_DEPTH = 54; // 2^54 chunks of 2^10 bytes is the maximum input length
+
+    private static final int CHUNK_START = 1;
+    private static final int CHUNK_END = 2;
+    private static final int PARENT = 4;
+    private static final int ROOT = 8;
+
+    // Subtrees smaller than this are hashed by a single task
+    private static final int PARALLEL_THRESHOLD = 64 * CHUNK_LENGTH;
+
+    private static final int[] IV = {
+            0x6A09E667, 0xBB67AE85, 0x3C6EF372, 0xA54FF53A, 0x510E527F, 0x9B05688C, 0x1F83D9AB, 0x5BE0CD19
+    };
+
+    // The message words used by each round, i.e. the message permutation applied round times
+    private static final int[][] SCHEDULE = new int[7][16];
+
+    static {
+        int[] permutation = { 2, 6, 3, 10, 7, 0, 4, 13, 1, 11, 12, 5, 9, 14, 15, 8 };
+        for(int i = 0; i < 16; i++) {
+            SCHEDULE[0][i] = i;
+        }
+        for(int round = 1; round < SCHEDULE.length; round++) {
+            for(int i = 0; i < 16; i++) {
+                SCHEDULE[round][i] = SCHEDULE[round - 1][permutation[i]];
+            }
+        }
+    }
+
+    // State of the current chunk
+    private final int[] chainingValue = new int[8];
+    private final byte[] block = new byte[BLOCK_LENGTH];
+    private int blockLength;
+    private int blocksCompressed;
+    private long chunkCounter;
+
+    // Chaining values of the complete subtrees on the left of the current chunk
+    private final int[][] stack = new int[MAX_DEPTH][8];
+    private int stackSize;
+
+    private final int[] words = new int[16];
+
+    public Blake3Digest() {
+        super("BLAKE3");
+        engineReset();
+    }
+
+    /**
+     * Hash the bytes between the position and the limit of a buffer, splitting large inputs across the common pool.
+     * The position of the buffer is not modified.
+     */
+    public static byte[] hash(ByteBuffer buffer) {
+        return hash(buffer, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Hash the bytes between the position and the limit of a buffer, splitting large inputs across the given pool.
+     * Direct and mapped buffers are hashed in place. The position of the buffer is not modified.
+     *
+     * @param buffer the heap or direct buffer to hash
+     * @param pool the pool hashing the subtrees of large inputs
+     * @return the digest
+     */
+    public static byte[] hash(ByteBuffer buffer, ForkJoinPool pool) {
+
+        ByteBuffer input = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int length = input.remaining();
+
+        int[] root;
+        if (length <= CHUNK_LENGTH) {
+            int[] m = new int[16];
+            int[] cv = IV.clone();
+            int last = chunk(input, 0, length, 0, cv, m);
+            root = compress(cv, m, 0, length - last, CHUNK_END | (last == 0 ? CHUNK_START : 0) | ROOT);
+        } else if (length < PARALLEL_THRESHOLD) {
+            int left = leftLength(length);
+            root = parent(subtree(input, 0, left, 0), subtree(input, left, length - left, left / CHUNK_LENGTH), ROOT);
+        } else {
+            root = pool.invoke(new Subtree(input, 0, length, 0, ROOT));
+        }
+        return toBytes(root);
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        prepare();
+        block[blockLength++] = input;
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+
+        while (len > 0) {
+            prepare();
+
+            int copied = Math.min(len, BLOCK_LENGTH - blockLength);
+            System.arraycopy(input, offset, block, blockLength, copied);
+            blockLength += copied;
+            offset += copied;
+            len -= copied;
+        }
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+
+        // The last block of the current chunk, then the parents up the stack, the last one being the root
+        loadBlock();
+        int flags = CHUNK_END | startFlag();
+        int[] value;
+        if (stackSize == 0) {
+            value = compress(chainingValue, words, chunkCounter, blockLength, flags | ROOT);
+        } else {
+            value = compress(chainingValue, words, chunkCounter, blockLength, flags);
+            while (stackSize > 0) {
+                value = parent(stack[--stackSize], value, stackSize == 0 ? ROOT : 0);
+            }
+        }
+
+        engineReset();
+        return toBytes(value);
+    }
+
+    @Override
+    protected void engineReset() {
+        System.arraycopy(IV, 0, chainingValue, 0, 8);
+        blockLength = 0;
+        blocksCompressed = 0;
+        chunkCounter = 0;
+        stackSize = 0;
+    }
+
+    // Make room for more input in the block. The last block of a chunk is only compressed once more input follows
+    private void prepare() {
+        if (blockLength < BLOCK_LENGTH) return;
+
+        if (blocksCompressed == CHUNK_LENGTH / BLOCK_LENGTH - 1) {
+            loadBlock();
+            int[] value = compress(chainingValue, words, chunkCounter, BLOCK_LENGTH, CHUNK_END | startFlag());
+            addChunk(value);
+        } else {
+            loadBlock();
+            int[] value = compress(chainingValue, words, chunkCounter, BLOCK_LENGTH, startFlag());
+            System.arraycopy(value, 0, chainingValue, 0, 8);
+            blocksCompressed++;
+        }
+        blockLength = 0;
+    }
+
+    // Merge the chaining value of a complete chunk with the complete subtrees it closes, and start the next chunk
+    private void addChunk(int[] value) {
+
+        long chunks = ++chunkCounter;
+        while ((chunks & 1) == 0) {
+            value = parent(stack[--stackSize], value, 0);
+            chunks >>= 1;
+        }
+        System.arraycopy(value, 0, stack[stackSize++], 0, 8);
+
+        System.arraycopy(IV, 0, chainingValue, 0, 8);
+        blocksCompressed = 0;
+    }
+
+    private int startFlag() {
+        return blocksCompressed == 0 ? CHUNK_START : 0;
+    }
+
+    private void loadBlock() {
+        for(int i = blockLength; i < BLOCK_LENGTH; i++) {
+            block[i] = 0;
+        }
+        for(int i = 0; i < 16; i++) {
+            words[i] = (int) INT.get(block, 4 * i);
+        }
+    }
+
+    /**
+     * @return the length of the left subtree of an input: the largest power of 2 number of chunks
+     * that leaves at least one byte for the right subtree
+     */
+    private static int leftLength(int length) {
+        int chunks = (length - 1) / CHUNK_LENGTH;
+        return Integer.highestOneBit(chunks) * CHUNK_LENGTH;
+    }
+
+    /**
+     * @return the chaining value of a subtree that is not the root
+     */
+    private static int[] subtree(ByteBuffer input, int offset, int length, long counter) {
+
+        if (length <= CHUNK_LENGTH) {
+            int[] m = new int[16];
+            int[] cv = IV.clone();
+            int last = chunk(input, offset, length, counter, cv, m);
+            return compress(cv, m, counter, length - last, CHUNK_END | (last == 0 ? CHUNK_START : 0));
+        }
+
+        int left = leftLength(length);
+        return parent(subtree(input, offset, left, counter),
+                subtree(input, offset + left, length - left, counter + left / CHUNK_LENGTH), 0);
+    }
+
+    /**
+     * Compress all the blocks of a chunk but the last one, which is loaded into m.
+     *
+     * @param cv the chaining value, updated in place
+     * @return the offset of the last block in the chunk
+     */
+    private static int chunk(ByteBuffer input, int offset, int length, long counter, int[] cv, int[] m) {
+
+        int last = length == 0 ? 0 : (length - 1) / BLOCK_LENGTH * BLOCK_LENGTH;
+        for(int block = 0; block < last; block += BLOCK_LENGTH) {
+            for(int i = 0; i < 16; i++) {
+                m[i] = input.getInt(offset + block + 4 * i);
+            }
+            int[] value = compress(cv, m, counter, BLOCK_LENGTH, block == 0 ? CHUNK_START : 0);
+            System.arraycopy(value, 0, cv, 0, 8);
+        }
+
+        int remaining = length - last;
+        for(int i = 0; i < 16; i++) {
+            int start = offset + last + 4 * i;
+            if (4 * i + 4 <= remaining) {
+                m[i] = input.getInt(start);
+            } else {
+                int word = 0;
+                for(int j = 4 * i; j < remaining && j < 4 * i + 4; j++) {
+                    word |= (input.get(offset + last + j) & 0xff) << (8 * (j - 4 * i));
+                }
+                m[i] = word;
+            }
+        }
+        return last;
+    }
+
+    private static int[] parent(int[] left, int[] right, int flags) {
+        int[] m = new int[16];
+        System.arraycopy(left, 0, m, 0, 8);
+        System.arraycopy(right, 0, m, 8, 8);
+        return compress(IV, m, 0, BLOCK_LENGTH, PARENT | flags);
+    }
+
+    /**
+     * @return the first 8 words of the output of the compression function, i.e. the new chaining value
+     */
+    private static int[] compress(int[] cv, int[] m, long counter, int blockLength, int flags) {
+
+        int v0 = cv[0], v1 = cv[1], v2 = cv[2], v3 = cv[3], v4 = cv[4], v5 = cv[5], v6 = cv[6], v7 = cv[7];
+        int v8 = IV[0], v9 = IV[1], v10 = IV[2], v11 = IV[3];
+        int v12 = (int) counter, v13 = (int) (counter >>> 32), v14 = blockLength, v15 = flags;
+
+        for(int[] s:SCHEDULE) {
+            v0 += v4 + m[s[0]]; v12 = Integer.rotateRight(v12 ^ v0, 16); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 12);
+            v0 += v4 + m[s[1]]; v12 = Integer.rotateRight(v12 ^ v0, 8); v8 += v12; v4 = Integer.rotateRight(v4 ^ v8, 7);
+            v1 += v5 + m[s[2]]; v13 = Integer.rotateRight(v13 ^ v1, 16); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 12);
+            v1 += v5 + m[s[3]]; v13 = Integer.rotateRight(v13 ^ v1, 8); v9 += v13; v5 = Integer.rotateRight(v5 ^ v9, 7);
+            v2 += v6 + m[s[4]]; v14 = Integer.rotateRight(v14 ^ v2, 16); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 12);
+            v2 += v6 + m[s[5]]; v14 = Integer.rotateRight(v14 ^ v2, 8); v10 += v14; v6 = Integer.rotateRight(v6 ^ v10, 7);
+            v3 += v7 + m[s[6]]; v15 = Integer.rotateRight(v15 ^ v3, 16); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 12);
+            v3 += v7 + m[s[7]]; v15 = Integer.rotateRight(v15 ^ v3, 8); v11 += v15; v7 = Integer.rotateRight(v7 ^ v11, 7);
+            v0 += v5 + m[s[8]]; v15 = Integer.rotateRight(v15 ^ v0, 16); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 12);
+            v0 += v5 + m[s[9]]; v15 = Integer.rotateRight(v15 ^ v0, 8); v10 += v15; v5 = Integer.rotateRight(v5 ^ v10, 7);
+            v1 += v6 + m[s[10]]; v12 = Integer.rotateRight(v12 ^ v1, 16); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 12);
+            v1 += v6 + m[s[11]]; v12 = Integer.rotateRight(v12 ^ v1, 8); v11 += v12; v6 = Integer.rotateRight(v6 ^ v11, 7);
+            v2 += v7 + m[s[12]]; v13 = Integer.rotateRight(v13 ^ v2, 16); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 12);
+            v2 += v7 + m[s[13]]; v13 = Integer.rotateRight(v13 ^ v2, 8); v8 += v13; v7 = Integer.rotateRight(v7 ^ v8, 7);
+            v3 += v4 + m[s[14]]; v14 = Integer.rotateRight(v14 ^ v3, 16); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 12);
+            v3 += v4 + m[s[15]]; v14 = Integer.rotateRight(v14 ^ v3, 8); v9 += v14; v4 = Integer.rotateRight(v4 ^ v9, 7);
+        }
+
+        return new int[] { v0 ^ v8, v1 ^ v9, v2 ^ v10, v3 ^ v11, v4 ^ v12, v5 ^ v13, v6 ^ v14, v7 ^ v15 };
+    }
+
+    private static byte[] toBytes(int[] value) {
+        byte[] out = new byte[DIGEST_LENGTH];
+        for(int i = 0; i < 8; i++) {
+            INT.set(out, 4 * i, value[i]);
+        }
+        return out;
+    }
+
+    private static class Subtree extends RecursiveTask<int[]> {
+
+        private final ByteBuffer input;
+        private final int offset;
+        private final int length;
+        private final long counter;
+        private final int flags;
+
+        /**
+         * @param flags ROOT for the whole input, which is larger than a chunk, or 0 for a subtree
+         */
+        Subtree(ByteBuffer input, int offset, int length, long counter, int flags) {
+            this.input = input;
+            this.offset = offset;
+            this.length = length;
+            this.counter = counter;
+            this.flags = flags;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (flags == 0 && length < PARALLEL_THRESHOLD) {
+                return subtree(input, offset, length, counter);
+            }
+
+            int left = leftLength(length);
+            Subtree leftTask = new Subtree(input, offset, left, counter, 0);
+            leftTask.fork();
+            int[] rightValue = new Subtree(input, offset + left, length - left, counter + left / CHUNK_LENGTH, 0).compute();
+            return parent(leftTask.join(), rightValue, flags);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import javax.crypto.Mac;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * A {@link Mac} seen as a {@link MessageDigest}, so that keyed algorithms can hash the same inputs as the unkeyed ones.
+ * The Mac must be initialised with its key, and is reset after each digest like any other MessageDigest.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class MacDigest extends MessageDigest {
+
+    private final Mac mac;
+
+    public MacDigest(Mac mac) {
+        super(mac.getAlgorithm());
+        this.mac = mac;
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return mac.getMacLength();
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        mac.update(input);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        mac.update(input, offset, len);
+    }
+
+    @Override
+    protected void engineUpdate(ByteBuffer input) {
+        mac.update(input);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        return mac.doFinal();
+    }
+
+    @Override
+    protected void engineReset() {
+        mac.reset();
+    }
+}
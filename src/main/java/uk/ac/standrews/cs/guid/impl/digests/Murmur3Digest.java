@@ -0,0 +1,179 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * MurmurHash3 x64 128-bit, with seed 0.
+ *
+ * This is a fast non-cryptographic hash: it spreads keys well, but collisions can be built on purpose,
+ * so it must only be used for content that is not chosen by an adversary (e.g. dedup keys or cache IDs).
+ * The digest is h1 followed by h2, both little-endian, as written by the reference implementation
+ * (and by Guava's murmur3_128) on little-endian machines.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Murmur3Digest extends MessageDigest {
+
+    public static final int DIGEST_LENGTH = 16;
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final int BLOCK_SIZE = 16;
+
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+    private final long[] state = new long[2];
+    private int buffered;
+    private long length;
+
+    public Murmur3Digest() {
+        super("MURMUR3");
+    }
+
+    /**
+     * @return the digest of length bytes of the array, starting at offset
+     */
+    public static byte[] hash(byte[] input, int offset, int length) {
+        return hash(input, offset, length, 0);
+    }
+
+    /**
+     * @return the digest of length bytes of the array, starting at offset, with the given seed
+     */
+    public static byte[] hash(byte[] input, int offset, int length, long seed) {
+
+        long[] state = { seed, seed };
+        int end = offset + length / BLOCK_SIZE * BLOCK_SIZE;
+        for(int i = offset; i < end; i += BLOCK_SIZE) {
+            block(state, input, i);
+        }
+        return finish(state, input, end, length % BLOCK_SIZE, length);
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        buffer[buffered++] = input;
+        length++;
+        if (buffered == BLOCK_SIZE) {
+            block(state, buffer, 0);
+            buffered = 0;
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+
+        length += len;
+        if (buffered > 0) {
+            int copied = Math.min(len, BLOCK_SIZE - buffered);
+            System.arraycopy(input, offset, buffer, buffered, copied);
+            buffered += copied;
+            offset += copied;
+            len -= copied;
+
+            if (buffered < BLOCK_SIZE) return;
+            block(state, buffer, 0);
+            buffered = 0;
+        }
+
+        int end = offset + len / BLOCK_SIZE * BLOCK_SIZE;
+        for(; offset < end; offset += BLOCK_SIZE) {
+            block(state, input, offset);
+        }
+
+        buffered = len % BLOCK_SIZE;
+        System.arraycopy(input, offset, buffer, 0, buffered);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        byte[] out = finish(state, buffer, 0, buffered, length);
+        engineReset();
+        return out;
+    }
+
+    @Override
+    protected void engineReset() {
+        state[0] = 0;
+        state[1] = 0;
+        buffered = 0;
+        length = 0;
+    }
+
+    private static void block(long[] state, byte[] input, int offset) {
+
+        long h1 = state[0];
+        long h2 = state[1];
+        long k1 = (long) LONG.get(input, offset);
+        long k2 = (long) LONG.get(input, offset + 8);
+
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        h2 = h2 * 5 + 0x38495ab5;
+
+        state[0] = h1;
+        state[1] = h2;
+    }
+
+    private static byte[] finish(long[] state, byte[] tail, int offset, int remaining, long length) {
+
+        long h1 = state[0];
+        long h2 = state[1];
+
+        long k1 = 0;
+        long k2 = 0;
+        for(int i = remaining - 1; i >= 8; i--) {
+            k2 = (k2 << 8) | (tail[offset + i] & 0xff);
+        }
+        for(int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+            k1 = (k1 << 8) | (tail[offset + i] & 0xff);
+        }
+        if (remaining > 8) h2 ^= mixK2(k2);
+        if (remaining > 0) h1 ^= mixK1(k1);
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        byte[] out = new byte[DIGEST_LENGTH];
+        LONG.set(out, 0, h1);
+        LONG.set(out, 8, h2);
+        return out;
+    }
+
+    private static long mixK1(long k1) {
+        return Long.rotateLeft(k1 * C1, 31) * C2;
+    }
+
+    private static long mixK2(long k2) {
+        return Long.rotateLeft(k2 * C2, 33) * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        return k ^ (k >>> 33);
+    }
+}
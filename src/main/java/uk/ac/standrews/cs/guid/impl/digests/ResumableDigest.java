@@ -0,0 +1,224 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A SHA-1 or SHA-256 digest whose intermediate state can be saved to bytes and restored later, possibly in
+ * another process, to carry on hashing a message that grows by appending (e.g. a log file).
+ *
+ * The saved state holds the chaining value, the number of bytes hashed so far and the bytes of the incomplete block.
+ * It is versioned and carries a checksum, so a corrupted state is rejected rather than giving a wrong digest.
+ * Digests are identical to the ones of {@link java.security.MessageDigest} for the same algorithm.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public abstract class ResumableDigest extends MessageDigest {
+
+    private static final long MAGIC = 0x4755494453544154L; // GUIDSTAT
+    private static final int VERSION = 1;
+    private static final int BLOCK_SIZE = 64;
+
+    private final ALGORITHM algorithm;
+    private final byte[] buffer = new byte[BLOCK_SIZE];
+    final int[] state;
+    private int buffered;
+    private long length;
+
+    ResumableDigest(ALGORITHM algorithm, int words) {
+        super(algorithm.toString());
+        this.algorithm = algorithm;
+        this.state = new int[words];
+        engineReset();
+    }
+
+    /**
+     * @param algorithm SHA1 or SHA256
+     * @return a new digest for the algorithm
+     * @throws IllegalArgumentException if the algorithm is not supported
+     */
+    public static ResumableDigest getInstance(ALGORITHM algorithm) {
+
+        switch(algorithm) {
+            case SHA1:
+                return new ResumableSHA1();
+            case SHA256:
+                return new ResumableSHA256();
+            default:
+                throw new IllegalArgumentException("Unsupported resumable algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * @param saved a state returned by {@link #saveState()}
+     * @return a digest in the saved state
+     * @throws IllegalArgumentException if the state is not valid
+     */
+    public static ResumableDigest restore(byte[] saved) {
+
+        try {
+            ByteBuffer in = ByteBuffer.wrap(saved);
+            CRC32 crc = new CRC32();
+            crc.update(saved, 0, saved.length - 4);
+            if (in.getInt(saved.length - 4) != (int) crc.getValue() || in.getLong() != MAGIC || in.getInt() != VERSION) {
+                throw new IllegalArgumentException("Invalid digest state");
+            }
+
+            byte[] name = new byte[in.get() & 0xff];
+            in.get(name);
+            ResumableDigest digest = getInstance(ALGORITHM.get(new String(name, StandardCharsets.US_ASCII)));
+
+            long length = in.getLong();
+            if (length < 0) {
+                throw new IllegalArgumentException("Invalid digest state");
+            }
+            for(int i = 0; i < digest.state.length; i++) {
+                digest.state[i] = in.getInt();
+            }
+            digest.buffered = (int) (length % BLOCK_SIZE);
+            in.get(digest.buffer, 0, digest.buffered);
+            digest.length = length;
+
+            if (in.remaining() != 4) {
+                throw new IllegalArgumentException("Invalid digest state");
+            }
+            return digest;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid digest state");
+        }
+    }
+
+    /**
+     * Save the state of the digest. The digest itself is unchanged and can be updated further.
+     *
+     * @return the state, to be given to {@link #restore(byte[])}
+     */
+    public byte[] saveState() {
+
+        byte[] name = algorithm.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer out = ByteBuffer.allocate(8 + 4 + 1 + name.length + 8 + 4 * state.length + buffered + 4);
+        out.putLong(MAGIC).putInt(VERSION).put((byte) name.length).put(name).putLong(length);
+        for(int word:state) {
+            out.putInt(word);
+        }
+        out.put(buffer, 0, buffered);
+
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+        return out.array();
+    }
+
+    public ALGORITHM algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the number of bytes hashed since the digest was last reset
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return the chaining value of a new digest
+     */
+    abstract int[] initialState();
+
+    /**
+     * Compress a block of 64 bytes into the chaining value.
+     */
+    abstract void compress(byte[] block, int offset);
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 4 * state.length;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        buffer[buffered++] = input;
+        length++;
+        if (buffered == BLOCK_SIZE) {
+            compress(buffer, 0);
+            buffered = 0;
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+
+        length += len;
+        if (buffered > 0) {
+            int copied = Math.min(len, BLOCK_SIZE - buffered);
+            System.arraycopy(input, offset, buffer, buffered, copied);
+            buffered += copied;
+            offset += copied;
+            len -= copied;
+
+            if (buffered < BLOCK_SIZE) return;
+            compress(buffer, 0);
+            buffered = 0;
+        }
+
+        int end = offset + len / BLOCK_SIZE * BLOCK_SIZE;
+        for(; offset < end; offset += BLOCK_SIZE) {
+            compress(input, offset);
+        }
+
+        buffered = len % BLOCK_SIZE;
+        System.arraycopy(input, offset, buffer, 0, buffered);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+
+        // Padding: 0x80, zeros, and the length in bits in the last 8 bytes of the last block
+        long bits = length << 3;
+        buffer[buffered++] = (byte) 0x80;
+        if (buffered > BLOCK_SIZE - 8) {
+            Arrays.fill(buffer, buffered, BLOCK_SIZE, (byte) 0);
+            compress(buffer, 0);
+            buffered = 0;
+        }
+        Arrays.fill(buffer, buffered, BLOCK_SIZE - 8, (byte) 0);
+        for(int i = 0; i < 8; i++) {
+            buffer[BLOCK_SIZE - 1 - i] = (byte) (bits >>> (8 * i));
+        }
+        compress(buffer, 0);
+
+        byte[] out = new byte[4 * state.length];
+        for(int i = 0; i < state.length; i++) {
+            putInt(out, 4 * i, state[i]);
+        }
+
+        engineReset();
+        return out;
+    }
+
+    @Override
+    protected void engineReset() {
+        System.arraycopy(initialState(), 0, state, 0, state.length);
+        buffered = 0;
+        length = 0;
+    }
+
+    static int getInt(byte[] bytes, int offset) {
+        return (bytes[offset] << 24) | ((bytes[offset + 1] & 0xff) << 16) | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+    }
+
+    private static void putInt(byte[] out, int offset, int value) {
+        out[offset] = (byte) (value >>> 24);
+        out[offset + 1] = (byte) (value >>> 16);
+        out[offset + 2] = (byte) (value >>> 8);
+        out[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,75 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+
+/**
+ * SHA-1 with a state that can be saved and restored.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+class ResumableSHA1 extends ResumableDigest {
+
+    private static final int[] IV = {
+            0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476, 0xc3d2e1f0
+    };
+
+    private final int[] w = new int[80];
+
+    ResumableSHA1() {
+        super(ALGORITHM.SHA1, 5);
+    }
+
+    @Override
+    int[] initialState() {
+        return IV;
+    }
+
+    @Override
+    void compress(byte[] block, int offset) {
+
+        final int[] w = this.w;
+        for(int t = 0; t < 16; t++) {
+            w[t] = getInt(block, offset + 4 * t);
+        }
+        for(int t = 16; t < 80; t++) {
+            w[t] = Integer.rotateLeft(w[t - 3] ^ w[t - 8] ^ w[t - 14] ^ w[t - 16], 1);
+        }
+
+        int a = state[0];
+        int b = state[1];
+        int c = state[2];
+        int d = state[3];
+        int e = state[4];
+
+        for(int t = 0; t < 80; t++) {
+            int f;
+            int k;
+            if (t < 20) {
+                f = (b & c) | (~b & d);
+                k = 0x5a827999;
+            } else if (t < 40) {
+                f = b ^ c ^ d;
+                k = 0x6ed9eba1;
+            } else if (t < 60) {
+                f = (b & c) | (b & d) | (c & d);
+                k = 0x8f1bbcdc;
+            } else {
+                f = b ^ c ^ d;
+                k = 0xca62c1d6;
+            }
+
+            int temp = Integer.rotateLeft(a, 5) + f + e + k + w[t];
+            e = d;
+            d = c;
+            c = Integer.rotateLeft(b, 30);
+            b = a;
+            a = temp;
+        }
+
+        state[0] += a;
+        state[1] += b;
+        state[2] += c;
+        state[3] += d;
+        state[4] += e;
+    }
+}
@@ -0,0 +1,80 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import java.security.MessageDigest;
+
+/**
+ * Feeds the UTF-8 encoding of a character sequence to a digest, without materialising the whole encoding.
+ *
+ * The characters are encoded in chunks into a buffer owned by the calling thread.
+ * Runs of ASCII characters, the common case for keys and JSON documents, are copied with a tight loop.
+ * Unpaired surrogates are encoded as '?', as done by {@link String#getBytes(java.nio.charset.Charset)},
+ * so that the digest is the same as the one of the byte encoding.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class UTF8Digester {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_BYTES_PER_CHAR = 4;
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    // Suppresses default constructor, ensuring non-instantiability.
+    private UTF8Digester() {}
+
+    /**
+     * @return the number of bytes of the encoding
+     */
+    public static long update(MessageDigest digest, CharSequence chars) {
+
+        byte[] buffer = BUFFER.get();
+        int length = chars.length();
+        long written = 0;
+        int pos = 0;
+        int i = 0;
+
+        while (i < length) {
+
+            // ASCII run
+            int limit = Math.min(length, i + buffer.length - pos);
+            char c;
+            while (i < limit && (c = chars.charAt(i)) < 0x80) {
+                buffer[pos++] = (byte) c;
+                i++;
+            }
+
+            if (buffer.length - pos < MAX_BYTES_PER_CHAR) {
+                digest.update(buffer, 0, pos);
+                written += pos;
+                pos = 0;
+            }
+
+            if (i == length) break;
+
+            c = chars.charAt(i++);
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xc0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(chars.charAt(i))) {
+                    int codePoint = Character.toCodePoint(c, chars.charAt(i++));
+                    buffer[pos++] = (byte) (0xf0 | (codePoint >> 18));
+                    buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    buffer[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+                } else {
+                    buffer[pos++] = '?';
+                }
+            } else {
+                buffer[pos++] = (byte) (0xe0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+
+        digest.update(buffer, 0, pos);
+        return written + pos;
+    }
+}
@@ -0,0 +1,357 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import uk.ac.standrews.cs.guid.impl.codecs.HexCodec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+/**
+ * XXH3 128-bit (xxHash v0.8), with the default secret and seed 0.
+ *
+ * This is a fast non-cryptographic hash: it spreads keys well, but collisions can be built on purpose,
+ * so it must only be used for content that is not chosen by an adversary (e.g. dedup keys or cache IDs).
+ * The digest is the canonical representation of the hash, high 64 bits first, both big-endian, so its hex
+ * encoding is the one printed by xxhsum -H2.
+ *
+ * Inputs of up to 240 bytes are hashed as a whole. Longer inputs are consumed 64 bytes (a stripe) at a time
+ * into 8 accumulators, and the last stripe always ends at the end of the input, so a stripe is only consumed
+ * once more input follows it. {@link #hash(byte[], int, int)} hashes an array without going through the buffer.
+ *
+ * Instances are not thread-safe.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class XXH128Digest extends MessageDigest {
+
+    public static final int DIGEST_LENGTH = 16;
+
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long PRIME32_1 = 0x9E3779B1L;
+    private static final long PRIME32_2 = 0x85EBCA77L;
+    private static final long PRIME32_3 = 0xC2B2AE3DL;
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+    private static final long PRIME_MX1 = 0x165667919E3779F9L;
+    private static final long PRIME_MX2 = 0x9FB21C651E98DF25L;
+
+    private static final byte[] SECRET = HexCodec.decode(
+            "b8fe6c3923a44bbe7c01812cf721ad1cded46de9839097db7240a4a4b7b3671f" +
+            "cb79e64eccc0e578825ad07dccff7221b8084674f743248ee03590e6813a264c" +
+            "3c2852bb91c300cb88d0658b1b532ea371644897a20df94e3819ef46a9deacd8" +
+            "a8fa763fe39c343ff9dcbbc7c70b4f1d8a51e04bcdb45931c89f7ec9d9787364" +
+            "eac5ac8334d3ebc3c581a0fffa1363eb170ddd51b7f0da49d316552629d4689e" +
+            "2b16be587d47a1fc8ff8b8d17ad031ce45cb3a8f95160428afd7fbcabb4b407e");
+
+    // The secret read as a little-endian long at every byte offset
+    private static final long[] SECRET_LONGS = new long[SECRET.length - 7];
+
+    static {
+        for(int i = 0; i < SECRET_LONGS.length; i++) {
+            SECRET_LONGS[i] = readLong(SECRET, i);
+        }
+    }
+
+    private static final int STRIPE_LENGTH = 64;
+    private static final int STRIPES_PER_BLOCK = (SECRET.length - STRIPE_LENGTH) / 8;
+    private static final int SCRAMBLE_OFFSET = SECRET.length - STRIPE_LENGTH;
+    private static final int LAST_STRIPE_OFFSET = SECRET.length - STRIPE_LENGTH - 7;
+    private static final int MERGE_OFFSET = 11;
+    private static final int MID_SIZE_MAX = 240;
+    private static final int MID_SIZE_START_OFFSET = 3;
+    private static final int MID_SIZE_LAST_OFFSET = 136 - 17 - 16;
+    private static final int BUFFER_SIZE = 4 * STRIPE_LENGTH;
+
+    private final long[] acc = new long[8];
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final byte[] lastStripe = new byte[STRIPE_LENGTH];
+    private int buffered;
+    private int stripes; // Stripes consumed in the current block
+    private long length;
+
+    public XXH128Digest() {
+        super("XXH128");
+        engineReset();
+    }
+
+    /**
+     * @return the digest of length bytes of the array, starting at offset
+     */
+    public static byte[] hash(byte[] input, int offset, int length) {
+
+        byte[] out = new byte[DIGEST_LENGTH];
+        if (length <= MID_SIZE_MAX) {
+            hashShort(input, offset, length, out);
+            return out;
+        }
+
+        long[] acc = new long[8];
+        init(acc);
+        int count = (length - 1) / STRIPE_LENGTH;
+        for(int i = 0; i < count; i++) {
+            accumulate(acc, input, offset + i * STRIPE_LENGTH, (i % STRIPES_PER_BLOCK) * 8);
+            if (i % STRIPES_PER_BLOCK == STRIPES_PER_BLOCK - 1) {
+                scramble(acc);
+            }
+        }
+        accumulate(acc, input, offset + length - STRIPE_LENGTH, LAST_STRIPE_OFFSET);
+        finish(acc, length, out);
+        return out;
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return DIGEST_LENGTH;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        if (buffered == BUFFER_SIZE) {
+            consumeBuffer();
+        }
+        buffer[buffered++] = input;
+        length++;
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+
+        length += len;
+        while (len > 0) {
+            if (buffered == BUFFER_SIZE) {
+                consumeBuffer();
+            }
+
+            // Consume large inputs in place, keeping at least one byte for the buffer
+            if (buffered == 0 && len > BUFFER_SIZE) {
+                int consumed = (len - 1) / STRIPE_LENGTH * STRIPE_LENGTH;
+                for(int i = 0; i < consumed; i += STRIPE_LENGTH) {
+                    consumeStripe(input, offset + i);
+                }
+                System.arraycopy(input, offset + consumed - STRIPE_LENGTH, lastStripe, 0, STRIPE_LENGTH);
+                offset += consumed;
+                len -= consumed;
+            }
+
+            int copied = Math.min(len, BUFFER_SIZE - buffered);
+            System.arraycopy(input, offset, buffer, buffered, copied);
+            buffered += copied;
+            offset += copied;
+            len -= copied;
+        }
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+
+        byte[] out = new byte[DIGEST_LENGTH];
+        if (length <= MID_SIZE_MAX) {
+            hashShort(buffer, 0, (int) length, out);
+        } else {
+            int count = (buffered - 1) / STRIPE_LENGTH;
+            for(int i = 0; i < count; i++) {
+                consumeStripe(buffer, i * STRIPE_LENGTH);
+            }
+
+            // The last stripe may start in the bytes consumed before the buffer
+            if (buffered >= STRIPE_LENGTH) {
+                accumulate(acc, buffer, buffered - STRIPE_LENGTH, LAST_STRIPE_OFFSET);
+            } else {
+                byte[] last = new byte[STRIPE_LENGTH];
+                System.arraycopy(lastStripe, buffered, last, 0, STRIPE_LENGTH - buffered);
+                System.arraycopy(buffer, 0, last, STRIPE_LENGTH - buffered, buffered);
+                accumulate(acc, last, 0, LAST_STRIPE_OFFSET);
+            }
+            finish(acc, length, out);
+        }
+
+        engineReset();
+        return out;
+    }
+
+    @Override
+    protected void engineReset() {
+        init(acc);
+        buffered = 0;
+        stripes = 0;
+        length = 0;
+    }
+
+    private void consumeBuffer() {
+        for(int i = 0; i < BUFFER_SIZE; i += STRIPE_LENGTH) {
+            consumeStripe(buffer, i);
+        }
+        System.arraycopy(buffer, BUFFER_SIZE - STRIPE_LENGTH, lastStripe, 0, STRIPE_LENGTH);
+        buffered = 0;
+    }
+
+    private void consumeStripe(byte[] input, int offset) {
+        accumulate(acc, input, offset, stripes * 8);
+        if (++stripes == STRIPES_PER_BLOCK) {
+            scramble(acc);
+            stripes = 0;
+        }
+    }
+
+    private static void init(long[] acc) {
+        acc[0] = PRIME32_3;
+        acc[1] = PRIME64_1;
+        acc[2] = PRIME64_2;
+        acc[3] = PRIME64_3;
+        acc[4] = PRIME64_4;
+        acc[5] = PRIME32_2;
+        acc[6] = PRIME64_5;
+        acc[7] = PRIME32_1;
+    }
+
+    private static void accumulate(long[] acc, byte[] input, int offset, int secretOffset) {
+        for(int i = 0; i < 8; i += 2) {
+            long value0 = readLong(input, offset + 8 * i);
+            long value1 = readLong(input, offset + 8 * i + 8);
+            long key0 = value0 ^ SECRET_LONGS[secretOffset + 8 * i];
+            long key1 = value1 ^ SECRET_LONGS[secretOffset + 8 * i + 8];
+            acc[i] += value1 + (key0 & 0xFFFFFFFFL) * (key0 >>> 32);
+            acc[i + 1] += value0 + (key1 & 0xFFFFFFFFL) * (key1 >>> 32);
+        }
+    }
+
+    private static void scramble(long[] acc) {
+        for(int i = 0; i < 8; i++) {
+            long value = acc[i];
+            value ^= value >>> 47;
+            value ^= SECRET_LONGS[SCRAMBLE_OFFSET + 8 * i];
+            acc[i] = value * PRIME32_1;
+        }
+    }
+
+    private static void finish(long[] acc, long length, byte[] out) {
+        long low = merge(acc, MERGE_OFFSET, length * PRIME64_1);
+        long high = merge(acc, SECRET.length - 64 - MERGE_OFFSET, ~(length * PRIME64_2));
+        write(high, low, out);
+    }
+
+    private static long merge(long[] acc, int secretOffset, long start) {
+        long result = start;
+        for(int i = 0; i < 4; i++) {
+            result += fold(acc[2 * i] ^ SECRET_LONGS[secretOffset + 16 * i], acc[2 * i + 1] ^ SECRET_LONGS[secretOffset + 16 * i + 8]);
+        }
+        return avalanche(result);
+    }
+
+    private static void hashShort(byte[] input, int offset, int length, byte[] out) {
+
+        if (length == 0) {
+            write(avalanche64(readLong(SECRET, 80) ^ readLong(SECRET, 88)), avalanche64(readLong(SECRET, 64) ^ readLong(SECRET, 72)), out);
+        } else if (length <= 3) {
+            int c1 = input[offset] & 0xff;
+            int c2 = input[offset + (length >> 1)] & 0xff;
+            int c3 = input[offset + length - 1] & 0xff;
+            int low = (c1 << 16) | (c2 << 24) | c3 | (length << 8);
+            int high = Integer.rotateLeft(Integer.reverseBytes(low), 13);
+            long lowFlip = (readInt(SECRET, 0) ^ readInt(SECRET, 4)) & 0xFFFFFFFFL;
+            long highFlip = (readInt(SECRET, 8) ^ readInt(SECRET, 12)) & 0xFFFFFFFFL;
+            write(avalanche64((high & 0xFFFFFFFFL) ^ highFlip), avalanche64((low & 0xFFFFFFFFL) ^ lowFlip), out);
+        } else if (length <= 8) {
+            long value = (readInt(input, offset) & 0xFFFFFFFFL) + ((long) readInt(input, offset + length - 4) << 32);
+            long keyed = value ^ readLong(SECRET, 16) ^ readLong(SECRET, 24);
+            long multiplier = PRIME64_1 + ((long) length << 2);
+            long low = keyed * multiplier;
+            long high = multiplyHigh(keyed, multiplier);
+            high += low << 1;
+            low ^= high >>> 3;
+            low ^= low >>> 35;
+            low *= PRIME_MX2;
+            low ^= low >>> 28;
+            write(avalanche(high), low, out);
+        } else if (length <= 16) {
+            long lowFlip = readLong(SECRET, 32) ^ readLong(SECRET, 40);
+            long highFlip = readLong(SECRET, 48) ^ readLong(SECRET, 56);
+            long inputLow = readLong(input, offset);
+            long inputHigh = readLong(input, offset + length - 8);
+            long keyed = inputLow ^ inputHigh ^ lowFlip;
+            long low = keyed * PRIME64_1 + ((long) (length - 1) << 54);
+            long high = multiplyHigh(keyed, PRIME64_1);
+            inputHigh ^= highFlip;
+            high += inputHigh + (inputHigh & 0xFFFFFFFFL) * (PRIME32_2 - 1);
+            low ^= Long.reverseBytes(high);
+            long resultHigh = multiplyHigh(low, PRIME64_2) + high * PRIME64_2;
+            write(avalanche(resultHigh), avalanche(low * PRIME64_2), out);
+        } else {
+            long[] acc = { length * PRIME64_1, 0 };
+            if (length <= 128) {
+                for(int i = (length - 1) / 32; i >= 0; i--) {
+                    mix32(acc, input, offset + 16 * i, offset + length - 16 * (i + 1), 32 * i);
+                }
+            } else {
+                for(int i = 0; i < 4; i++) {
+                    mix32(acc, input, offset + 32 * i, offset + 32 * i + 16, 32 * i);
+                }
+                acc[0] = avalanche(acc[0]);
+                acc[1] = avalanche(acc[1]);
+                for(int i = 4; i < length / 32; i++) {
+                    mix32(acc, input, offset + 32 * i, offset + 32 * i + 16, MID_SIZE_START_OFFSET + 32 * (i - 4));
+                }
+                mix32(acc, input, offset + length - 16, offset + length - 32, MID_SIZE_LAST_OFFSET);
+            }
+
+            long low = acc[0] + acc[1];
+            long high = acc[0] * PRIME64_1 + acc[1] * PRIME64_4 + length * PRIME64_2;
+            write(-avalanche(high), avalanche(low), out);
+        }
+    }
+
+    private static void mix32(long[] acc, byte[] input, int first, int second, int secretOffset) {
+        acc[0] += mix16(input, first, secretOffset);
+        acc[0] ^= readLong(input, second) + readLong(input, second + 8);
+        acc[1] += mix16(input, second, secretOffset + 16);
+        acc[1] ^= readLong(input, first) + readLong(input, first + 8);
+    }
+
+    private static long mix16(byte[] input, int offset, int secretOffset) {
+        return fold(readLong(input, offset) ^ SECRET_LONGS[secretOffset], readLong(input, offset + 8) ^ SECRET_LONGS[secretOffset + 8]);
+    }
+
+    // Low and high 64 bits of the 128-bit product, xor-ed together
+    private static long fold(long a, long b) {
+        return (a * b) ^ multiplyHigh(a, b);
+    }
+
+    private static long multiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    private static long avalanche(long h) {
+        h ^= h >>> 37;
+        h *= PRIME_MX1;
+        return h ^ (h >>> 32);
+    }
+
+    private static long avalanche64(long h) {
+        h ^= h >>> 33;
+        h *= PRIME64_2;
+        h ^= h >>> 29;
+        h *= PRIME64_3;
+        return h ^ (h >>> 32);
+    }
+
+    private static void write(long high, long low, byte[] out) {
+        for(int i = 0; i < 8; i++) {
+            out[i] = (byte) (high >>> (56 - 8 * i));
+            out[8 + i] = (byte) (low >>> (56 - 8 * i));
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (long) LONG.get(bytes, offset);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (int) INT.get(bytes, offset);
+    }
+}
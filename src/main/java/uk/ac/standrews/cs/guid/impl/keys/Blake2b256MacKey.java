@@ -0,0 +1,31 @@
+package uk.ac.standrews.cs.guid.impl.keys;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Blake2b256MacKey extends KeyImpl {
+
+    private static final int KEYLENGTH = 256;
+    private static final int DEFAULT_TO_STRING_LENGTH = 64;
+
+    public Blake2b256MacKey(String string) throws GUIDGenerationException {
+        super(ALGORITHM.BLAKE2B256MAC, string);
+    }
+
+    public Blake2b256MacKey(byte[] input) throws GUIDGenerationException {
+        super(ALGORITHM.BLAKE2B256MAC, input);
+    }
+
+    @Override
+    protected int getKeylength() {
+        return KEYLENGTH;
+    }
+
+    @Override
+    protected int getStringLength() {
+        return DEFAULT_TO_STRING_LENGTH;
+    }
+}
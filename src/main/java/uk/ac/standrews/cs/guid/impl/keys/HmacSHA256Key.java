@@ -0,0 +1,31 @@
+package uk.ac.standrews.cs.guid.impl.keys;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class HmacSHA256Key extends KeyImpl {
+
+    private static final int KEYLENGTH = 256;
+    private static final int DEFAULT_TO_STRING_LENGTH = 64;
+
+    public HmacSHA256Key(String string) throws GUIDGenerationException {
+        super(ALGORITHM.HMACSHA256, string);
+    }
+
+    public HmacSHA256Key(byte[] input) throws GUIDGenerationException {
+        super(ALGORITHM.HMACSHA256, input);
+    }
+
+    @Override
+    protected int getKeylength() {
+        return KEYLENGTH;
+    }
+
+    @Override
+    protected int getStringLength() {
+        return DEFAULT_TO_STRING_LENGTH;
+    }
+}
@@ -1,14 +1,15 @@
 package uk.ac.standrews.cs.guid.impl.keys;
 
-import org.apache.commons.codec.DecoderException;
-import org.apache.commons.codec.binary.Hex;
 import uk.ac.standrews.cs.guid.*;
 import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.codecs.Base32Codec;
+import uk.ac.standrews.cs.guid.impl.codecs.Base58Codec;
+import uk.ac.standrews.cs.guid.impl.codecs.Base64Codec;
+import uk.ac.standrews.cs.guid.impl.codecs.HexCodec;
 
 import java.math.BigInteger;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Base64;
 
 /**
  * Implementation of key.
@@ -55,8 +56,8 @@ public class KeyImpl implements IGUID, IPID {
             if (hexString.length() % 2 != 0) {
                 hexString = "0" + hexString;
             }
-            key_value_bytes = Hex.decodeHex(hexString.toCharArray());
-        } catch (DecoderException e) {
+            key_value_bytes = HexCodec.decode(hexString);
+        } catch (IllegalArgumentException e) {
             throw new GUIDGenerationException();
         }
     }
@@ -78,7 +79,7 @@ public class KeyImpl implements IGUID, IPID {
      * @see #DEFAULT_TO_STRING_RADIX
      */
     public KeyImpl(ALGORITHM algorithm, String string) {
-        this(algorithm, string.getBytes(Charset.forName("UTF-8")));
+        this(algorithm, string.getBytes(StandardCharsets.UTF_8));
     }
 
     public ALGORITHM algorithm() {
@@ -94,7 +95,7 @@ public class KeyImpl implements IGUID, IPID {
 
         KEYSPACE_SIZE = TWO.pow(getKeylength());
 
-        BigInteger bigInteger = new BigInteger(new String(Hex.encodeHex(key_value_bytes)), DEFAULT_TO_STRING_RADIX);
+        BigInteger bigInteger = new BigInteger(1, key_value_bytes);
         bigInteger = bigInteger.remainder(KEYSPACE_SIZE);
 
         // Allow for negative key value.
@@ -105,6 +106,28 @@ public class KeyImpl implements IGUID, IPID {
         return bigInteger;
     }
 
+    /**
+     * @return a copy of the bytes of this key
+     */
+    public byte[] bytes() {
+        return key_value_bytes.clone();
+    }
+
+    /**
+     * @return the number of bytes of this key
+     */
+    public int byteLength() {
+        return key_value_bytes.length;
+    }
+
+    /**
+     * @param index the index of the byte, 0 being the most significant one
+     * @return the byte of this key at the given index
+     */
+    public byte byteAt(int index) {
+        return key_value_bytes[index];
+    }
+
     @Override
     public boolean isInvalid() {
         return false;
@@ -139,13 +162,22 @@ public class KeyImpl implements IGUID, IPID {
         String retval;
         switch(base) {
             case HEX:
-                retval = applyPadding(Hex.encodeHexString(key_value_bytes), getStringLength());
+                retval = applyPadding(HexCodec.encode(key_value_bytes), getStringLength());
+                break;
+            case BASE_32:
+                retval = Base32Codec.encode(key_value_bytes);
+                break;
+            case BASE_58:
+                retval = Base58Codec.encode(key_value_bytes);
                 break;
             case BASE_64:
-                retval = Base64.getEncoder().encodeToString(key_value_bytes);
+                retval = Base64Codec.encode(key_value_bytes);
+                break;
+            case BASE_64_URL:
+                retval = Base64Codec.encodeUrlSafe(key_value_bytes);
                 break;
             case CANON:
-                retval = applyPadding(Hex.encodeHexString(key_value_bytes), getStringLength());
+                retval = applyPadding(HexCodec.encode(key_value_bytes), getStringLength());
                 retval = applyCANONFormat(retval);
                 break;
             default:
@@ -157,6 +189,8 @@ public class KeyImpl implements IGUID, IPID {
     }
 
     private String applyPadding(String string, int stringLength) {
+        if (string.length() >= stringLength) return string;
+
         StringBuilder result = new StringBuilder(string);
         while (result.length() < stringLength) result.insert(0, '0');
         return result.toString();
@@ -188,14 +222,42 @@ public class KeyImpl implements IGUID, IPID {
         if (this == o) return 0;
         if (o == null || getClass() != o.getClass()) throw new ClassCastException();
 
-        IKey k = (IKey) o;
+        KeyImpl k = (KeyImpl) o;
         if (k.algorithm() != algorithm) {
             throw new ClassCastException();
+        } else if (key_value_bytes.length == k.key_value_bytes.length && key_value_bytes.length * 8 <= getKeylength()) {
+            // The value of a key fitting in the keyspace is its bytes read as an unsigned number
+            return Integer.signum(compareUnsigned(this, k));
         } else {
             return bigIntegerRepresentation().compareTo(k.bigIntegerRepresentation());
         }
     }
 
+    /**
+     * Compares the bytes of two keys as unsigned big-endian numbers, without creating their BigInteger representation.
+     * Leading zero bytes are not significant, so keys of different lengths compare by value: [0x01] is less than [0x00, 0x02].
+     *
+     * @return a negative number, zero or a positive number if the first key is less than, equal to or greater than the second
+     */
+    public static int compareUnsigned(KeyImpl a, KeyImpl b) {
+        byte[] x = a.key_value_bytes;
+        byte[] y = b.key_value_bytes;
+        if (x.length == y.length) return Arrays.compareUnsigned(x, y);
+
+        int i = leadingZeros(x);
+        int j = leadingZeros(y);
+        if (x.length - i != y.length - j) return Integer.compare(x.length - i, y.length - j);
+        return Arrays.compareUnsigned(x, i, x.length, y, j, y.length);
+    }
+
+    private static int leadingZeros(byte[] bytes) {
+        int i = 0;
+        while (i < bytes.length && bytes[i] == 0) {
+            i++;
+        }
+        return i;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
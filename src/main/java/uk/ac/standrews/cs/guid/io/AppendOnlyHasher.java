@@ -0,0 +1,112 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.digests.ResumableDigest;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Hashes files that only grow by appending (e.g. logs), without reading again the bytes hashed before.
+ *
+ * Each call returns a {@link Checkpoint} with the GUID of the whole file, the same as
+ * {@link uk.ac.standrews.cs.guid.GUIDFactory#generateGUID(ALGORITHM, java.io.File)} would return, and the saved
+ * digest state to resume from next time. Only SHA1 and SHA256 are supported.
+ *
+ * The file is hashed up to the end seen while reading it. Bytes before the offset are assumed unchanged:
+ * a file that was rewritten rather than appended to must be hashed again from the start.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class AppendOnlyHasher {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private AppendOnlyHasher() {}
+
+    /**
+     * Hash a file from the start.
+     *
+     * @param algorithm SHA1 or SHA256
+     * @param file the file to hash
+     * @return the GUID of the file and the checkpoint at its end
+     * @throws GUIDGenerationException if the algorithm is not supported
+     * @throws IOException if the file could not be read
+     */
+    public static Checkpoint hash(ALGORITHM algorithm, Path file) throws GUIDGenerationException, IOException {
+
+        ResumableDigest digest;
+        try {
+            digest = ResumableDigest.getInstance(algorithm);
+        } catch (IllegalArgumentException e) {
+            throw new GUIDGenerationException(e.getMessage());
+        }
+        return hash(digest, file, 0);
+    }
+
+    /**
+     * Hash the bytes appended to a file since a checkpoint.
+     *
+     * @param checkpoint a checkpoint previously returned for the same file
+     * @param file the file to hash
+     * @return the GUID of the file and the new checkpoint at its end
+     * @throws GUIDGenerationException if the file is shorter than the checkpoint
+     * @throws IOException if the file could not be read
+     */
+    public static Checkpoint resume(Checkpoint checkpoint, Path file) throws GUIDGenerationException, IOException {
+        return resume(checkpoint.state(), checkpoint.offset(), file);
+    }
+
+    /**
+     * Hash the bytes of a file from the given offset, continuing from a saved digest state.
+     *
+     * @param state the digest state of {@link Checkpoint#state()}
+     * @param offset the offset of {@link Checkpoint#offset()}, i.e. the number of bytes of the file covered by the state
+     * @param file the file to hash
+     * @return the GUID of the file and the new checkpoint at its end
+     * @throws GUIDGenerationException if the state is not valid or does not match the offset, or the file is shorter than the offset
+     * @throws IOException if the file could not be read
+     */
+    public static Checkpoint resume(byte[] state, long offset, Path file) throws GUIDGenerationException, IOException {
+
+        ResumableDigest digest;
+        try {
+            digest = ResumableDigest.restore(state);
+        } catch (IllegalArgumentException e) {
+            throw new GUIDGenerationException(e.getMessage());
+        }
+
+        if (digest.length() != offset) {
+            throw new GUIDGenerationException("The digest state covers " + digest.length() + " bytes, not " + offset);
+        }
+        return hash(digest, file, offset);
+    }
+
+    private static Checkpoint hash(ResumableDigest digest, Path file, long offset) throws GUIDGenerationException, IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < offset) {
+                throw new GUIDGenerationException("File shorter than its checkpoint: " + file);
+            }
+            channel.position(offset);
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = channel.read(ByteBuffer.wrap(buffer))) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+
+        long end = digest.length();
+        byte[] state = digest.saveState();
+        IGUID guid = (KeyImpl) KeyFactory.recreateKey(digest.algorithm(), digest.digest());
+        return new Checkpoint(guid, state, end);
+    }
+}
@@ -0,0 +1,44 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.IGUID;
+
+/**
+ * The GUID of the content of an append-only file up to an offset, with the digest state needed to extend it.
+ * Store the state and offset, and give them to {@link AppendOnlyHasher#resume(byte[], long, java.nio.file.Path)}
+ * to hash only the bytes appended since.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Checkpoint {
+
+    private final IGUID guid;
+    private final byte[] state;
+    private final long offset;
+
+    Checkpoint(IGUID guid, byte[] state, long offset) {
+        this.guid = guid;
+        this.state = state;
+        this.offset = offset;
+    }
+
+    /**
+     * @return the GUID of the first offset bytes of the file
+     */
+    public IGUID guid() {
+        return guid;
+    }
+
+    /**
+     * @return the saved digest state, after the first offset bytes of the file
+     */
+    public byte[] state() {
+        return state.clone();
+    }
+
+    /**
+     * @return the number of bytes of the file hashed so far
+     */
+    public long offset() {
+        return offset;
+    }
+}
@@ -0,0 +1,64 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.IGUID;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A chunk of the content of a logical message.
+ *
+ * Chunks of different messages can be interleaved, as long as the chunks of each message are in order.
+ * The message is identified by any object with a consistent equals and hashCode (e.g. a stream id).
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Chunk {
+
+    private final Object message;
+    private final ByteBuffer data;
+    private final boolean last;
+    private final IGUID guid;
+
+    /**
+     * @param message the identifier of the message this chunk belongs to
+     * @param data the content of the chunk, between its position and limit. May be null for an empty chunk
+     * @param last true if this is the last chunk of the message
+     */
+    public Chunk(Object message, ByteBuffer data, boolean last) {
+        this(message, data, last, null);
+    }
+
+    Chunk(Object message, ByteBuffer data, boolean last, IGUID guid) {
+        if (message == null) {
+            throw new NullPointerException();
+        }
+
+        this.message = message;
+        this.data = data;
+        this.last = last;
+        this.guid = guid;
+    }
+
+    public Object message() {
+        return message;
+    }
+
+    public ByteBuffer data() {
+        return data;
+    }
+
+    public boolean isLast() {
+        return last;
+    }
+
+    /**
+     * @return the GUID of the whole message, if this is the last chunk emitted by a {@link GUIDProcessor}, null otherwise
+     */
+    public IGUID guid() {
+        return guid;
+    }
+
+    Chunk withGUID(IGUID guid) {
+        return new Chunk(message, data, last, guid);
+    }
+}
@@ -0,0 +1,209 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.IKey;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Splits a stream into content-defined chunks with FastCDC and computes the GUID of each chunk.
+ *
+ * Chunk boundaries depend only on the content around them, so an insertion or deletion only changes
+ * the chunks next to it, and the other chunks of the object can be deduplicated.
+ *
+ * The boundaries are found with a gear rolling hash. Normalised chunking is used: a stricter mask before the
+ * average size and a looser one after it, so that chunk sizes concentrate around the average.
+ * The chunks are hashed in batches on the executor while the stream is being read.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class ContentDefinedChunker {
+
+    public static final int DEFAULT_MIN_SIZE = 2 * 1024;
+    public static final int DEFAULT_AVERAGE_SIZE = 8 * 1024;
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+
+    private static final int NORMALISATION_LEVEL = 2;
+    private static final int BATCH_SIZE = 64;
+    private static final int MAX_BATCHES_IN_FLIGHT = 16;
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed, so that boundaries are the same across runs and JVMs
+        long seed = 0x2545f4914f6cdd1dL;
+        for(int i = 0; i < GEAR.length; i++) {
+            seed += 0x9e3779b97f4a7c15L;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            GEAR[i] = z ^ (z >>> 31);
+        }
+    }
+
+    private final ALGORITHM algorithm;
+    private final int minSize;
+    private final int averageSize;
+    private final int maxSize;
+    private final long smallMask;
+    private final long largeMask;
+    private final Executor executor;
+
+    public ContentDefinedChunker(ALGORITHM algorithm) {
+        this(algorithm, DEFAULT_MIN_SIZE, DEFAULT_AVERAGE_SIZE, DEFAULT_MAX_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param algorithm the algorithm used to hash the chunks
+     * @param minSize the minimum size of a chunk, except for the last one
+     * @param averageSize the target average size of a chunk
+     * @param maxSize the maximum size of a chunk
+     * @param executor the executor hashing the chunks
+     */
+    public ContentDefinedChunker(ALGORITHM algorithm, int minSize, int averageSize, int maxSize, Executor executor) {
+        if (algorithm == null || executor == null || minSize < 1 || minSize >= averageSize || averageSize >= maxSize) {
+            throw new IllegalArgumentException();
+        }
+
+        this.algorithm = algorithm;
+        this.minSize = minSize;
+        this.averageSize = averageSize;
+        this.maxSize = maxSize;
+        this.executor = executor;
+
+        int bits = 31 - Integer.numberOfLeadingZeros(averageSize);
+        this.smallMask = topBits(Math.min(bits + NORMALISATION_LEVEL, 63));
+        this.largeMask = topBits(Math.max(bits - NORMALISATION_LEVEL, 1));
+    }
+
+    /**
+     * Split the stream into chunks and hash them. The stream is read until its end, but it is not closed.
+     *
+     * @param source the stream to split
+     * @return the recipe of the stream
+     * @throws GUIDGenerationException if the chunks could not be hashed
+     * @throws IOException if the stream could not be read
+     */
+    public Recipe chunk(InputStream source) throws GUIDGenerationException, IOException {
+
+        List<CompletableFuture<IKey[]>> batches = new ArrayList<>();
+        List<byte[]> batch = new ArrayList<>(BATCH_SIZE);
+        int[] lengths = new int[16];
+        int chunks = 0;
+
+        byte[] buffer = new byte[2 * maxSize];
+        int start = 0;
+        int end = 0;
+        boolean eof = false;
+
+        try {
+            while (true) {
+                if (!eof && end - start < maxSize) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+
+                    while (end < buffer.length) {
+                        int read = source.read(buffer, end, buffer.length - end);
+                        if (read == -1) {
+                            eof = true;
+                            break;
+                        }
+                        end += read;
+                    }
+                }
+
+                if (start == end) break;
+
+                int length = cut(buffer, start, end - start);
+                batch.add(Arrays.copyOfRange(buffer, start, start + length));
+                start += length;
+
+                if (chunks == lengths.length) lengths = Arrays.copyOf(lengths, chunks * 2);
+                lengths[chunks++] = length;
+
+                if (batch.size() == BATCH_SIZE) {
+                    submit(batches, batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                submit(batches, batch);
+            }
+
+            List<IGUID> guids = new ArrayList<>(chunks);
+            for(CompletableFuture<IKey[]> future:batches) {
+                for(IKey key:future.get()) {
+                    guids.add((KeyImpl) key);
+                }
+            }
+
+            return new Recipe(algorithm, guids, Arrays.copyOf(lengths, chunks));
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GUIDGenerationException) throw (GUIDGenerationException) e.getCause();
+            throw new GUIDGenerationException("Unable to hash the chunks: " + e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GUIDGenerationException("Interrupted while hashing the chunks");
+        }
+    }
+
+    /**
+     * Find the end of the chunk starting at the given offset. Either there are at least maxSize bytes available,
+     * or the available bytes are the end of the stream.
+     *
+     * @return the length of the chunk
+     */
+    int cut(byte[] buffer, int offset, int available) {
+
+        if (available <= minSize) return available;
+
+        int limit = Math.min(available, maxSize);
+        int normal = Math.min(averageSize, limit);
+
+        long hash = 0;
+        int i = minSize;
+        for(; i < normal; i++) {
+            hash = (hash << 1) + GEAR[buffer[offset + i] & 0xff];
+            if ((hash & smallMask) == 0) return i + 1;
+        }
+        for(; i < limit; i++) {
+            hash = (hash << 1) + GEAR[buffer[offset + i] & 0xff];
+            if ((hash & largeMask) == 0) return i + 1;
+        }
+
+        return limit;
+    }
+
+    private void submit(List<CompletableFuture<IKey[]>> batches, List<byte[]> batch) throws ExecutionException, InterruptedException {
+
+        // Bound the memory held by chunks waiting to be hashed
+        if (batches.size() >= MAX_BATCHES_IN_FLIGHT) {
+            batches.get(batches.size() - MAX_BATCHES_IN_FLIGHT).get();
+        }
+
+        byte[][] messages = batch.toArray(new byte[0][]);
+        batches.add(CompletableFuture.supplyAsync(() -> {
+            try {
+                return KeyFactory.generateKeys(algorithm, messages);
+            } catch (GUIDGenerationException e) {
+                throw new CompletionException(e);
+            }
+        }, executor));
+    }
+
+    private static long topBits(int bits) {
+        return -1L << (64 - bits);
+    }
+}
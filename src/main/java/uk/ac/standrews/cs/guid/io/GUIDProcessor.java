@@ -0,0 +1,249 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Computes the GUIDs of messages published as a stream of chunks.
+ *
+ * The chunks are passed downstream unchanged. The last chunk of each message is re-emitted with
+ * the GUID of the whole message attached (see {@link Chunk#guid()}).
+ * Chunks of many messages can be interleaved, each message being hashed independently.
+ *
+ * The processor never requests more chunks from upstream than the downstream demand plus the size of its buffer,
+ * so at most bufferSize chunks are held at any time.
+ * A single downstream subscriber is supported.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDProcessor implements Flow.Processor<Chunk, Chunk> {
+
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final ALGORITHM algorithm;
+    private final int bufferSize;
+
+    // Only accessed from onNext, which the upstream publisher calls serially
+    private final Map<Object, MessageDigest> digests = new HashMap<>();
+
+    private final Queue<Chunk> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicReference<Flow.Subscriber<? super Chunk>> downstream = new AtomicReference<>();
+
+    private volatile Flow.Subscription upstream;
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    public GUIDProcessor(ALGORITHM algorithm) {
+        this(algorithm, DEFAULT_BUFFER_SIZE);
+    }
+
+    public GUIDProcessor(ALGORITHM algorithm, int bufferSize) {
+        if (algorithm == null || bufferSize < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.algorithm = algorithm;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super Chunk> subscriber) {
+
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("GUIDProcessor supports only one subscriber"));
+            return;
+        }
+
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    cancelUpstream();
+                    error = new IllegalArgumentException("Non-positive request: " + n);
+                    done = true;
+                    queue.clear();
+                } else {
+                    addDemand(n);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                drain();
+            }
+        });
+
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+
+        if (upstream != null || cancelled) {
+            subscription.cancel();
+            return;
+        }
+
+        upstream = subscription;
+        subscription.request(bufferSize);
+    }
+
+    @Override
+    public void onNext(Chunk chunk) {
+        if (done || cancelled) return;
+
+        try {
+            IGUID guid = update(chunk);
+            queue.offer(guid == null ? chunk : chunk.withGUID(guid));
+        } catch (GUIDGenerationException e) {
+            cancelUpstream();
+            onError(e);
+            return;
+        }
+
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    private IGUID update(Chunk chunk) throws GUIDGenerationException {
+
+        MessageDigest digest = digests.get(chunk.message());
+        if (digest == null) {
+            digest = KeyFactory.messageDigest(algorithm);
+            digests.put(chunk.message(), digest);
+        }
+
+        if (chunk.data() != null) {
+            digest.update(chunk.data().duplicate());
+        }
+
+        if (!chunk.isLast()) return null;
+
+        digests.remove(chunk.message());
+        return (KeyImpl) KeyFactory.recreateKey(algorithm, digest.digest());
+    }
+
+    /**
+     * Emit as many queued chunks as the downstream demand allows, and replenish the upstream demand accordingly.
+     * Only one thread drains at a time. Any other thread calling drain meanwhile makes the draining thread loop again.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) return;
+
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super Chunk> subscriber = downstream.get();
+            if (subscriber != null) {
+
+                long requested = demand.get();
+                long emitted = 0;
+
+                while (emitted != requested) {
+                    if (cancelled) {
+                        queue.clear();
+                        return;
+                    }
+
+                    boolean terminated = done;
+                    Chunk chunk = queue.poll();
+                    if (terminated && chunk == null) {
+                        terminate(subscriber);
+                        return;
+                    }
+                    if (chunk == null) break;
+
+                    subscriber.onNext(chunk);
+                    emitted++;
+                }
+
+                if (cancelled) {
+                    queue.clear();
+                    return;
+                }
+
+                if (done && queue.isEmpty()) {
+                    terminate(subscriber);
+                    return;
+                }
+
+                if (emitted != 0) {
+                    if (requested != Long.MAX_VALUE) {
+                        demand.addAndGet(-emitted);
+                    }
+
+                    Flow.Subscription subscription = upstream;
+                    if (subscription != null && !done) {
+                        subscription.request(emitted);
+                    }
+                }
+            }
+
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    // Called at most once: the drain loop returns without releasing wip, so it never runs again
+    private void terminate(Flow.Subscriber<? super Chunk> subscriber) {
+        if (error != null) {
+            subscriber.onError(error);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    private void addDemand(long n) {
+        long current, next;
+        do {
+            current = demand.get();
+            if (current == Long.MAX_VALUE) return;
+
+            next = current + n;
+            if (next < 0) next = Long.MAX_VALUE;
+        } while (!demand.compareAndSet(current, next));
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.digests.UTF8Digester;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The GUIDs of the files of a directory tree.
+ *
+ * Each entry is written as one line: the multihash of the file, two spaces and the path of the file
+ * relative to the root of the tree, with '/' as separator. The entries are sorted by path.
+ *
+ * The GUID of the tree is the GUID of the manifest itself, so it can be recomputed from a written manifest.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Manifest {
+
+    private static final String SEPARATOR = "  ";
+    private static final String NEW_LINE = "\n";
+
+    private final SortedMap<String, IGUID> entries;
+    private final IGUID guid;
+
+    public Manifest(ALGORITHM algorithm, Map<String, IGUID> entries) throws GUIDGenerationException {
+        this.entries = Collections.unmodifiableSortedMap(new TreeMap<>(entries));
+
+        MessageDigest digest = KeyFactory.messageDigest(algorithm);
+        for(Map.Entry<String, IGUID> entry:this.entries.entrySet()) {
+            UTF8Digester.update(digest, line(entry));
+        }
+        this.guid = (KeyImpl) KeyFactory.recreateKey(algorithm, digest.digest());
+    }
+
+    /**
+     * @return the GUID of each file, by relative path
+     */
+    public SortedMap<String, IGUID> entries() {
+        return entries;
+    }
+
+    /**
+     * @return the GUID of the whole tree
+     */
+    public IGUID guid() {
+        return guid;
+    }
+
+    public void write(Writer writer) throws IOException {
+        for(Map.Entry<String, IGUID> entry:entries.entrySet()) {
+            writer.write(line(entry));
+        }
+        writer.flush();
+    }
+
+    public void write(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer);
+        }
+    }
+
+    private static String line(Map.Entry<String, IGUID> entry) {
+        return entry.getValue().toMultiHash() + SEPARATOR + entry.getKey() + NEW_LINE;
+    }
+}
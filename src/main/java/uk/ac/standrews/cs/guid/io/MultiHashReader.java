@@ -0,0 +1,350 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.BASE;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+import uk.ac.standrews.cs.guid.sort.GUIDBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import static uk.ac.standrews.cs.guid.IKey.MULTI_HASH_DELIMITER;
+
+/**
+ * Reads newline-delimited multihashes, as written by {@link MultiHashWriter} or by printing {@link IGUID#toMultiHash()}
+ * one per line, and delivers the digest of each line to a {@link DigestConsumer}.
+ *
+ * Files are memory-mapped in regions and each line is parsed in place: the algorithm is matched against the bytes of
+ * the algorithm names and hex digests are decoded straight from the mapped bytes into a reused array,
+ * so no String or GUID is created per line. Lines in other bases are decoded through {@link GUIDFactory#recreateGUID(String)}.
+ * Empty lines are skipped, and lines may end with \r\n.
+ *
+ * A file can be split into parts at line boundaries and the parts parsed in parallel.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class MultiHashReader {
+
+    private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_DIGEST_LENGTH = 64;
+    private static final byte DELIMITER = (byte) MULTI_HASH_DELIMITER.charAt(0);
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private static final ALGORITHM[] ALGORITHMS = ALGORITHM.values();
+    private static final byte[][] ALGORITHM_NAMES = new byte[ALGORITHMS.length][];
+
+    static {
+        for(int i = 0; i < ALGORITHMS.length; i++) {
+            ALGORITHM_NAMES[i] = ALGORITHMS[i].toString().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Receives the digests read. Called by one thread at a time when reading sequentially,
+     * and by several threads at once when reading in parallel.
+     */
+    public interface DigestConsumer {
+
+        /**
+         * @param algorithm the algorithm of the digest
+         * @param digest an array holding the digest, reused once the call returns
+         * @param length the length of the digest
+         */
+        void accept(ALGORITHM algorithm, byte[] digest, int length);
+    }
+
+    private MultiHashReader() {}
+
+    /**
+     * @param file the file to read
+     * @param consumer the consumer of the digests
+     * @return the number of digests read
+     * @throws GUIDGenerationException if a line is not a multihash
+     * @throws IOException if the file could not be read
+     */
+    public static long read(Path file, DigestConsumer consumer) throws GUIDGenerationException, IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel, 0, channel.size(), consumer);
+        }
+    }
+
+    /**
+     * Read the file into an off-heap buffer of GUIDs, which must have the algorithm of every line of the file.
+     *
+     * @return the number of digests read
+     */
+    public static long read(Path file, GUIDBuffer target) throws GUIDGenerationException, IOException {
+        return read(file, into(target));
+    }
+
+    /**
+     * Split the file into parts at line boundaries, and parse the parts in parallel.
+     * The consumer is called concurrently, and the order of the lines is not preserved across parts.
+     *
+     * @param file the file to read
+     * @param consumer the consumer of the digests, safe for concurrent use
+     * @param executor the executor parsing the parts
+     * @param parts the number of parts to split the file into
+     * @return the number of digests read
+     */
+    public static long read(Path file, DigestConsumer consumer, Executor executor, int parts) throws GUIDGenerationException, IOException {
+        if (parts < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = split(channel, parts);
+
+            List<CompletableFuture<Long>> futures = new ArrayList<>();
+            for(int i = 0; i < parts; i++) {
+                long from = boundaries[i];
+                long to = boundaries[i + 1];
+                if (from == to) continue;
+
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return read(channel, from, to, consumer);
+                    } catch (GUIDGenerationException | IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor));
+            }
+
+            long count = 0;
+            try {
+                for(CompletableFuture<Long> future:futures) {
+                    count += future.join();
+                }
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof GUIDGenerationException) throw (GUIDGenerationException) e.getCause();
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw e;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Parse the lines between the position and the limit of a buffer, e.g. a large direct buffer filled by the caller.
+     * The buffer must end at a line boundary, or with the last line of the content. Its position is not modified.
+     *
+     * @return the number of digests read
+     */
+    public static long read(ByteBuffer buffer, DigestConsumer consumer) throws GUIDGenerationException {
+        return new Parser(consumer).parse(buffer, buffer.position(), buffer.limit(), 0);
+    }
+
+    /**
+     * @return a consumer appending the digests to the buffer
+     */
+    public static DigestConsumer into(GUIDBuffer target) {
+        return (algorithm, digest, length) -> {
+            if (algorithm != target.algorithm() || length != target.width()) {
+                throw new IllegalArgumentException("Not a " + target.algorithm() + " digest");
+            }
+            target.add(digest, 0);
+        };
+    }
+
+    /**
+     * @return the offsets splitting the content of the channel into the given number of parts, each starting a line
+     */
+    static long[] split(FileChannel channel, int parts) throws IOException {
+
+        long size = channel.size();
+        long[] boundaries = new long[parts + 1];
+        boundaries[parts] = size;
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        for(int i = 1; i < parts; i++) {
+            long position = Math.max(boundaries[i - 1], size * i / parts);
+
+            // Move forward to the start of the next line
+            boolean found = position == 0;
+            while (!found && position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position - 1);
+                for(int j = 0; j < read && !found; j++) {
+                    if (buffer.get(j) == NEW_LINE) {
+                        position += j;
+                        found = true;
+                    }
+                }
+                if (!found) position += read;
+            }
+            boundaries[i] = Math.min(position, size);
+        }
+        return boundaries;
+    }
+
+    private static long read(FileChannel channel, long from, long to, DigestConsumer consumer) throws GUIDGenerationException, IOException {
+
+        Parser parser = new Parser(consumer);
+        long count = 0;
+        long position = from;
+        while (position < to) {
+            long length = Math.min(MAPPED_REGION_SIZE, to - position);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            // Only parse up to the last complete line, unless this is the end of the part
+            int end = (int) length;
+            if (position + length < to) {
+                while (end > 0 && region.get(end - 1) != NEW_LINE) {
+                    end--;
+                }
+                if (end == 0) {
+                    throw new GUIDGenerationException("Line longer than " + MAPPED_REGION_SIZE + " bytes at " + position);
+                }
+            }
+
+            count += parser.parse(region, 0, end, position);
+            position += end;
+        }
+        return count;
+    }
+
+    private static class Parser {
+
+        private final DigestConsumer consumer;
+        private final byte[] digest = new byte[MAX_DIGEST_LENGTH];
+
+        Parser(DigestConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        long parse(ByteBuffer buffer, int from, int to, long offset) throws GUIDGenerationException {
+
+            long count = 0;
+            int start = from;
+            while (start < to) {
+                int end = start;
+                while (end < to && buffer.get(end) != NEW_LINE) {
+                    end++;
+                }
+
+                int last = end;
+                if (last > start && buffer.get(last - 1) == CARRIAGE_RETURN) last--;
+                if (last > start) {
+                    line(buffer, start, last, offset);
+                    count++;
+                }
+                start = end + 1;
+            }
+            return count;
+        }
+
+        private void line(ByteBuffer buffer, int from, int to, long offset) throws GUIDGenerationException {
+
+            int first = indexOf(buffer, from, to);
+            int second = first == -1 ? -1 : indexOf(buffer, first + 1, to);
+            if (second == -1) {
+                throw malformed(offset + from);
+            }
+
+            ALGORITHM algorithm = algorithm(buffer, from, first);
+            if (algorithm == null) {
+                throw malformed(offset + from);
+            }
+
+            int base = 0;
+            for(int i = first + 1; i < second; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9 || base > 1000) throw malformed(offset + from);
+                base = base * 10 + digit;
+            }
+
+            int length;
+            if (base == BASE.HEX.getVal() || base == BASE.CANON.getVal()) {
+                length = decodeHex(buffer, second + 1, to, base == BASE.CANON.getVal());
+                if (length == -1) throw malformed(offset + from);
+            } else {
+                length = decodeOther(buffer, from, to);
+            }
+
+            consumer.accept(algorithm, digest, length);
+        }
+
+        // Canonical digests are hex with dashes
+        private int decodeHex(ByteBuffer buffer, int from, int to, boolean dashes) {
+
+            int length = 0;
+            int high = -1;
+            for(int i = from; i < to; i++) {
+                byte b = buffer.get(i);
+                if (dashes && b == '-') continue;
+
+                int nibble = Character.digit(b, 16);
+                if (nibble == -1) return -1;
+
+                if (high == -1) {
+                    high = nibble;
+                } else {
+                    if (length == digest.length) return -1;
+                    digest[length++] = (byte) ((high << 4) | nibble);
+                    high = -1;
+                }
+            }
+            return high == -1 && length > 0 ? length : -1;
+        }
+
+        private int decodeOther(ByteBuffer buffer, int from, int to) throws GUIDGenerationException {
+
+            byte[] line = new byte[to - from];
+            for(int i = 0; i < line.length; i++) {
+                line[i] = buffer.get(from + i);
+            }
+
+            IGUID guid = GUIDFactory.recreateGUID(new String(line, StandardCharsets.US_ASCII));
+            if (!(guid instanceof KeyImpl) || ((KeyImpl) guid).byteLength() > digest.length) {
+                throw new GUIDGenerationException("Invalid multihash: " + new String(line, StandardCharsets.US_ASCII));
+            }
+
+            KeyImpl key = (KeyImpl) guid;
+            for(int i = 0; i < key.byteLength(); i++) {
+                digest[i] = key.byteAt(i);
+            }
+            return key.byteLength();
+        }
+
+        private static int indexOf(ByteBuffer buffer, int from, int to) {
+            for(int i = from; i < to; i++) {
+                if (buffer.get(i) == DELIMITER) return i;
+            }
+            return -1;
+        }
+
+        private static ALGORITHM algorithm(ByteBuffer buffer, int from, int to) {
+
+            for(int a = 0; a < ALGORITHMS.length; a++) {
+                byte[] name = ALGORITHM_NAMES[a];
+                if (name.length != to - from) continue;
+
+                boolean matches = true;
+                for(int i = 0; i < name.length && matches; i++) {
+                    matches = Character.toUpperCase(buffer.get(from + i)) == name[i];
+                }
+                if (matches) return ALGORITHMS[a];
+            }
+            return null;
+        }
+
+        private static GUIDGenerationException malformed(long offset) {
+            return new GUIDGenerationException("Malformed multihash at byte " + offset);
+        }
+    }
+}
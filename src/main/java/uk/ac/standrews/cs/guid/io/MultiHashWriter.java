@@ -0,0 +1,150 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.BASE;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+import uk.ac.standrews.cs.guid.sort.GUIDBuffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static uk.ac.standrews.cs.guid.IKey.MULTI_HASH_DELIMITER;
+
+/**
+ * Writes GUIDs as newline-delimited hex multihashes, the format of {@link IGUID#toMultiHash()}.
+ *
+ * Each line is formatted in place into a large direct buffer, which is written to the channel when full,
+ * so no String is created per GUID.
+ *
+ * The writer is not thread-safe.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class MultiHashWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[][] PREFIXES = new byte[ALGORITHM.values().length][];
+
+    static {
+        for(ALGORITHM algorithm:ALGORITHM.values()) {
+            String prefix = algorithm.toString() + MULTI_HASH_DELIMITER + BASE.HEX.getVal() + MULTI_HASH_DELIMITER;
+            PREFIXES[algorithm.ordinal()] = prefix.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long count;
+
+    /**
+     * Create or truncate the file and write to it.
+     */
+    public MultiHashWriter(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * @param channel the channel to write to. It is closed when the writer is closed
+     */
+    public MultiHashWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * @param guid the GUID to write
+     * @throws IllegalArgumentException if the GUID has no digest (e.g. an invalid GUID)
+     */
+    public void write(IGUID guid) throws IOException {
+        if (!(guid instanceof KeyImpl)) {
+            throw new IllegalArgumentException("Not a digest GUID: " + guid);
+        }
+
+        KeyImpl key = (KeyImpl) guid;
+        int length = key.byteLength();
+        prefix(key.algorithm(), length);
+        for(int i = 0; i < length; i++) {
+            hex(key.byteAt(i));
+        }
+        end();
+    }
+
+    /**
+     * Write a digest without creating a GUID for it.
+     *
+     * @param algorithm the algorithm of the digest
+     * @param digest an array holding the digest
+     * @param offset the offset of the digest in the array
+     * @param length the length of the digest
+     */
+    public void write(ALGORITHM algorithm, byte[] digest, int offset, int length) throws IOException {
+        prefix(algorithm, length);
+        for(int i = 0; i < length; i++) {
+            hex(digest[offset + i]);
+        }
+        end();
+    }
+
+    /**
+     * Write all the GUIDs of an off-heap buffer, in order.
+     */
+    public void write(GUIDBuffer guids) throws IOException {
+        byte[] digest = new byte[guids.width()];
+        for(long i = 0; i < guids.size(); i++) {
+            guids.get(i, digest, 0);
+            write(guids.algorithm(), digest, 0, digest.length);
+        }
+    }
+
+    /**
+     * @return the number of lines written
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Write the buffered lines to the channel.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void prefix(ALGORITHM algorithm, int length) throws IOException {
+        byte[] prefix = PREFIXES[algorithm.ordinal()];
+        if (buffer.remaining() < prefix.length + 2 * length + 1) {
+            flush();
+        }
+        buffer.put(prefix);
+    }
+
+    private void hex(byte b) {
+        buffer.put(HEX_DIGITS[(b >>> 4) & 0xf]);
+        buffer.put(HEX_DIGITS[b & 0xf]);
+    }
+
+    private void end() {
+        buffer.put((byte) '\n');
+        count++;
+    }
+}
@@ -0,0 +1,80 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.digests.UTF8Digester;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The chunks an object was split into, in order.
+ *
+ * The GUID of the recipe is computed over one line per chunk: the multihash of the chunk, two spaces and
+ * the length of the chunk in bytes. Two objects have the same recipe GUID if and only if they were split
+ * into the same chunks.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Recipe {
+
+    private static final String SEPARATOR = "  ";
+    private static final String NEW_LINE = "\n";
+
+    private final List<IGUID> chunks;
+    private final int[] lengths;
+    private final long length;
+    private final IGUID guid;
+
+    Recipe(ALGORITHM algorithm, List<IGUID> chunks, int[] lengths) throws GUIDGenerationException {
+        this.chunks = Collections.unmodifiableList(chunks);
+        this.lengths = lengths;
+
+        long total = 0;
+        MessageDigest digest = KeyFactory.messageDigest(algorithm);
+        for(int i = 0; i < lengths.length; i++) {
+            total += lengths[i];
+            UTF8Digester.update(digest, chunks.get(i).toMultiHash() + SEPARATOR + lengths[i] + NEW_LINE);
+        }
+
+        this.length = total;
+        this.guid = (KeyImpl) KeyFactory.recreateKey(algorithm, digest.digest());
+    }
+
+    /**
+     * @return the GUIDs of the chunks, in order
+     */
+    public List<IGUID> chunks() {
+        return chunks;
+    }
+
+    /**
+     * @param index the index of the chunk
+     * @return the length in bytes of the chunk
+     */
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    /**
+     * @return the length in bytes of the whole object
+     */
+    public long length() {
+        return length;
+    }
+
+    public int size() {
+        return lengths.length;
+    }
+
+    /**
+     * @return the GUID of the recipe
+     */
+    public IGUID guid() {
+        return guid;
+    }
+}
@@ -0,0 +1,267 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.IKey;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes the GUIDs of all the regular files of a directory tree, in parallel.
+ *
+ * Small files are read whole and hashed in batches (see {@link KeyFactory#generateKeys(ALGORITHM, byte[][])}),
+ * while large files are hashed one by one through memory-mapped regions.
+ * Symbolic links are not followed.
+ *
+ * A tree hasher hashes one tree at a time.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class TreeHasher {
+
+    private static final long SMALL_FILE_SIZE = 64 * 1024;
+    private static final int MAX_BATCH_FILES = 256;
+    private static final long MAX_BATCH_BYTES = 4 * 1024 * 1024;
+    private static final long MAPPED_REGION_SIZE = 64 * 1024 * 1024;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ALGORITHM algorithm;
+    private final int threads;
+    private volatile ProgressListener listener;
+
+    private final AtomicLong files = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong lastReport = new AtomicLong();
+    private long start;
+
+    public TreeHasher(ALGORITHM algorithm) {
+        this(algorithm, Runtime.getRuntime().availableProcessors());
+    }
+
+    public TreeHasher(ALGORITHM algorithm, int threads) {
+        if (algorithm == null || threads < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.algorithm = algorithm;
+        this.threads = threads;
+    }
+
+    /**
+     * @param listener notified about once per second while hashing, and once at the end.
+     *                 It may be called from any of the hashing threads.
+     */
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Hash all the files under the given directory. If the root is a regular file, the manifest holds only that file,
+     * under its file name.
+     *
+     * @param root the root of the tree
+     * @return the manifest of the tree
+     * @throws GUIDGenerationException if a file could not be hashed
+     * @throws IOException if the tree could not be walked or a file could not be read
+     */
+    public Manifest hash(Path root) throws GUIDGenerationException, IOException {
+
+        files.set(0);
+        bytes.set(0);
+        start = System.nanoTime();
+        lastReport.set(start);
+
+        Map<String, IGUID> entries = new ConcurrentHashMap<>();
+        List<Future<?>> futures = new ArrayList<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "guid-tree-hasher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            TreeVisitor visitor = new TreeVisitor(root, executor, futures, entries);
+            Files.walkFileTree(root, visitor);
+
+            // Flushed here rather than in the visitor: the directory callbacks are not called if the root is a file
+            visitor.submitBatch();
+
+            for(Future<?> future:futures) {
+                future.get();
+            }
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof GUIDGenerationException) throw (GUIDGenerationException) cause;
+            throw new GUIDGenerationException("Unable to hash the tree: " + cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GUIDGenerationException("Interrupted while hashing the tree");
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report();
+        return new Manifest(algorithm, entries);
+    }
+
+    /**
+     * Hashes large files as they are found, and collects small files into batches.
+     */
+    private class TreeVisitor extends SimpleFileVisitor<Path> {
+
+        private final Path root;
+        private final ExecutorService executor;
+        private final List<Future<?>> futures;
+        private final Map<String, IGUID> entries;
+
+        private List<Path> batch = new ArrayList<>();
+        private long batchBytes;
+
+        TreeVisitor(Path root, ExecutorService executor, List<Future<?>> futures, Map<String, IGUID> entries) {
+            this.root = root;
+            this.executor = executor;
+            this.futures = futures;
+            this.entries = entries;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+            if (!attributes.isRegularFile()) return FileVisitResult.CONTINUE;
+
+            String name = relativeName(root, file);
+            long size = attributes.size();
+
+            if (size > SMALL_FILE_SIZE) {
+                futures.add(executor.submit(() -> {
+                    entries.put(name, hashLarge(file));
+                    progress(1, size);
+                    return null;
+                }));
+            } else {
+                batch.add(file);
+                batchBytes += size;
+                if (batch.size() == MAX_BATCH_FILES || batchBytes >= MAX_BATCH_BYTES) {
+                    submitBatch();
+                }
+            }
+
+            return FileVisitResult.CONTINUE;
+        }
+
+        void submitBatch() {
+            if (batch.isEmpty()) return;
+
+            List<Path> paths = batch;
+            futures.add(executor.submit(() -> {
+                hashSmall(root, paths, entries);
+                return null;
+            }));
+
+            batch = new ArrayList<>();
+            batchBytes = 0;
+        }
+    }
+
+    private void hashSmall(Path root, List<Path> paths, Map<String, IGUID> entries) throws IOException, GUIDGenerationException {
+
+        List<byte[]> contents = new ArrayList<>(paths.size());
+        List<String> names = new ArrayList<>(paths.size());
+        long total = 0;
+
+        for(Path path:paths) {
+            byte[] content = Files.readAllBytes(path);
+            total += content.length;
+
+            if (content.length == 0) {
+                entries.put(relativeName(root, path), emptyGUID());
+            } else {
+                contents.add(content);
+                names.add(relativeName(root, path));
+            }
+        }
+
+        if (!contents.isEmpty()) {
+            IKey[] keys = KeyFactory.generateKeys(algorithm, contents.toArray(new byte[0][]));
+            for(int i = 0; i < keys.length; i++) {
+                entries.put(names.get(i), (KeyImpl) keys[i]);
+            }
+        }
+
+        progress(paths.size(), total);
+    }
+
+    private IGUID hashLarge(Path path) throws IOException, GUIDGenerationException {
+
+        MessageDigest digest = KeyFactory.messageDigest(algorithm);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for(long position = 0; position < size; position += MAPPED_REGION_SIZE) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, size - position));
+                digest.update(region);
+            }
+        }
+
+        return (KeyImpl) KeyFactory.recreateKey(algorithm, digest.digest());
+    }
+
+    private IGUID emptyGUID() throws GUIDGenerationException {
+        return (KeyImpl) KeyFactory.recreateKey(algorithm, KeyFactory.messageDigest(algorithm).digest());
+    }
+
+    private void progress(long hashedFiles, long hashedBytes) {
+        files.addAndGet(hashedFiles);
+        bytes.addAndGet(hashedBytes);
+
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        if (now - last >= PROGRESS_INTERVAL_NANOS && lastReport.compareAndSet(last, now)) {
+            report();
+        }
+    }
+
+    private void report() {
+        ProgressListener listener = this.listener;
+        if (listener == null) return;
+
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        listener.onProgress(files.get(), bytes.get(), bytes.get() / seconds);
+    }
+
+    // A root that is a file is named by its file name
+    private static String relativeName(Path root, Path file) {
+
+        Path relative = file.equals(root) ? file.getFileName() : root.relativize(file);
+        StringBuilder builder = new StringBuilder();
+        for(Path name:relative) {
+            if (builder.length() > 0) builder.append('/');
+            builder.append(name.toString());
+        }
+        return builder.toString();
+    }
+
+    public interface ProgressListener {
+
+        /**
+         * @param files the number of files hashed so far
+         * @param bytes the number of bytes hashed so far
+         * @param bytesPerSecond the average throughput since the start
+         */
+        void onProgress(long files, long bytes, double bytesPerSecond);
+    }
+}
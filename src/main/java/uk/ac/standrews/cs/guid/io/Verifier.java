@@ -0,0 +1,144 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.exceptions.GUIDMismatchException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hashes content as it goes by and checks it against the expected GUIDs.
+ *
+ * In whole mode there is a single expected GUID, checked at the end of the content.
+ * In chunked mode the content is split at the lengths of the chunks of a {@link Recipe},
+ * and each chunk is checked as soon as its last byte is seen.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+class Verifier {
+
+    private final List<IGUID> expected;
+    private final int[] lengths;
+
+    private MessageDigest digest;
+    private int chunk;
+    private long remaining;
+    private boolean verified;
+
+    Verifier(IGUID expected) throws GUIDGenerationException {
+        this(Collections.singletonList(expected), null);
+    }
+
+    Verifier(Recipe recipe) throws GUIDGenerationException {
+        this(recipe.chunks(), lengths(recipe));
+    }
+
+    private Verifier(List<IGUID> expected, int[] lengths) throws GUIDGenerationException {
+        if (expected.isEmpty()) {
+            throw new GUIDGenerationException();
+        }
+
+        this.expected = expected;
+        this.lengths = lengths;
+        this.digest = KeyFactory.messageDigest(expected.get(0).algorithm());
+        this.remaining = lengths == null ? Long.MAX_VALUE : lengths[0];
+    }
+
+    void update(byte[] bytes, int offset, int length) throws GUIDMismatchException {
+
+        while (length > 0) {
+            int n = (int) Math.min(length, remaining);
+            if (n == 0) {
+                throw new GUIDMismatchException("Content is longer than expected");
+            }
+
+            digest.update(bytes, offset, n);
+            offset += n;
+            length -= n;
+            consumed(n);
+        }
+    }
+
+    /**
+     * Hash the bytes between the position and the limit of the buffer, leaving the buffer unchanged.
+     */
+    void update(ByteBuffer buffer) throws GUIDMismatchException {
+
+        ByteBuffer bytes = buffer.duplicate();
+        while (bytes.hasRemaining()) {
+            int n = (int) Math.min(bytes.remaining(), remaining);
+            if (n == 0) {
+                throw new GUIDMismatchException("Content is longer than expected");
+            }
+
+            ByteBuffer slice = bytes.duplicate();
+            slice.limit(slice.position() + n);
+            digest.update(slice);
+            bytes.position(bytes.position() + n);
+            consumed(n);
+        }
+    }
+
+    /**
+     * Called at the end of the content.
+     *
+     * @throws GUIDMismatchException if the content does not match, or is shorter than expected
+     */
+    void finish() throws GUIDMismatchException {
+        if (verified) return;
+
+        if (lengths == null) {
+            check();
+        } else if (chunk < lengths.length) {
+            // Chunks of length zero are not expected in a recipe, so this means the content was cut short
+            throw new GUIDMismatchException("Content is shorter than expected");
+        }
+
+        verified = true;
+    }
+
+    boolean isVerified() {
+        return verified;
+    }
+
+    private void consumed(int n) throws GUIDMismatchException {
+        if (lengths == null) return;
+
+        remaining -= n;
+        if (remaining == 0) {
+            check();
+
+            chunk++;
+            remaining = chunk < lengths.length ? lengths[chunk] : 0;
+        }
+    }
+
+    private void check() throws GUIDMismatchException {
+
+        IGUID guid = expected.get(chunk);
+        byte[] value = digest.digest();
+        IGUID actual;
+        try {
+            actual = (KeyImpl) KeyFactory.recreateKey(guid.algorithm(), value);
+        } catch (GUIDGenerationException e) {
+            throw new GUIDMismatchException("Could not hash the content with " + guid.algorithm());
+        }
+
+        if (!actual.equals(guid)) {
+            throw new GUIDMismatchException(guid, actual);
+        }
+    }
+
+    private static int[] lengths(Recipe recipe) {
+        int[] lengths = new int[recipe.size()];
+        for(int i = 0; i < lengths.length; i++) {
+            lengths[i] = recipe.length(i);
+        }
+        return lengths;
+    }
+}
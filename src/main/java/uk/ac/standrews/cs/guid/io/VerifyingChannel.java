@@ -0,0 +1,76 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.exceptions.GUIDMismatchException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A channel that checks the content read through it against the GUID it is expected to have.
+ * It behaves as {@link VerifyingInputStream}: a {@link GUIDMismatchException} is thrown by the read that reaches
+ * the end of the channel, or by the read that completes a corrupted chunk when built from a {@link Recipe}.
+ *
+ * The bytes read into direct buffers are hashed in place.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class VerifyingChannel implements ReadableByteChannel {
+
+    private final ReadableByteChannel channel;
+    private final Verifier verifier;
+
+    /**
+     * @param channel the channel to read
+     * @param expected the GUID of the whole content of the channel
+     * @throws GUIDGenerationException if the algorithm of the GUID is not supported
+     */
+    public VerifyingChannel(ReadableByteChannel channel, IGUID expected) throws GUIDGenerationException {
+        this.channel = channel;
+        this.verifier = new Verifier(expected);
+    }
+
+    /**
+     * @param channel the channel to read
+     * @param recipe the chunks the content of the channel is made of
+     * @throws GUIDGenerationException if the recipe is empty or the algorithm of its chunks is not supported
+     */
+    public VerifyingChannel(ReadableByteChannel channel, Recipe recipe) throws GUIDGenerationException {
+        this.channel = channel;
+        this.verifier = new Verifier(recipe);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+
+        int position = dst.position();
+        int read = channel.read(dst);
+        if (read == -1) {
+            verifier.finish();
+        } else if (read > 0) {
+            ByteBuffer bytes = dst.duplicate();
+            bytes.position(position).limit(position + read);
+            verifier.update(bytes);
+        }
+        return read;
+    }
+
+    /**
+     * @return true once the end of the channel has been reached and the content matched
+     */
+    public boolean isVerified() {
+        return verifier.isVerified();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
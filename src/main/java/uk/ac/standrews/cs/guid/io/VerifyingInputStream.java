@@ -0,0 +1,113 @@
+package uk.ac.standrews.cs.guid.io;
+
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.exceptions.GUIDMismatchException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that checks the content read through it against the GUID it is expected to have.
+ *
+ * The content is hashed while the consumer reads it, with the algorithm of the expected GUID,
+ * so it does not need to be buffered and hashed again once fetched.
+ * A {@link GUIDMismatchException} is thrown when the end of the stream is reached, if the content does not match.
+ * The consumer must not trust the content it has read before the end of the stream.
+ *
+ * When built from a {@link Recipe}, each chunk is checked as soon as it has been read,
+ * so corrupted content is detected without waiting for the end of the stream.
+ *
+ * Bytes skipped with {@link #skip(long)} are read and hashed. Mark and reset are not supported.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class VerifyingInputStream extends FilterInputStream {
+
+    private static final int SKIP_BUFFER_SIZE = 8 * 1024;
+
+    private final Verifier verifier;
+
+    /**
+     * @param in the stream to read
+     * @param expected the GUID of the whole content of the stream
+     * @throws GUIDGenerationException if the algorithm of the GUID is not supported
+     */
+    public VerifyingInputStream(InputStream in, IGUID expected) throws GUIDGenerationException {
+        this(in, new Verifier(expected));
+    }
+
+    /**
+     * @param in the stream to read
+     * @param recipe the chunks the content of the stream is made of
+     * @throws GUIDGenerationException if the recipe is empty or the algorithm of its chunks is not supported
+     */
+    public VerifyingInputStream(InputStream in, Recipe recipe) throws GUIDGenerationException {
+        this(in, new Verifier(recipe));
+    }
+
+    private VerifyingInputStream(InputStream in, Verifier verifier) {
+        super(in);
+        this.verifier = verifier;
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        int b = in.read();
+        if (b == -1) {
+            verifier.finish();
+        } else {
+            verifier.update(new byte[] { (byte) b }, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        int read = in.read(b, off, len);
+        if (read == -1) {
+            verifier.finish();
+        } else {
+            verifier.update(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+
+        byte[] buffer = new byte[(int) Math.min(SKIP_BUFFER_SIZE, Math.max(0, n))];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) break;
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // Not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * @return true once the end of the stream has been reached and the content matched
+     */
+    public boolean isVerified() {
+        return verifier.isVerified();
+    }
+}
@@ -0,0 +1,88 @@
+package uk.ac.standrews.cs.guid.merkle;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.digests.UTF8Digester;
+
+import java.security.MessageDigest;
+
+/**
+ * The proof that a GUID is in a {@link MerkleTree} with a given root: the hashes of the siblings of the nodes
+ * on the path from the leaf of the GUID to the root, with the bits the inner nodes of the path split on.
+ *
+ * The proof can be checked by anyone knowing the root, without the rest of the tree.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class MerkleProof {
+
+    private final ALGORITHM algorithm;
+    private final IGUID guid;
+    private final int[] bits;
+    private final byte[][] siblings;
+
+    /**
+     * @param algorithm the algorithm of the tree
+     * @param guid the GUID proved to be in the tree
+     * @param bits the bits of the inner nodes, from the leaf up to the root
+     * @param siblings the hashes of the siblings, from the leaf up to the root
+     */
+    public MerkleProof(ALGORITHM algorithm, IGUID guid, int[] bits, byte[][] siblings) {
+        if (bits.length != siblings.length) {
+            throw new IllegalArgumentException();
+        }
+
+        this.algorithm = algorithm;
+        this.guid = guid;
+        this.bits = bits.clone();
+        this.siblings = siblings.clone();
+    }
+
+    public IGUID guid() {
+        return guid;
+    }
+
+    /**
+     * @return the number of inner nodes between the leaf and the root
+     */
+    public int depth() {
+        return bits.length;
+    }
+
+    public int bit(int level) {
+        return bits[level];
+    }
+
+    public byte[] sibling(int level) {
+        return siblings[level].clone();
+    }
+
+    /**
+     * @param root the root of the tree
+     * @return true if the GUID is in the tree with the given root
+     * @throws GUIDGenerationException if the algorithm of the tree is not supported
+     */
+    public boolean verify(IGUID root) throws GUIDGenerationException {
+
+        MessageDigest digest = KeyFactory.messageDigest(algorithm);
+        digest.update(MerkleTree.LEAF);
+        UTF8Digester.update(digest, guid.toMultiHash());
+        byte[] leaf = digest.digest();
+
+        byte[] hash = leaf;
+        int previous = Integer.MAX_VALUE;
+        for(int i = 0; i < bits.length; i++) {
+            // Bits decrease towards the root in a crit-bit tree
+            if (bits[i] >= previous || bits[i] < 0 || bits[i] >= leaf.length * 8) return false;
+            previous = bits[i];
+
+            hash = MerkleTree.bit(leaf, bits[i]) == 0 ?
+                    MerkleTree.innerHash(digest, bits[i], hash, siblings[i]) :
+                    MerkleTree.innerHash(digest, bits[i], siblings[i], hash);
+        }
+
+        return root.equals(KeyFactory.recreateKey(algorithm, hash));
+    }
+}
@@ -0,0 +1,371 @@
+package uk.ac.standrews.cs.guid.merkle;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.digests.UTF8Digester;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A Merkle tree over a set of GUIDs, whose root GUID changes with any change to the set.
+ *
+ * Each GUID is a leaf, hashed as 0x00 followed by its multihash. The leaves are arranged in a crit-bit tree over
+ * their hashes: each inner node splits its leaves on the first bit where their hashes differ, and is hashed as
+ * 0x01, the index of that bit, and the hashes of its two children. The shape of the tree only depends on the set
+ * of GUIDs, not on the order they were added in, so two equal sets have the same root.
+ * Leaf hashes are uniformly distributed, so the tree is balanced on average and inserting, updating
+ * or deleting a GUID rehashes O(log n) nodes.
+ *
+ * The nodes are immutable and every change replaces the path to the root. Changes must not be concurrent,
+ * but reads can run concurrently with a change and see the tree either before or after it.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class MerkleTree {
+
+    static final byte LEAF = 0x00;
+    static final byte INNER = 0x01;
+
+    private static final int PARALLEL_THRESHOLD = 4 * 1024;
+
+    private final ALGORITHM algorithm;
+    private final ThreadLocal<MessageDigest> digests;
+    private volatile Node root;
+
+    /**
+     * Create an empty tree.
+     *
+     * @param algorithm the algorithm used to hash the nodes of the tree
+     * @throws GUIDGenerationException if the algorithm is not supported
+     */
+    public MerkleTree(ALGORITHM algorithm) throws GUIDGenerationException {
+        KeyFactory.messageDigest(algorithm);
+
+        this.algorithm = algorithm;
+        this.digests = ThreadLocal.withInitial(() -> digest(algorithm));
+    }
+
+    /**
+     * Build a tree over the given GUIDs. The leaves are hashed, and the subtrees built, in parallel.
+     *
+     * @param algorithm the algorithm used to hash the nodes of the tree
+     * @param guids the GUIDs of the tree. Duplicates are ignored
+     * @return the tree
+     * @throws GUIDGenerationException if the algorithm is not supported
+     */
+    public static MerkleTree build(ALGORITHM algorithm, Collection<IGUID> guids) throws GUIDGenerationException {
+
+        MerkleTree tree = new MerkleTree(algorithm);
+
+        Leaf[] leaves = guids.parallelStream()
+                .map(tree::leaf)
+                .sorted((a, b) -> Arrays.compareUnsigned(a.hash, b.hash))
+                .toArray(Leaf[]::new);
+
+        int count = 0;
+        for(int i = 0; i < leaves.length; i++) {
+            if (count == 0 || !Arrays.equals(leaves[count - 1].hash, leaves[i].hash)) {
+                leaves[count++] = leaves[i];
+            }
+        }
+
+        if (count > 0) {
+            tree.root = ForkJoinPool.commonPool().invoke(tree.new Build(leaves, 0, count));
+        }
+        return tree;
+    }
+
+    public ALGORITHM algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the root of the tree, or the hash of no bytes if the tree is empty
+     */
+    public IGUID root() {
+        Node node = root;
+        byte[] hash = node == null ? digests.get().digest() : node.hash;
+        return key(algorithm, hash);
+    }
+
+    /**
+     * @return the number of GUIDs in the tree
+     */
+    public int size() {
+        Node node = root;
+        return node == null ? 0 : node.size;
+    }
+
+    public boolean contains(IGUID guid) {
+        Node node = root;
+        if (node == null) return false;
+
+        byte[] hash = leafHash(guid);
+        return Arrays.equals(closest(node, hash).hash, hash);
+    }
+
+    /**
+     * @param guid the GUID to add
+     * @return true if the GUID was not in the tree
+     */
+    public boolean insert(IGUID guid) {
+
+        Leaf leaf = leaf(guid);
+        Node node = root;
+        if (node == null) {
+            root = leaf;
+            return true;
+        }
+
+        byte[] closest = closest(node, leaf.hash).hash;
+        int crit = firstDifference(closest, leaf.hash);
+        if (crit == -1) return false;
+
+        root = insert(node, leaf, crit);
+        return true;
+    }
+
+    /**
+     * @param guid the GUID to remove
+     * @return true if the GUID was in the tree
+     */
+    public boolean delete(IGUID guid) {
+
+        Node node = root;
+        if (node == null) return false;
+
+        Node result = delete(node, leafHash(guid));
+        if (result == node) return false;
+
+        root = result;
+        return true;
+    }
+
+    /**
+     * Replace a GUID with another, e.g. a new version of a member of the collection.
+     *
+     * @param previous the GUID to remove
+     * @param guid the GUID to add
+     * @return true if the previous GUID was in the tree
+     */
+    public boolean update(IGUID previous, IGUID guid) {
+        if (!delete(previous)) return false;
+
+        insert(guid);
+        return true;
+    }
+
+    /**
+     * @param guid a GUID of the tree
+     * @return the proof that the GUID is in the tree, or null if it is not
+     */
+    public MerkleProof proof(IGUID guid) {
+
+        Node node = root;
+        if (node == null) return null;
+
+        byte[] hash = leafHash(guid);
+        List<Inner> path = new ArrayList<>();
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            path.add(inner);
+            node = bit(hash, inner.bit) == 0 ? inner.left : inner.right;
+        }
+
+        if (!Arrays.equals(node.hash, hash)) return null;
+
+        int[] bits = new int[path.size()];
+        byte[][] siblings = new byte[path.size()][];
+        for(int i = 0; i < bits.length; i++) {
+            Inner inner = path.get(path.size() - 1 - i);
+            bits[i] = inner.bit;
+            siblings[i] = (bit(hash, inner.bit) == 0 ? inner.right : inner.left).hash;
+        }
+
+        return new MerkleProof(algorithm, guid, bits, siblings);
+    }
+
+    private Node insert(Node node, Leaf leaf, int crit) {
+
+        if (node instanceof Leaf || ((Inner) node).bit > crit) {
+            return bit(leaf.hash, crit) == 0 ? inner(crit, leaf, node) : inner(crit, node, leaf);
+        }
+
+        Inner inner = (Inner) node;
+        if (bit(leaf.hash, inner.bit) == 0) {
+            return inner(inner.bit, insert(inner.left, leaf, crit), inner.right);
+        } else {
+            return inner(inner.bit, inner.left, insert(inner.right, leaf, crit));
+        }
+    }
+
+    // Returns the node itself if the leaf is not under it, and null if the node was the leaf
+    private Node delete(Node node, byte[] hash) {
+
+        if (node instanceof Leaf) {
+            return Arrays.equals(node.hash, hash) ? null : node;
+        }
+
+        Inner inner = (Inner) node;
+        boolean left = bit(hash, inner.bit) == 0;
+        Node child = left ? inner.left : inner.right;
+        Node result = delete(child, hash);
+
+        if (result == child) return node;
+        if (result == null) return left ? inner.right : inner.left;
+        return left ? inner(inner.bit, result, inner.right) : inner(inner.bit, inner.left, result);
+    }
+
+    private static Node closest(Node node, byte[] hash) {
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            node = bit(hash, inner.bit) == 0 ? inner.left : inner.right;
+        }
+        return node;
+    }
+
+    private Leaf leaf(IGUID guid) {
+        return new Leaf(leafHash(guid));
+    }
+
+    private byte[] leafHash(IGUID guid) {
+        MessageDigest digest = digests.get();
+        digest.update(LEAF);
+        UTF8Digester.update(digest, guid.toMultiHash());
+        return digest.digest();
+    }
+
+    private Inner inner(int bit, Node left, Node right) {
+        return new Inner(innerHash(digests.get(), bit, left.hash, right.hash), bit, left, right);
+    }
+
+    static byte[] innerHash(MessageDigest digest, int bit, byte[] left, byte[] right) {
+        digest.update(INNER);
+        digest.update((byte) (bit >>> 8));
+        digest.update((byte) bit);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    /**
+     * @return the bit at the given index, counting from the most significant bit of the first byte
+     */
+    static int bit(byte[] hash, int index) {
+        return (hash[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    /**
+     * @return the index of the first bit where the hashes differ, or -1 if they are equal
+     */
+    private static int firstDifference(byte[] a, byte[] b) {
+        int i = Arrays.mismatch(a, b);
+        if (i == -1) return -1;
+
+        return (i << 3) + Integer.numberOfLeadingZeros((a[i] ^ b[i]) & 0xff) - 24;
+    }
+
+    static IGUID key(ALGORITHM algorithm, byte[] hash) {
+        try {
+            return (KeyImpl) KeyFactory.recreateKey(algorithm, hash);
+        } catch (GUIDGenerationException e) {
+            // The algorithm was checked when the tree was created
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest digest(ALGORITHM algorithm) {
+        try {
+            return KeyFactory.messageDigest(algorithm);
+        } catch (GUIDGenerationException e) {
+            // The algorithm was checked when the tree was created
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Builds the subtree of a sorted range of distinct leaves.
+     * All the leaves of the range agree up to the first bit where the first and last leaf differ,
+     * and the range is split at the first leaf with that bit set.
+     */
+    private class Build extends RecursiveTask<Node> {
+
+        private final Leaf[] leaves;
+        private final int from;
+        private final int to;
+
+        Build(Leaf[] leaves, int from, int to) {
+            this.leaves = leaves;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Node compute() {
+            if (to - from == 1) return leaves[from];
+
+            int crit = firstDifference(leaves[from].hash, leaves[to - 1].hash);
+            int low = from + 1;
+            int high = to - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (bit(leaves[mid].hash, crit) == 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            Build left = new Build(leaves, from, low);
+            Build right = new Build(leaves, low, to);
+            if (to - from < PARALLEL_THRESHOLD) {
+                return inner(crit, left.compute(), right.compute());
+            }
+
+            right.fork();
+            Node leftNode = left.compute();
+            return inner(crit, leftNode, right.join());
+        }
+    }
+
+    private abstract static class Node {
+
+        final byte[] hash;
+        final int size;
+
+        Node(byte[] hash, int size) {
+            this.hash = hash;
+            this.size = size;
+        }
+    }
+
+    private static class Leaf extends Node {
+
+        Leaf(byte[] hash) {
+            super(hash, 1);
+        }
+    }
+
+    private static class Inner extends Node {
+
+        final int bit;
+        final Node left;
+        final Node right;
+
+        Inner(byte[] hash, int bit, Node left, Node right) {
+            super(hash, left.size + right.size);
+            this.bit = bit;
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for the time taken to obtain the random seed of a random GUID.
+ * Creating and seeding a SecureRandom may block while the operating system gathers entropy.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+@Name("uk.ac.standrews.cs.guid.EntropyWait")
+@Label("Random GUID Entropy Wait")
+@Category({ "GUID" })
+@Description("Creation and seeding of the SecureRandom of a random GUID")
+@Threshold("10 ms")
+@StackTrace(true)
+public class EntropyWaitEvent extends Event {
+
+    @Label("SecureRandom Algorithm")
+    String secureRandom;
+
+    /**
+     * @return a new event, started
+     */
+    public static EntropyWaitEvent start() {
+        EntropyWaitEvent event = new EntropyWaitEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the event and commit it if it is enabled and longer than its threshold.
+     */
+    public void finish(String secureRandom) {
+        end();
+        if (shouldCommit()) {
+            this.secureRandom = secureRandom;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import jdk.jfr.*;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.StringJoiner;
+
+/**
+ * JFR event for the hashing of a whole file, with its throughput.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+@Name("uk.ac.standrews.cs.guid.FileHash")
+@Label("File Hash")
+@Category({ "GUID" })
+@Description("Hashing of a file, with one or more algorithms")
+@Threshold("10 ms")
+@StackTrace(false)
+public class FileHashEvent extends Event {
+
+    @Label("Path")
+    String path;
+
+    @Label("Algorithms")
+    String algorithms;
+
+    @Label("Bytes")
+    @Description("The size of the file")
+    @DataAmount
+    long bytes;
+
+    @Label("Throughput")
+    @DataAmount
+    @Frequency
+    long throughput;
+
+    // Not recorded: the start of the event, for the throughput
+    private transient long start;
+
+    /**
+     * @return a new event, started
+     */
+    public static FileHashEvent start() {
+        FileHashEvent event = new FileHashEvent();
+        if (event.isEnabled()) {
+            event.start = System.nanoTime();
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the event and commit it if it is enabled and longer than its threshold.
+     *
+     * @param file the file hashed
+     * @param algorithm the algorithm the file was hashed with
+     */
+    public void finish(File file, ALGORITHM algorithm) {
+        end();
+        if (shouldCommit()) {
+            commit(file, algorithm.toString());
+        }
+    }
+
+    /**
+     * End the event of a file hashed with several algorithms at once.
+     */
+    public void finish(File file, Collection<ALGORITHM> algorithms) {
+        end();
+        if (shouldCommit()) {
+            StringJoiner joiner = new StringJoiner(",");
+            for(ALGORITHM algorithm:algorithms) {
+                joiner.add(algorithm.toString());
+            }
+            commit(file, joiner.toString());
+        }
+    }
+
+    private void commit(File file, String algorithms) {
+        long nanos = System.nanoTime() - start;
+
+        this.path = file.getPath();
+        this.algorithms = algorithms;
+        this.bytes = file.length();
+        this.throughput = nanos > 0 ? (long) (bytes * 1e9 / nanos) : 0;
+        commit();
+    }
+}
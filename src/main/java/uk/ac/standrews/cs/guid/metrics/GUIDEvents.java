@@ -0,0 +1,45 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import jdk.jfr.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * The JFR events of the library:
+ * {@link GenerateGUIDEvent}, {@link FileHashEvent}, {@link EntropyWaitEvent} and {@link RecreateGUIDFailureEvent}.
+ *
+ * Their settings are in the guid.jfc profile, at the root of the jar. The events are emitted whether or not
+ * {@link GUIDMetrics} are enabled, as long as a recording enables them.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDEvents {
+
+    public static final String SETTINGS = "/guid.jfc";
+
+    // Suppresses default constructor, ensuring non-instantiability.
+    private GUIDEvents() {}
+
+    /**
+     * @return the guid.jfc settings, e.g. for new Recording(GUIDEvents.configuration())
+     * @throws IOException if the settings could not be read
+     */
+    public static Configuration configuration() throws IOException {
+
+        InputStream settings = GUIDEvents.class.getResourceAsStream(SETTINGS);
+        if (settings == null) {
+            throw new IOException("Missing JFR settings: " + SETTINGS);
+        }
+
+        try (Reader reader = new InputStreamReader(settings, StandardCharsets.UTF_8)) {
+            return Configuration.create(reader);
+        } catch (ParseException e) {
+            throw new IOException("Invalid JFR settings: " + SETTINGS, e);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional metrics of the GUIDs generated by {@link uk.ac.standrews.cs.guid.impl.KeyFactory} and parsed by
+ * {@link uk.ac.standrews.cs.guid.GUIDFactory#recreateGUID(String)}.
+ *
+ * For each algorithm and kind of input it counts the calls and bytes hashed, and records the latency of the calls
+ * in a {@link LatencyHistogram}. It also counts the multihashes that could not be parsed.
+ * The metrics can be read here, through {@link MetricsListener}s, or over JMX once {@link #registerMBean()} is called.
+ *
+ * Metrics are disabled by default. While disabled, an instrumented call only reads a volatile flag:
+ * it does not read the clock, count or notify anything.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDMetrics {
+
+    /**
+     * Returned by {@link #start()} while metrics are disabled
+     */
+    public static final long DISABLED = Long.MIN_VALUE;
+
+    private static final String OBJECT_NAME = "uk.ac.standrews.cs.guid:type=GUIDMetrics";
+
+    private static volatile boolean enabled;
+
+    private static final Series[][] SERIES = new Series[ALGORITHM.values().length][InputType.values().length];
+    private static final LongAdder PARSE_FAILURES = new LongAdder();
+    private static final List<MetricsListener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    static {
+        for(ALGORITHM algorithm:ALGORITHM.values()) {
+            for(InputType input:InputType.values()) {
+                SERIES[algorithm.ordinal()][input.ordinal()] = new Series();
+            }
+        }
+    }
+
+    // Suppresses default constructor, ensuring non-instantiability.
+    private GUIDMetrics() {}
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        GUIDMetrics.enabled = enabled;
+    }
+
+    public static void addListener(MetricsListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(MetricsListener listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Start timing a call, to be ended by {@link #record(ALGORITHM, InputType, long, long)}.
+     *
+     * @return the start time of the call, or {@link #DISABLED}
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    /**
+     * Record a call started with {@link #start()}. Nothing is recorded if metrics were disabled when the call started.
+     *
+     * @param algorithm the algorithm of the GUID
+     * @param input the kind of input
+     * @param bytes the number of bytes hashed
+     * @param start the value returned by {@link #start()}
+     */
+    public static void record(ALGORITHM algorithm, InputType input, long bytes, long start) {
+        if (start == DISABLED) return;
+
+        long nanos = System.nanoTime() - start;
+        Series series = SERIES[algorithm.ordinal()][input.ordinal()];
+        series.calls.increment();
+        series.bytes.add(bytes);
+        series.latency.record(nanos);
+
+        for(MetricsListener listener:LISTENERS) {
+            listener.onHash(algorithm, input, bytes, nanos);
+        }
+    }
+
+    /**
+     * Record a multihash that could not be parsed.
+     */
+    public static void recordParseFailure(String multihash) {
+        if (!enabled) return;
+
+        PARSE_FAILURES.increment();
+        for(MetricsListener listener:LISTENERS) {
+            listener.onParseFailure(multihash);
+        }
+    }
+
+    public static SeriesSnapshot snapshot(ALGORITHM algorithm, InputType input) {
+        Series series = SERIES[algorithm.ordinal()][input.ordinal()];
+        return new SeriesSnapshot(algorithm, input, series.calls.sum(), series.bytes.sum(), series.latency.snapshot());
+    }
+
+    /**
+     * @return the series with at least one call
+     */
+    public static List<SeriesSnapshot> snapshot() {
+
+        List<SeriesSnapshot> snapshots = new ArrayList<>();
+        for(ALGORITHM algorithm:ALGORITHM.values()) {
+            for(InputType input:InputType.values()) {
+                if (SERIES[algorithm.ordinal()][input.ordinal()].calls.sum() > 0) {
+                    snapshots.add(snapshot(algorithm, input));
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    public static long parseFailures() {
+        return PARSE_FAILURES.sum();
+    }
+
+    /**
+     * Clear all the metrics. Calls recorded concurrently may be kept or lost.
+     */
+    public static void reset() {
+        for(Series[] row:SERIES) {
+            for(Series series:row) {
+                series.calls.reset();
+                series.bytes.reset();
+                series.latency.reset();
+            }
+        }
+        PARSE_FAILURES.reset();
+    }
+
+    /**
+     * Register the metrics with the platform MBean server, if they are not registered already.
+     *
+     * @return the name of the MBean
+     * @throws JMException if the MBean could not be registered
+     */
+    public static ObjectName registerMBean() throws JMException {
+
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new MXBean(), name);
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered already
+        }
+        return name;
+    }
+
+    private static class Series {
+        final LongAdder calls = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    private static class MXBean implements GUIDMetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return GUIDMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            GUIDMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public long getCalls() {
+            long calls = 0;
+            for(Series[] row:SERIES) {
+                for(Series series:row) {
+                    calls += series.calls.sum();
+                }
+            }
+            return calls;
+        }
+
+        @Override
+        public long getBytes() {
+            long bytes = 0;
+            for(Series[] row:SERIES) {
+                for(Series series:row) {
+                    bytes += series.bytes.sum();
+                }
+            }
+            return bytes;
+        }
+
+        @Override
+        public long getParseFailures() {
+            return GUIDMetrics.parseFailures();
+        }
+
+        @Override
+        public List<SeriesSnapshot> getSeries() {
+            return GUIDMetrics.snapshot();
+        }
+
+        @Override
+        public void reset() {
+            GUIDMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import java.util.List;
+
+/**
+ * The JMX view of {@link GUIDMetrics}, registered with {@link GUIDMetrics#registerMBean()}.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public interface GUIDMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getCalls();
+
+    long getBytes();
+
+    long getParseFailures();
+
+    /**
+     * @return the series with at least one call
+     */
+    List<SeriesSnapshot> getSeries();
+
+    void reset();
+}
@@ -0,0 +1,77 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import jdk.jfr.*;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+
+import java.util.Collection;
+import java.util.StringJoiner;
+
+/**
+ * JFR event for the generation of a GUID, i.e. the hashing of its input.
+ *
+ * Only calls longer than the threshold (1 ms by default, see guid.jfc) are recorded, so the event can be left
+ * enabled. When it is disabled, {@link #start()} and {@link #finish(ALGORITHM, InputType, long)} do nothing,
+ * and the JIT removes the event altogether.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+@Name("uk.ac.standrews.cs.guid.GenerateGUID")
+@Label("Generate GUID")
+@Category({ "GUID" })
+@Description("Hashing of the input of a GUID")
+@Threshold("1 ms")
+@StackTrace(false)
+public class GenerateGUIDEvent extends Event {
+
+    @Label("Algorithm")
+    @Description("The algorithm, or the comma-separated algorithms of an input hashed with several at once")
+    String algorithm;
+
+    @Label("Input")
+    @Description("The kind of input: bytes, chars, stream, buffer, channel or batch")
+    String input;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * @return a new event, started
+     */
+    public static GenerateGUIDEvent start() {
+        GenerateGUIDEvent event = new GenerateGUIDEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the event and commit it if it is enabled and longer than its threshold.
+     */
+    public void finish(ALGORITHM algorithm, InputType input, long bytes) {
+        end();
+        if (shouldCommit()) {
+            commit(algorithm.toString(), input, bytes);
+        }
+    }
+
+    /**
+     * End the event of an input hashed with several algorithms at once.
+     */
+    public void finish(Collection<ALGORITHM> algorithms, InputType input, long bytes) {
+        end();
+        if (shouldCommit()) {
+            StringJoiner joiner = new StringJoiner(",");
+            for(ALGORITHM algorithm:algorithms) {
+                joiner.add(algorithm.toString());
+            }
+            commit(joiner.toString(), input, bytes);
+        }
+    }
+
+    private void commit(String algorithm, InputType input, long bytes) {
+        this.algorithm = algorithm;
+        this.input = input.name();
+        this.bytes = bytes;
+        commit();
+    }
+}
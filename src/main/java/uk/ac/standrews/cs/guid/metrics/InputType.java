@@ -0,0 +1,18 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+/**
+ * The kinds of input GUIDs are generated from, as recorded by {@link GUIDMetrics}.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public enum InputType {
+
+    BYTES,
+    CHARS,
+    STREAM,
+    BUFFER,
+    CHANNEL,
+
+    // Many messages at once, with generateGUIDs
+    BATCH
+}
@@ -0,0 +1,167 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A histogram of durations in nanoseconds, with buckets of bounded relative width as in HdrHistogram.
+ *
+ * Values below 16 have a bucket each. Above, each power of two is split in 8 buckets, so any value is
+ * reported within 12.5% of its actual value, from nanoseconds to hours, with 488 buckets.
+ *
+ * The counts are striped over a fixed number of cells, picked by a hash of the recording thread, so threads
+ * on different cores rarely contend on a counter. A cell is only allocated once a thread records into it,
+ * and the memory of the histogram does not grow with the number of threads that have ever recorded.
+ * The cells are merged when the histogram is read.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+    static final int BUCKETS = index(Long.MAX_VALUE) + 1;
+
+    // A power of two, at least the number of processors, at most 16
+    static final int STRIPES = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    /**
+     * @param nanos a duration. Negative durations are recorded as 0
+     */
+    public void record(long nanos) {
+        stripe().incrementAndGet(index(Math.max(0, nanos)));
+    }
+
+    /**
+     * @return the counts of all the threads, merged
+     */
+    public Snapshot snapshot() {
+
+        long[] counts = new long[BUCKETS];
+        for(int s = 0; s < STRIPES; s++) {
+            AtomicLongArray recorded = stripes.get(s);
+            if (recorded == null) continue;
+
+            for(int i = 0; i < BUCKETS; i++) {
+                counts[i] += recorded.get(i);
+            }
+        }
+        return new Snapshot(counts);
+    }
+
+    /**
+     * Clear the histogram. Values recorded concurrently may be kept or lost.
+     */
+    public void reset() {
+        for(int s = 0; s < STRIPES; s++) {
+            AtomicLongArray recorded = stripes.get(s);
+            if (recorded == null) continue;
+
+            for(int i = 0; i < BUCKETS; i++) {
+                recorded.set(i, 0);
+            }
+        }
+    }
+
+    // The number of cells allocated so far, never more than STRIPES
+    int allocatedStripes() {
+        int allocated = 0;
+        for(int s = 0; s < STRIPES; s++) {
+            if (stripes.get(s) != null) allocated++;
+        }
+        return allocated;
+    }
+
+    private AtomicLongArray stripe() {
+        int s = stripe(Thread.currentThread().getId());
+        AtomicLongArray counts = stripes.get(s);
+        if (counts == null) {
+            stripes.compareAndSet(s, null, new AtomicLongArray(BUCKETS));
+            counts = stripes.get(s);
+        }
+        return counts;
+    }
+
+    // Thread ids are sequential: spread them so that neighbouring threads land on different cells
+    private static int stripe(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (STRIPES - 1);
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS + 1;
+        return exponent * HALF + (int) (value >>> exponent);
+    }
+
+    // The highest value of the bucket
+    static long highest(int index) {
+        int exponent = Math.max(0, index / HALF - 1);
+        long mantissa = index - (long) exponent * HALF;
+        return ((mantissa + 1) << exponent) - 1;
+    }
+
+    /**
+     * The merged counts of a histogram at some point in time.
+     */
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+
+        Snapshot(long[] counts) {
+            this.counts = counts;
+
+            long count = 0;
+            for(long c:counts) {
+                count += c;
+            }
+            this.count = count;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @param percentile from 0 to 100
+         * @return the value below which the given percentage of the values are, or 0 if the histogram is empty
+         */
+        public long valueAtPercentile(double percentile) {
+            if (count == 0) return 0;
+
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for(int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return highest(i);
+            }
+            return max();
+        }
+
+        public long max() {
+            for(int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) return highest(i);
+            }
+            return 0;
+        }
+
+        public double mean() {
+            if (count == 0) return 0;
+
+            double total = 0;
+            for(int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    // The middle of the bucket
+                    long low = i == 0 ? 0 : highest(i - 1) + 1;
+                    total += counts[i] * ((low + highest(i)) / 2.0);
+                }
+            }
+            return total / count;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+
+/**
+ * Notified of every event recorded by {@link GUIDMetrics}, while metrics are enabled.
+ * Listeners are called on the thread that generated the GUID, so they must be quick and thread-safe.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public interface MetricsListener {
+
+    /**
+     * @param algorithm the algorithm of the GUID
+     * @param input the kind of input
+     * @param bytes the number of bytes hashed
+     * @param nanos the time taken to hash them
+     */
+    default void onHash(ALGORITHM algorithm, InputType input, long bytes, long nanos) {}
+
+    /**
+     * @param multihash the string that could not be parsed by recreateGUID
+     */
+    default void onParseFailure(String multihash) {}
+}
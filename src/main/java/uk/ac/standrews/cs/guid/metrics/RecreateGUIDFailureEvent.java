@@ -0,0 +1,39 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * JFR event for a multihash that {@link uk.ac.standrews.cs.guid.GUIDFactory#recreateGUID(String)} could not parse.
+ * The stack trace shows where the multihash came from.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+@Name("uk.ac.standrews.cs.guid.RecreateGUIDFailure")
+@Label("Recreate GUID Failure")
+@Category({ "GUID" })
+@Description("A multihash that could not be parsed")
+@StackTrace(true)
+public class RecreateGUIDFailureEvent extends Event {
+
+    // Longer inputs are truncated, so that a huge invalid input does not flood the recording
+    private static final int MAX_LENGTH = 256;
+
+    @Label("Multihash")
+    String multihash;
+
+    @Label("Length")
+    @Description("The length of the whole multihash")
+    int length;
+
+    public static void record(String multihash) {
+
+        RecreateGUIDFailureEvent event = new RecreateGUIDFailureEvent();
+        if (event.shouldCommit()) {
+            if (multihash != null) {
+                event.multihash = multihash.length() > MAX_LENGTH ? multihash.substring(0, MAX_LENGTH) : multihash;
+                event.length = multihash.length();
+            }
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+
+/**
+ * The metrics of the GUIDs generated with one algorithm from one kind of input.
+ * Its getters make it an open type, so it is also how the series are shown over JMX.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class SeriesSnapshot {
+
+    private final ALGORITHM algorithm;
+    private final InputType input;
+    private final long calls;
+    private final long bytes;
+    private final LatencyHistogram.Snapshot latency;
+
+    SeriesSnapshot(ALGORITHM algorithm, InputType input, long calls, long bytes, LatencyHistogram.Snapshot latency) {
+        this.algorithm = algorithm;
+        this.input = input;
+        this.calls = calls;
+        this.bytes = bytes;
+        this.latency = latency;
+    }
+
+    public String getAlgorithm() {
+        return algorithm.toString();
+    }
+
+    public String getInput() {
+        return input.name();
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public double getMeanNanos() {
+        return latency.mean();
+    }
+
+    public long getMedianNanos() {
+        return latency.valueAtPercentile(50);
+    }
+
+    public long getP99Nanos() {
+        return latency.valueAtPercentile(99);
+    }
+
+    public long getMaxNanos() {
+        return latency.max();
+    }
+
+    /**
+     * @return the full latency histogram, in nanoseconds
+     */
+    public LatencyHistogram.Snapshot latency() {
+        return latency;
+    }
+}
@@ -0,0 +1,181 @@
+package uk.ac.standrews.cs.guid.sort;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An off-heap list of the digests of GUIDs of one algorithm, stored back to back in direct buffers.
+ *
+ * A GUID takes exactly the length of its digest, with no object header or reference, and the digests are
+ * outside the garbage-collected heap, so hundreds of millions of GUIDs can be held and sorted.
+ * The digests are split across buffers of up to 1GB, since a single buffer cannot exceed 2GB.
+ *
+ * The buffer is not thread-safe.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDBuffer {
+
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    private final ALGORITHM algorithm;
+    private final int width;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final ByteBuffer[] segments;
+    private final long capacity;
+    private long size;
+
+    /**
+     * @param algorithm the algorithm of the GUIDs
+     * @param capacity the maximum number of GUIDs of the buffer
+     * @throws GUIDGenerationException if the algorithm is not supported
+     */
+    public GUIDBuffer(ALGORITHM algorithm, long capacity) throws GUIDGenerationException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.algorithm = algorithm;
+        this.width = KeyFactory.messageDigest(algorithm).getDigestLength();
+        this.capacity = capacity;
+
+        // A power of two of GUIDs per segment, so the segment of a GUID is found with a shift
+        int perSegment = Integer.highestOneBit(SEGMENT_BYTES / width);
+        this.segmentShift = Integer.numberOfTrailingZeros(perSegment);
+        this.segmentMask = perSegment - 1;
+        this.segments = new ByteBuffer[(int) ((capacity + perSegment - 1) >>> segmentShift)];
+    }
+
+    public ALGORITHM algorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @return the length in bytes of each digest
+     */
+    public int width() {
+        return width;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * @param guid the GUID to append
+     * @throws IllegalArgumentException if the GUID is not of the algorithm of the buffer
+     * @throws IllegalStateException if the buffer is full
+     */
+    public void add(IGUID guid) {
+        if (!(guid instanceof KeyImpl) || guid.algorithm() != algorithm || ((KeyImpl) guid).byteLength() != width) {
+            throw new IllegalArgumentException("Not a " + algorithm + " GUID: " + guid);
+        }
+
+        add(((KeyImpl) guid).bytes(), 0);
+    }
+
+    /**
+     * Append a digest without creating a GUID for it.
+     *
+     * @param digests an array holding the digest
+     * @param offset the offset of the digest in the array
+     * @throws IllegalStateException if the buffer is full
+     */
+    public void add(byte[] digests, int offset) {
+        if (size == capacity) {
+            throw new IllegalStateException("Buffer full");
+        }
+
+        ByteBuffer segment = segment(size);
+        int position = position(size);
+        for(int i = 0; i < width; i++) {
+            segment.put(position + i, digests[offset + i]);
+        }
+        size++;
+    }
+
+    /**
+     * @param index the index of the GUID
+     * @return the GUID at the given index
+     */
+    public IGUID get(long index) throws GUIDGenerationException {
+        byte[] digest = new byte[width];
+        get(index, digest, 0);
+        return (KeyImpl) KeyFactory.recreateKey(algorithm, digest);
+    }
+
+    /**
+     * Copy a digest to an array, without creating a GUID for it.
+     */
+    public void get(long index, byte[] digest, int offset) {
+        checkIndex(index);
+
+        ByteBuffer segment = segment(index);
+        int position = position(index);
+        for(int i = 0; i < width; i++) {
+            digest[offset + i] = segment.get(position + i);
+        }
+    }
+
+    /**
+     * Sort the GUIDs of the buffer, in the order of {@link GUIDComparator}.
+     */
+    public void sort() {
+        RadixSort.sort(this);
+    }
+
+    int byteAt(long index, int depth) {
+        return segment(index).get(position(index) + depth) & 0xff;
+    }
+
+    void swap(long i, long j) {
+
+        ByteBuffer a = segment(i);
+        ByteBuffer b = segment(j);
+        int x = position(i);
+        int y = position(j);
+
+        int d = 0;
+        for(; d + Long.BYTES <= width; d += Long.BYTES) {
+            long t = a.getLong(x + d);
+            a.putLong(x + d, b.getLong(y + d));
+            b.putLong(y + d, t);
+        }
+        for(; d < width; d++) {
+            byte t = a.get(x + d);
+            a.put(x + d, b.get(y + d));
+            b.put(y + d, t);
+        }
+    }
+
+    private ByteBuffer segment(long index) {
+        int s = (int) (index >>> segmentShift);
+        ByteBuffer segment = segments[s];
+        if (segment == null) {
+            long remaining = capacity - ((long) s << segmentShift);
+            segment = ByteBuffer.allocateDirect((int) Math.min(segmentMask + 1, remaining) * width);
+            segments[s] = segment;
+        }
+        return segment;
+    }
+
+    private int position(long index) {
+        return (int) (index & segmentMask) * width;
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package uk.ac.standrews.cs.guid.sort;
+
+import uk.ac.standrews.cs.guid.IKey;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.util.Comparator;
+
+/**
+ * Orders keys of any algorithm: first by the name of their algorithm, then by their digest read as an unsigned number.
+ *
+ * Unlike {@link KeyImpl#compareTo(Object)}, keys of different algorithms can be compared,
+ * and no BigInteger is created to compare two digests.
+ * This is the order produced by {@link RadixSort}.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDComparator implements Comparator<IKey> {
+
+    public static final GUIDComparator INSTANCE = new GUIDComparator();
+
+    @Override
+    public int compare(IKey a, IKey b) {
+
+        if (a.algorithm() != b.algorithm()) {
+            return a.algorithm().toString().compareTo(b.algorithm().toString());
+        }
+
+        if (a instanceof KeyImpl && b instanceof KeyImpl) {
+            return KeyImpl.compareUnsigned((KeyImpl) a, (KeyImpl) b);
+        }
+        return a.bigIntegerRepresentation().compareTo(b.bigIntegerRepresentation());
+    }
+}
@@ -0,0 +1,237 @@
+package uk.ac.standrews.cs.guid.sort;
+
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts GUIDs in the order of {@link GUIDComparator}, with an in-place most-significant-digit radix sort.
+ *
+ * The GUIDs are distributed into 256 buckets by the first byte of their digest, then each bucket is sorted by the
+ * next byte, and so on. Digests are uniformly distributed, so buckets shrink by a factor of 256 at each level
+ * and a few levels are enough before falling back to an insertion sort. Large buckets are sorted in parallel
+ * on the common fork-join pool. No BigInteger is created, and no comparison looks at more bytes than needed.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class RadixSort {
+
+    private static final int RADIX = 256;
+    private static final int INSERTION_THRESHOLD = 32;
+    private static final int PARALLEL_THRESHOLD = 16 * 1024;
+
+    private RadixSort() {}
+
+    /**
+     * Sort an array of GUIDs of any algorithm.
+     *
+     * @param guids the GUIDs to sort
+     */
+    public static void sort(IGUID[] guids) {
+        sort(guids, 0, guids.length);
+    }
+
+    /**
+     * @param guids the GUIDs to sort
+     * @param from the index of the first GUID to sort, inclusive
+     * @param to the index of the last GUID to sort, exclusive
+     */
+    public static void sort(IGUID[] guids, int from, int to) {
+
+        // Group the GUIDs by algorithm first. There are only a few algorithms, so this is cheap
+        Arrays.sort(guids, from, to, (a, b) -> a.algorithm() == b.algorithm() ? 0 :
+                a.algorithm().toString().compareTo(b.algorithm().toString()));
+
+        int start = from;
+        while (start < to) {
+            int end = start + 1;
+            while (end < to && guids[end].algorithm() == guids[start].algorithm()) {
+                end++;
+            }
+
+            sortGroup(guids, start, end);
+            start = end;
+        }
+    }
+
+    /**
+     * Sort the GUIDs of an off-heap buffer.
+     *
+     * @param buffer the GUIDs to sort
+     */
+    public static void sort(GUIDBuffer buffer) {
+        sort(new BufferKeys(buffer), buffer.width(), 0, buffer.size());
+    }
+
+    // GUIDs of the same algorithm, radix sorted if they all have a digest of the same length
+    private static void sortGroup(IGUID[] guids, int from, int to) {
+
+        int width = guids[from] instanceof KeyImpl ? ((KeyImpl) guids[from]).byteLength() : -1;
+        for(int i = from; i < to && width != -1; i++) {
+            if (!(guids[i] instanceof KeyImpl) || ((KeyImpl) guids[i]).byteLength() != width) {
+                width = -1;
+            }
+        }
+
+        if (width == -1) {
+            Arrays.sort(guids, from, to, GUIDComparator.INSTANCE);
+        } else {
+            sort(new ArrayKeys(guids), width, from, to);
+        }
+    }
+
+    private static void sort(Keys keys, int width, long from, long to) {
+        if (to - from < 2) return;
+
+        Sort task = new Sort(keys, width, from, to, 0);
+        if (to - from < PARALLEL_THRESHOLD) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+    }
+
+    /**
+     * Digests of the same length, accessed by index.
+     */
+    private interface Keys {
+
+        int byteAt(long index, int depth);
+
+        void swap(long i, long j);
+    }
+
+    private static class ArrayKeys implements Keys {
+
+        private final IGUID[] guids;
+
+        ArrayKeys(IGUID[] guids) {
+            this.guids = guids;
+        }
+
+        @Override
+        public int byteAt(long index, int depth) {
+            return ((KeyImpl) guids[(int) index]).byteAt(depth) & 0xff;
+        }
+
+        @Override
+        public void swap(long i, long j) {
+            IGUID t = guids[(int) i];
+            guids[(int) i] = guids[(int) j];
+            guids[(int) j] = t;
+        }
+    }
+
+    private static class BufferKeys implements Keys {
+
+        private final GUIDBuffer buffer;
+
+        BufferKeys(GUIDBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int byteAt(long index, int depth) {
+            return buffer.byteAt(index, depth);
+        }
+
+        @Override
+        public void swap(long i, long j) {
+            buffer.swap(i, j);
+        }
+    }
+
+    /**
+     * Sorts the keys in [from, to) that share their first depth bytes.
+     */
+    private static class Sort extends RecursiveAction {
+
+        private final Keys keys;
+        private final int width;
+        private final long from;
+        private final long to;
+        private final int depth;
+
+        Sort(Keys keys, int width, long from, long to, int depth) {
+            this.keys = keys;
+            this.width = width;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (depth == width) return;
+            if (to - from < INSERTION_THRESHOLD) {
+                insertionSort();
+                return;
+            }
+
+            long[] counts = new long[RADIX];
+            for(long i = from; i < to; i++) {
+                counts[keys.byteAt(i, depth)]++;
+            }
+
+            long[] starts = new long[RADIX];
+            long[] next = new long[RADIX];
+            long position = from;
+            for(int b = 0; b < RADIX; b++) {
+                starts[b] = position;
+                next[b] = position;
+                position += counts[b];
+            }
+
+            // American flag sort: move each key straight to the next free slot of its bucket
+            for(int b = 0; b < RADIX; b++) {
+                long end = starts[b] + counts[b];
+                while (next[b] < end) {
+                    int v = keys.byteAt(next[b], depth);
+                    if (v == b) {
+                        next[b]++;
+                    } else {
+                        keys.swap(next[b], next[v]++);
+                    }
+                }
+            }
+
+            Sort[] large = new Sort[RADIX];
+            int forked = 0;
+            for(int b = 0; b < RADIX; b++) {
+                if (counts[b] < 2) continue;
+
+                Sort bucket = new Sort(keys, width, starts[b], starts[b] + counts[b], depth + 1);
+                if (counts[b] >= PARALLEL_THRESHOLD) {
+                    large[forked++] = bucket;
+                    bucket.fork();
+                } else {
+                    bucket.compute();
+                }
+            }
+
+            for(int i = 0; i < forked; i++) {
+                large[i].join();
+            }
+        }
+
+        private void insertionSort() {
+            for(long i = from + 1; i < to; i++) {
+                for(long j = i; j > from && compare(j - 1, j) > 0; j--) {
+                    keys.swap(j - 1, j);
+                }
+            }
+        }
+
+        private int compare(long i, long j) {
+            for(int d = depth; d < width; d++) {
+                int c = keys.byteAt(i, d) - keys.byteAt(j, d);
+                if (c != 0) return c;
+            }
+            return 0;
+        }
+    }
+}
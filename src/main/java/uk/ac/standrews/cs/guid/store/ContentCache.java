@@ -0,0 +1,308 @@
+package uk.ac.standrews.cs.guid.store;
+
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent in-memory cache of content, keyed by GUID and bounded by the total size in bytes of the content.
+ *
+ * Content addressed by GUID is immutable, so entries are never invalidated, only evicted.
+ *
+ * The cache is split into independent segments, selected by the bits of the GUID. Each segment follows W-TinyLFU:
+ * new entries go into a small FIFO window, and an entry leaving the window is admitted into the main area
+ * only if it has been requested more often than the entry the main area would evict for it.
+ * The main area evicts with CLOCK (second chance): an entry read since the clock hand last passed is spared once.
+ * This keeps popular content in the cache when large one-off scans go through it.
+ *
+ * Lookups take no locks. Insertions and evictions lock their segment.
+ *
+ * Values can be stored off-heap, in direct buffers, to keep large caches out of the garbage-collected heap.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class ContentCache {
+
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final double WINDOW_RATIO = 0.01;
+    private static final int EXPECTED_ENTRY_SIZE = 4 * 1024;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final boolean offHeap;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ContentCache(long maxBytes) {
+        this(maxBytes, DEFAULT_SEGMENTS, false);
+    }
+
+    /**
+     * @param maxBytes the maximum total size of the cached content
+     * @param segments the number of segments, rounded up to a power of two
+     * @param offHeap true to store the content in direct buffers
+     */
+    public ContentCache(long maxBytes, int segments, boolean offHeap) {
+        if (maxBytes < 1 || segments < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        int count = segments == 1 ? 1 : Integer.highestOneBit(segments - 1) << 1;
+        this.segments = new Segment[count];
+        this.segmentMask = count - 1;
+        this.offHeap = offHeap;
+
+        long segmentBytes = Math.max(1, maxBytes / count);
+        for(int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(segmentBytes);
+        }
+    }
+
+    /**
+     * @param guid the GUID of the content
+     * @return a read-only buffer over the content, or null if it is not in the cache
+     */
+    public ByteBuffer get(IGUID guid) {
+
+        Segment segment = segment(guid);
+        segment.sketch.increment(hash(guid));
+
+        Node node = segment.map.get(new DigestKey(guid));
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        node.referenced = true;
+        return node.value.duplicate();
+    }
+
+    public boolean contains(IGUID guid) {
+        return segment(guid).map.containsKey(new DigestKey(guid));
+    }
+
+    /**
+     * Offer content to the cache. The content is not copied, unless it is stored off-heap, so it must not be modified afterwards.
+     *
+     * @param guid the GUID of the content
+     * @param content the content
+     * @return true if the content is in the cache after the call
+     */
+    public boolean put(IGUID guid, byte[] content) {
+
+        ByteBuffer value;
+        if (offHeap) {
+            value = ByteBuffer.allocateDirect(content.length);
+            value.put(content).flip();
+            value = value.asReadOnlyBuffer();
+        } else {
+            value = ByteBuffer.wrap(content).asReadOnlyBuffer();
+        }
+
+        return segment(guid).put(guid, value);
+    }
+
+    /**
+     * @return the total size in bytes of the cached content
+     */
+    public long weightedSize() {
+        long size = 0;
+        for(Segment segment:segments) {
+            size += segment.windowBytes + segment.mainBytes;
+        }
+        return size;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of entries evicted or not admitted into the cache
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public double hitRatio() {
+        long hits = hits();
+        long requests = hits + misses();
+        return requests == 0 ? 1.0 : (double) hits / requests;
+    }
+
+    /**
+     * The bits of a digest are already uniformly distributed, so the segment is chosen with bytes 4 to 7 of the GUID,
+     * without hashing it again. GUIDs that are not digests of at least 8 bytes are rehashed.
+     */
+    private Segment segment(IGUID guid) {
+
+        int bits;
+        if (guid instanceof KeyImpl && ((KeyImpl) guid).byteLength() >= 8) {
+            bits = digestBits((KeyImpl) guid, 4);
+        } else {
+            int h = guid.hashCode() * 0x9e3779b9;
+            bits = h ^ (h >>> 16);
+        }
+
+        return segments[bits & segmentMask];
+    }
+
+    /**
+     * @return the hash of the GUID in the frequency sketches: bytes 0 to 3 of the GUID,
+     * which are independent of the bytes choosing the segment
+     */
+    private static int hash(IGUID guid) {
+
+        if (guid instanceof KeyImpl && ((KeyImpl) guid).byteLength() >= 8) {
+            return digestBits((KeyImpl) guid, 0);
+        }
+        return guid.hashCode();
+    }
+
+    private static int digestBits(KeyImpl key, int offset) {
+        return ((key.byteAt(offset) & 0xff) << 24) | ((key.byteAt(offset + 1) & 0xff) << 16) |
+                ((key.byteAt(offset + 2) & 0xff) << 8) | (key.byteAt(offset + 3) & 0xff);
+    }
+
+    private class Segment {
+
+        private final Map<DigestKey, Node> map = new ConcurrentHashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final FrequencySketch sketch;
+
+        private final ArrayDeque<Node> window = new ArrayDeque<>();
+        private final ArrayDeque<Node> main = new ArrayDeque<>();
+        private final long windowCapacity;
+        private final long mainCapacity;
+        private volatile long windowBytes;
+        private volatile long mainBytes;
+
+        Segment(long capacity) {
+            windowCapacity = Math.max(1, (long) (capacity * WINDOW_RATIO));
+            mainCapacity = Math.max(1, capacity - windowCapacity);
+            sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, Math.max(1, capacity / EXPECTED_ENTRY_SIZE)));
+        }
+
+        boolean put(IGUID guid, ByteBuffer value) {
+
+            int weight = value.remaining();
+            if (weight > mainCapacity) {
+                evictions.increment();
+                return false;
+            }
+
+            lock.lock();
+            try {
+                DigestKey key = new DigestKey(guid);
+                if (map.containsKey(key)) return true;
+                sketch.increment(hash(guid));
+
+                Node node = new Node(key, value, weight);
+                map.put(key, node);
+                window.addLast(node);
+                windowBytes += weight;
+
+                while (windowBytes > windowCapacity && !window.isEmpty()) {
+                    Node candidate = window.pollFirst();
+                    windowBytes -= candidate.weight;
+                    admit(candidate);
+                }
+
+                return map.containsKey(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void admit(Node candidate) {
+
+            int frequency = sketch.frequency(hash(candidate.key.guid));
+            while (mainBytes + candidate.weight > mainCapacity) {
+                Node victim = nextVictim();
+                if (frequency <= sketch.frequency(hash(victim.key.guid))) {
+                    map.remove(candidate.key);
+                    evictions.increment();
+                    return;
+                }
+
+                main.pollFirst();
+                mainBytes -= victim.weight;
+                map.remove(victim.key);
+                evictions.increment();
+            }
+
+            main.addLast(candidate);
+            mainBytes += candidate.weight;
+        }
+
+        // Move the clock hand past the referenced entries, clearing their reference bit,
+        // and return the first entry that was not referenced. The entry stays at the head of the queue.
+        private Node nextVictim() {
+            while (true) {
+                Node node = main.peekFirst();
+                if (!node.referenced) return node;
+
+                node.referenced = false;
+                main.addLast(main.pollFirst());
+            }
+        }
+    }
+
+    /**
+     * The key of the segment tables. Its hash is bytes 8 to 11 of the digest, independent of the bytes choosing
+     * the segment and of the sketch hash, so a lookup never hashes the whole digest.
+     * GUIDs that are not digests of at least 12 bytes fall back to their own hash.
+     */
+    private static final class DigestKey {
+
+        private final IGUID guid;
+        private final int hash;
+
+        DigestKey(IGUID guid) {
+            this.guid = guid;
+            this.hash = guid instanceof KeyImpl && ((KeyImpl) guid).byteLength() >= 12 ?
+                    digestBits((KeyImpl) guid, 8) : guid.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DigestKey)) return false;
+
+            DigestKey key = (DigestKey) o;
+            return hash == key.hash && guid.equals(key.guid);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Node {
+
+        private final DigestKey key;
+        private final ByteBuffer value;
+        private final int weight;
+        private volatile boolean referenced;
+
+        Node(DigestKey key, ByteBuffer value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package uk.ac.standrews.cs.guid.store;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.BASE;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.codecs.HexCodec;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * A filesystem-backed store of immutable objects, named by the GUID of their content.
+ *
+ * Objects are stored under root/ALGORITHM/ab/cdef..., where abcdef... is the hex representation of their GUID.
+ * An object is first written to a temporary file while its GUID is computed, then atomically renamed into place,
+ * so readers never see a partially written object.
+ *
+ * The store keeps an in-memory index of its objects, built when the store is opened,
+ * so existence checks do not touch the filesystem. Reads take no locks.
+ * Concurrent writers of the same content are deduplicated: a writer of bytes already being written waits for
+ * the first writer, and streams whose GUID is only known at the end are discarded if the object is already there.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class ContentStore {
+
+    private static final String TEMP_DIRECTORY = "tmp";
+    private static final int PREFIX_LENGTH = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final Path temp;
+    private final ALGORITHM algorithm;
+    private final Set<IGUID> index = ConcurrentHashMap.newKeySet();
+    private final Map<IGUID, CompletableFuture<Void>> writes = new ConcurrentHashMap<>();
+
+    public ContentStore(Path root) throws IOException {
+        this(root, ALGORITHM.SHA256);
+    }
+
+    /**
+     * Open the store at the given directory, creating it if needed.
+     *
+     * @param root the directory of the store
+     * @param algorithm the algorithm used to name new objects
+     * @throws IOException if the store could not be created or scanned
+     */
+    public ContentStore(Path root, ALGORITHM algorithm) throws IOException {
+        this.root = root;
+        this.temp = root.resolve(TEMP_DIRECTORY);
+        this.algorithm = algorithm;
+
+        Files.createDirectories(temp);
+        clearTemporaryFiles();
+        loadIndex();
+    }
+
+    /**
+     * Store the content of the stream. The stream is read until its end, but it is not closed.
+     *
+     * @param source the content to store
+     * @return the GUID of the content
+     * @throws GUIDGenerationException if the content could not be hashed
+     * @throws IOException if the content could not be read or stored
+     */
+    public IGUID put(InputStream source) throws GUIDGenerationException, IOException {
+
+        MessageDigest digest = KeyFactory.messageDigest(algorithm);
+        Path file = Files.createTempFile(temp, "put", null);
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+
+                    ByteBuffer wrapped = ByteBuffer.wrap(buffer, 0, read);
+                    while (wrapped.hasRemaining()) {
+                        channel.write(wrapped);
+                    }
+                }
+                channel.force(true);
+            }
+
+            IGUID guid = (KeyImpl) KeyFactory.recreateKey(algorithm, digest.digest());
+            commit(guid, file);
+            return guid;
+
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public IGUID put(Path file) throws GUIDGenerationException, IOException {
+        try (InputStream source = Files.newInputStream(file)) {
+            return put(source);
+        }
+    }
+
+    /**
+     * Store the given bytes. Nothing is written if the content is already in the store.
+     *
+     * @param bytes the content to store
+     * @return the GUID of the content
+     * @throws GUIDGenerationException if the content could not be hashed
+     * @throws IOException if the content could not be stored
+     */
+    public IGUID put(byte[] bytes) throws GUIDGenerationException, IOException {
+
+        IGUID guid = GUIDFactory.generateGUID(algorithm, bytes);
+        if (index.contains(guid)) return guid;
+
+        // If the same content is being written by another thread, wait for it instead of writing it again
+        CompletableFuture<Void> write = new CompletableFuture<>();
+        CompletableFuture<Void> other = writes.putIfAbsent(guid, write);
+        if (other != null) {
+            try {
+                other.join();
+                return guid;
+            } catch (CompletionException e) {
+                return put(bytes);
+            }
+        }
+
+        Path file = Files.createTempFile(temp, "put", null);
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+
+            commit(guid, file);
+            write.complete(null);
+            return guid;
+
+        } catch (IOException | RuntimeException e) {
+            write.completeExceptionally(e);
+            throw e;
+        } finally {
+            writes.remove(guid, write);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public boolean contains(IGUID guid) {
+        return index.contains(guid);
+    }
+
+    /**
+     * @return the number of objects in the store
+     */
+    public int count() {
+        return index.size();
+    }
+
+    /**
+     * @param guid the GUID of the object
+     * @return the size in bytes of the object
+     * @throws NoSuchFileException if the object is not in the store
+     */
+    public long size(IGUID guid) throws IOException {
+        return Files.size(path(guid));
+    }
+
+    /**
+     * @param guid the GUID of the object
+     * @return a stream over the content of the object
+     * @throws NoSuchFileException if the object is not in the store
+     */
+    public InputStream get(IGUID guid) throws IOException {
+        return Files.newInputStream(path(guid));
+    }
+
+    /**
+     * Map the content of the object in memory. Objects are immutable, so the mapping stays valid.
+     *
+     * @param guid the GUID of the object
+     * @return a read-only buffer over the content of the object
+     * @throws NoSuchFileException if the object is not in the store
+     */
+    public ByteBuffer map(IGUID guid) throws IOException {
+        try (FileChannel channel = FileChannel.open(path(guid), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Copy the content of the object to the given channel, without copying it through the heap when the platform allows it.
+     *
+     * @param guid the GUID of the object
+     * @param target the channel to write to
+     * @return the number of bytes written
+     * @throws NoSuchFileException if the object is not in the store
+     */
+    public long transferTo(IGUID guid, WritableByteChannel target) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(path(guid), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * @param guid the GUID of the object
+     * @return true if the object was in the store
+     */
+    public boolean delete(IGUID guid) throws IOException {
+        index.remove(guid);
+        return Files.deleteIfExists(path(guid));
+    }
+
+    private void commit(IGUID guid, Path file) throws IOException {
+        if (index.contains(guid)) return;
+
+        Path target = path(guid);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Same content stored concurrently
+        }
+
+        index.add(guid);
+    }
+
+    private Path path(IGUID guid) {
+        String hex = guid.toString(BASE.HEX);
+        return root.resolve(guid.algorithm().toString())
+                .resolve(hex.substring(0, PREFIX_LENGTH))
+                .resolve(hex.substring(PREFIX_LENGTH));
+    }
+
+    private void clearTemporaryFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(temp)) {
+            for(Path file:files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private void loadIndex() throws IOException {
+
+        try (DirectoryStream<Path> algorithms = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for(Path directory:algorithms) {
+                if (directory.equals(temp)) continue;
+
+                ALGORITHM algorithm;
+                try {
+                    algorithm = ALGORITHM.get(directory.getFileName().toString());
+                } catch (IllegalArgumentException e) {
+                    continue; // Not a directory of the store
+                }
+
+                // Decode the names directly: stray files are not parse failures of the GUID factory
+                try (Stream<Path> files = Files.walk(directory, 2)) {
+                    files.filter(Files::isRegularFile).forEach(file -> {
+                        String hex = file.getParent().getFileName().toString() + file.getFileName().toString();
+                        try {
+                            byte[] digest = HexCodec.decode(hex);
+                            if (digest.length > 0) {
+                                index.add((KeyImpl) KeyFactory.recreateKey(algorithm, digest));
+                            }
+                        } catch (IllegalArgumentException | GUIDGenerationException e) {
+                            // Not an object of the store
+                        }
+                    });
+                }
+            }
+        }
+    }
+}
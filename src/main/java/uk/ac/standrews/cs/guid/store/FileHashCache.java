@@ -0,0 +1,339 @@
+package uk.ac.standrews.cs.guid.store;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent cache of file GUIDs, similar to the git index.
+ *
+ * Each entry maps a file path and algorithm to the digest of the file, together with the size, modification time
+ * and file key (inode) the file had when it was hashed. A file is only hashed again if any of these changed.
+ *
+ * Entries are held in memory and appended to a journal file, which is memory-mapped and replayed when the cache is opened.
+ * Every record carries a checksum, so a record torn by a crash is discarded. Records of algorithms that this build
+ * does not know, written by a newer one, are skipped. The journal is compacted when it holds mostly stale records.
+ *
+ * Racy entries: a file modified within the timestamp granularity of the moment it was hashed might change again without
+ * its modification time changing. Such entries are never trusted, and the file is hashed again until its modification
+ * time is old enough.
+ *
+ * Lookups are lock-free. Appends to the journal are serialised. The cache can be shared by all the threads of a JVM,
+ * but not between processes.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class FileHashCache implements Closeable {
+
+    private static final long MAGIC = 0x4755494443414348L; // GUIDCACH
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final long RACY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 1024;
+
+    private final Path journal;
+    private final Map<CacheKey, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private FileChannel channel;
+    private long records;
+
+    public FileHashCache(Path journal) throws IOException {
+        this.journal = journal;
+        this.channel = FileChannel.open(journal, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        load();
+    }
+
+    public IGUID generateGUID(ALGORITHM algorithm, File file) throws GUIDGenerationException, IOException {
+        return generateGUID(algorithm, file.toPath());
+    }
+
+    /**
+     * Return the GUID of the file, hashing the file only if it is not in the cache or has changed since it was hashed.
+     *
+     * @param algorithm the algorithm used to hash the file
+     * @param file the file to hash
+     * @return the GUID of the file
+     * @throws GUIDGenerationException if the file could not be hashed
+     * @throws IOException if the file could not be read or the cache could not be updated
+     */
+    public IGUID generateGUID(ALGORITHM algorithm, Path file) throws GUIDGenerationException, IOException {
+
+        CacheKey key = new CacheKey(file.toAbsolutePath().normalize().toString(), algorithm);
+
+        BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.matches(before) && !entry.isRacy()) {
+            hits.incrementAndGet();
+            return (KeyImpl) KeyFactory.recreateKey(algorithm, entry.digest);
+        }
+
+        misses.incrementAndGet();
+
+        long hashedAt = now();
+        IGUID guid;
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            guid = (KeyImpl) KeyFactory.generateKey(algorithm, source);
+        }
+
+        // Do not cache a file that changed while it was being hashed
+        BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+        Entry hashed = new Entry(before, hashedAt, digest(guid));
+        if (hashed.matches(after)) {
+            put(key, hashed);
+        }
+
+        return guid;
+    }
+
+    /**
+     * @return the number of lookups answered by the cache
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that required hashing the file
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Rewrite the journal with only the current entries.
+     */
+    public synchronized void compact() throws IOException {
+
+        Path temp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(out);
+            for(Map.Entry<CacheKey, Entry> entry:entries.entrySet()) {
+                writeRecord(out, entry.getKey(), entry.getValue());
+            }
+            out.force(true);
+        }
+
+        channel.close();
+        Files.move(temp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(journal, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        records = entries.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private synchronized void put(CacheKey key, Entry entry) throws IOException {
+
+        entries.put(key, entry);
+        writeRecord(channel, key, entry);
+        records++;
+
+        if (records > MIN_RECORDS_BEFORE_COMPACTION && records > 2L * entries.size()) {
+            compact();
+        }
+    }
+
+    private void load() throws IOException {
+
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            channel.truncate(0);
+            writeHeader(channel);
+            return;
+        }
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (buffer.getLong() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a GUID cache: " + journal);
+        }
+
+        long valid = buffer.position();
+        try {
+            while (buffer.hasRemaining()) {
+                readRecord(buffer);
+                records++;
+                valid = buffer.position();
+            }
+        } catch (BufferUnderflowException | IOException e) {
+            // Torn or corrupted tail, discard it
+        }
+
+        channel.truncate(valid);
+        channel.position(valid);
+    }
+
+    private void readRecord(ByteBuffer buffer) throws IOException {
+
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining() - 8) throw new IOException("Truncated record");
+
+        ByteBuffer record = buffer.slice();
+        record.limit(length);
+        buffer.position(buffer.position() + length);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.duplicate());
+        if (crc.getValue() != buffer.getLong()) throw new IOException("Corrupted record");
+
+        // A record written by a build that knows more algorithms is intact, but of no use here
+        ALGORITHM algorithm = algorithm(readString(record));
+        if (algorithm == null) return;
+
+        String path = readString(record);
+        long size = record.getLong();
+        long modified = record.getLong();
+        long hashedAt = record.getLong();
+        String fileKey = readString(record);
+        byte[] digest = new byte[record.getShort()];
+        record.get(digest);
+
+        entries.put(new CacheKey(path, algorithm), new Entry(size, modified, fileKey.isEmpty() ? null : fileKey, hashedAt, digest));
+    }
+
+    private static void writeRecord(FileChannel out, CacheKey key, Entry entry) throws IOException {
+
+        byte[] algorithm = key.algorithm.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] path = key.path.getBytes(StandardCharsets.UTF_8);
+        byte[] fileKey = entry.fileKey == null ? new byte[0] : entry.fileKey.getBytes(StandardCharsets.UTF_8);
+        int length = 2 + algorithm.length + 2 + path.length + 24 + 2 + fileKey.length + 2 + entry.digest.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length + 8);
+        buffer.putInt(length);
+        putString(buffer, algorithm);
+        putString(buffer, path);
+        buffer.putLong(entry.size);
+        buffer.putLong(entry.modified);
+        buffer.putLong(entry.hashedAt);
+        putString(buffer, fileKey);
+        putString(buffer, entry.digest);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, length);
+        buffer.putLong(crc.getValue());
+
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void writeHeader(FileChannel out) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        buffer.putLong(MAGIC).putInt(VERSION).flip();
+        out.position(0);
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xffff];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static ALGORITHM algorithm(String name) {
+        for(ALGORITHM algorithm:ALGORITHM.values()) {
+            if (algorithm.toString().equalsIgnoreCase(name)) return algorithm;
+        }
+        return null;
+    }
+
+    private static byte[] digest(IGUID guid) {
+        return ((KeyImpl) guid).bytes();
+    }
+
+    private static long now() {
+        return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    }
+
+    private static class CacheKey {
+
+        private final String path;
+        private final ALGORITHM algorithm;
+
+        CacheKey(String path, ALGORITHM algorithm) {
+            this.path = path;
+            this.algorithm = algorithm;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CacheKey cacheKey = (CacheKey) o;
+            return path.equals(cacheKey.path) && algorithm == cacheKey.algorithm;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + algorithm.hashCode();
+        }
+    }
+
+    private static class Entry {
+
+        private final long size;
+        private final long modified;
+        private final String fileKey;
+        private final long hashedAt;
+        private final byte[] digest;
+
+        Entry(long size, long modified, String fileKey, long hashedAt, byte[] digest) {
+            this.size = size;
+            this.modified = modified;
+            this.fileKey = fileKey;
+            this.hashedAt = hashedAt;
+            this.digest = digest;
+        }
+
+        Entry(BasicFileAttributes attributes, long hashedAt, byte[] digest) {
+            this(attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    attributes.fileKey() == null ? null : attributes.fileKey().toString(), hashedAt, digest);
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() &&
+                    modified == attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) &&
+                    Objects.equals(fileKey, attributes.fileKey() == null ? null : attributes.fileKey().toString());
+        }
+
+        boolean isRacy() {
+            return modified + RACY_WINDOW_NANOS > hashedAt;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package uk.ac.standrews.cs.guid.store;
+
+/**
+ * An approximate count of how often keys were seen recently (a count-min sketch of 4-bit counters).
+ *
+ * All the counters are halved once the number of increments reaches ten times the width of the sketch,
+ * so that old popularity fades away.
+ *
+ * Updates are not synchronised. Concurrent increments may be lost, which only makes the estimate slightly lower.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+class FrequencySketch {
+
+    private static final int ROWS = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = { 0x97cb3127, 0xc3a5c85c, 0x9ae16a3b, 0x85ebca6b };
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(16, expectedEntries) - 1) << 1;
+
+        counters = new byte[ROWS][width];
+        mask = width - 1;
+        sampleSize = 10 * width;
+    }
+
+    void increment(int hash) {
+
+        boolean added = false;
+        for(int row = 0; row < ROWS; row++) {
+            int index = index(hash, row);
+            if (counters[row][index] < MAX_COUNT) {
+                counters[row][index]++;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int hash) {
+
+        int frequency = MAX_COUNT;
+        for(int row = 0; row < ROWS; row++) {
+            frequency = Math.min(frequency, counters[row][index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for(byte[] row:counters) {
+            for(int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+        additions /= 2;
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
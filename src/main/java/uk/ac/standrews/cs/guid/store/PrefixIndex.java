@@ -0,0 +1,324 @@
+package uk.ac.standrews.cs.guid.store;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.BASE;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static uk.ac.standrews.cs.guid.IKey.MULTI_HASH_DELIMITER;
+
+/**
+ * Resolves abbreviated GUIDs, such as the ones printed by {@link IGUID#toShortString()} and
+ * {@link IGUID#toShortMultiHash()}, back to the full GUIDs they were taken from.
+ *
+ * The GUIDs of each algorithm are kept in a compressed trie over the hex digits (nibbles) of their digest.
+ * An inner node only exists where the GUIDs below it start to differ, and records the index of that nibble,
+ * so a lookup only visits the nibbles where GUIDs branch and then checks the prefix against one GUID.
+ * Each node also counts the GUIDs below it, so an ambiguous prefix is reported without listing its matches.
+ * Digests of an algorithm may have different lengths: a digest that ends where another continues branches off on
+ * an extra end-of-key child.
+ *
+ * The nodes are immutable: an insertion copies the path to its leaf and then publishes the new root.
+ * Lookups take no locks and can run while GUIDs are being added, seeing the index before or after each insertion.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class PrefixIndex {
+
+    private static final int FANOUT = 16;
+
+    // The nibble past the end of a key, so that a key that is a prefix of a longer one has a child of its own
+    private static final int END = FANOUT;
+
+    private final Map<ALGORITHM, Node> roots = new ConcurrentHashMap<>();
+
+    /**
+     * @param guid the GUID to add
+     * @return true if the GUID was not in the index
+     * @throws IllegalArgumentException if the GUID has no digest (e.g. an invalid GUID)
+     */
+    public synchronized boolean add(IGUID guid) {
+        if (!(guid instanceof KeyImpl)) {
+            throw new IllegalArgumentException("Not a digest GUID: " + guid);
+        }
+
+        KeyImpl key = (KeyImpl) guid;
+        Leaf leaf = new Leaf(key);
+        Node root = roots.get(key.algorithm());
+        if (root == null) {
+            roots.put(key.algorithm(), leaf);
+            return true;
+        }
+
+        int difference = firstDifference(closest(root, key), key);
+        if (difference == -1) return false;
+
+        roots.put(key.algorithm(), insert(root, leaf, difference));
+        return true;
+    }
+
+    /**
+     * Add all the GUIDs. Lookups running meanwhile see the GUIDs added so far.
+     *
+     * @param guids the GUIDs to add
+     */
+    public void addAll(Collection<? extends IGUID> guids) {
+        for(IGUID guid:guids) {
+            add(guid);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for(Node root:roots.values()) {
+            size += root.count;
+        }
+        return size;
+    }
+
+    public boolean contains(IGUID guid) {
+        if (!(guid instanceof KeyImpl)) return false;
+
+        Node root = roots.get(guid.algorithm());
+        return root != null && firstDifference(closest(root, (KeyImpl) guid), (KeyImpl) guid) == -1;
+    }
+
+    /**
+     * Resolve a prefix of the hex representation of a GUID, or a prefix of a hex multihash.
+     * A plain hex prefix is matched against the GUIDs of every algorithm.
+     *
+     * @param prefix a hex prefix (e.g. "3a7bd") or a multihash prefix (e.g. "SHA256_16_3a7bd"), in any case
+     * @return the GUIDs matching the prefix
+     * @throws IllegalArgumentException if the prefix is not hex, or is a multihash of an unknown algorithm or of a base other than hex
+     */
+    public Match resolve(String prefix) {
+
+        int delimiter = prefix.lastIndexOf(MULTI_HASH_DELIMITER);
+        if (delimiter == -1) {
+            byte[] nibbles = nibbles(prefix);
+
+            Match match = new Match(null, 0);
+            for(Node root:roots.values()) {
+                match = match.plus(resolve(root, nibbles));
+            }
+            return match;
+        }
+
+        String[] parts = prefix.split(MULTI_HASH_DELIMITER, -1);
+        if (parts.length != 3 || !parts[1].equals(String.valueOf(BASE.HEX.getVal()))) {
+            throw new IllegalArgumentException("Not a hex multihash prefix: " + prefix);
+        }
+
+        Node root = roots.get(ALGORITHM.get(parts[0]));
+        return root == null ? new Match(null, 0) : resolve(root, nibbles(parts[2]));
+    }
+
+    /**
+     * @param guid a GUID, in the index or not
+     * @return the minimum number of hex digits that distinguish the GUID from every other GUID of the index
+     */
+    public int uniquePrefixLength(IGUID guid) {
+        if (!(guid instanceof KeyImpl)) {
+            throw new IllegalArgumentException("Not a digest GUID: " + guid);
+        }
+
+        KeyImpl key = (KeyImpl) guid;
+        int length = 1;
+        for(Node root:roots.values()) {
+            length = Math.max(length, sharedPrefixLength(root, key) + 1);
+        }
+        return Math.min(length, key.byteLength() * 2);
+    }
+
+    // The length of the longest prefix the key shares with another GUID of the trie
+    private static int sharedPrefixLength(Node node, KeyImpl key) {
+
+        KeyImpl closest = closest(node, key);
+        int difference = firstDifference(closest, key);
+        if (difference != -1) {
+            // The key is not in the trie: no GUID shares more with it than the closest one
+            return difference;
+        }
+
+        // The key is in the trie: it is only distinguished from its siblings at the deepest branch on its path
+        int shared = 0;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            shared = inner.index;
+            node = inner.children[nibble(key, inner.index)];
+        }
+        return shared;
+    }
+
+    private static Match resolve(Node node, byte[] nibbles) {
+
+        while (node instanceof Inner && ((Inner) node).index < nibbles.length) {
+            Inner inner = (Inner) node;
+            node = inner.children[nibbles[inner.index]];
+            if (node == null) return new Match(null, 0);
+        }
+
+        // The nibbles skipped by the trie are the same for all the GUIDs below the node, so one check is enough
+        KeyImpl any = node.any();
+        if (nibbles.length > any.byteLength() * 2) return new Match(null, 0);
+
+        for(int i = 0; i < nibbles.length; i++) {
+            if (nibble(any, i) != nibbles[i]) return new Match(null, 0);
+        }
+        return new Match(any, node.count);
+    }
+
+    private static Node insert(Node node, Leaf leaf, int difference) {
+
+        if (node instanceof Leaf || ((Inner) node).index > difference) {
+            Node[] children = new Node[FANOUT + 1];
+            children[nibble(node.any(), difference)] = node;
+            children[nibble(leaf.key, difference)] = leaf;
+            return new Inner(difference, children, node.count + 1, node.any());
+        }
+
+        Inner inner = (Inner) node;
+        Node[] children = inner.children.clone();
+        int n = nibble(leaf.key, inner.index);
+        children[n] = inner.index == difference ? leaf : insert(children[n], leaf, difference);
+        return new Inner(inner.index, children, inner.count + 1, inner.any);
+    }
+
+    // A GUID sharing with the key all the nibbles the trie branches on along the way
+    private static KeyImpl closest(Node node, KeyImpl key) {
+
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            Node child = inner.children[nibble(key, inner.index)];
+            if (child == null) return inner.any;
+
+            node = child;
+        }
+        return ((Leaf) node).key;
+    }
+
+    /**
+     * @return the index of the first nibble where the keys differ, or -1 if they are equal
+     */
+    private static int firstDifference(KeyImpl a, KeyImpl b) {
+
+        int length = Math.min(a.byteLength(), b.byteLength());
+        for(int i = 0; i < length; i++) {
+            int x = a.byteAt(i) ^ b.byteAt(i);
+            if (x != 0) {
+                return 2 * i + ((x & 0xf0) != 0 ? 0 : 1);
+            }
+        }
+        return a.byteLength() == b.byteLength() ? -1 : 2 * length;
+    }
+
+    // The nibble of the key at the index, or END past the end of the key
+    private static int nibble(KeyImpl key, int index) {
+        if (index >= key.byteLength() * 2) return END;
+
+        int b = key.byteAt(index >>> 1);
+        return (index & 1) == 0 ? (b >>> 4) & 0xf : b & 0xf;
+    }
+
+    private static byte[] nibbles(String hex) {
+
+        byte[] nibbles = new byte[hex.length()];
+        for(int i = 0; i < nibbles.length; i++) {
+            int digit = Character.digit(hex.charAt(i), FANOUT);
+            if (digit == -1) {
+                throw new IllegalArgumentException("Not a hex prefix: " + hex);
+            }
+            nibbles[i] = (byte) digit;
+        }
+        return nibbles;
+    }
+
+    /**
+     * The GUIDs matching a prefix.
+     */
+    public static class Match {
+
+        private final IGUID guid;
+        private final int count;
+
+        Match(IGUID guid, int count) {
+            this.guid = guid;
+            this.count = count;
+        }
+
+        /**
+         * @return the GUID matching the prefix if it is unique, null otherwise
+         */
+        public IGUID guid() {
+            return count == 1 ? guid : null;
+        }
+
+        /**
+         * @return the number of GUIDs matching the prefix
+         */
+        public int count() {
+            return count;
+        }
+
+        public boolean isUnique() {
+            return count == 1;
+        }
+
+        public boolean isAmbiguous() {
+            return count > 1;
+        }
+
+        private Match plus(Match other) {
+            return other.count == 0 ? this : count == 0 ? other : new Match(null, count + other.count);
+        }
+    }
+
+    private abstract static class Node {
+
+        final int count;
+
+        Node(int count) {
+            this.count = count;
+        }
+
+        abstract KeyImpl any();
+    }
+
+    private static class Leaf extends Node {
+
+        final KeyImpl key;
+
+        Leaf(KeyImpl key) {
+            super(1);
+            this.key = key;
+        }
+
+        @Override
+        KeyImpl any() {
+            return key;
+        }
+    }
+
+    private static class Inner extends Node {
+
+        final int index;
+        final Node[] children;
+        final KeyImpl any;
+
+        Inner(int index, Node[] children, int count, KeyImpl any) {
+            super(count);
+            this.index = index;
+            this.children = children;
+            this.any = any;
+        }
+
+        @Override
+        KeyImpl any() {
+            return any;
+        }
+    }
+}
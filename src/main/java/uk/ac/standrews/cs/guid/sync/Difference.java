@@ -0,0 +1,49 @@
+package uk.ac.standrews.cs.guid.sync;
+
+import uk.ac.standrews.cs.guid.IGUID;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The GUIDs decoded from the difference of the tables of two sets.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class Difference {
+
+    private final Set<IGUID> local;
+    private final Set<IGUID> remote;
+    private final boolean complete;
+
+    Difference(Set<IGUID> local, Set<IGUID> remote, boolean complete) {
+        this.local = Collections.unmodifiableSet(local);
+        this.remote = Collections.unmodifiableSet(remote);
+        this.complete = complete;
+    }
+
+    /**
+     * @return the GUIDs of the set the other table was subtracted from, that are not in the other set
+     */
+    public Set<IGUID> local() {
+        return local;
+    }
+
+    /**
+     * @return the GUIDs of the other set, that are not in the set the other table was subtracted from
+     */
+    public Set<IGUID> remote() {
+        return remote;
+    }
+
+    /**
+     * @return false if the table was too small for the difference, in which case only part of it was decoded
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int size() {
+        return local.size() + remote.size();
+    }
+}
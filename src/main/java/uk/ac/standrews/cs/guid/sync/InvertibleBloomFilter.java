@@ -0,0 +1,307 @@
+package uk.ac.standrews.cs.guid.sync;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * An invertible Bloom lookup table of GUIDs, used to find the difference between the sets of GUIDs of two nodes
+ * with a message proportional to the size of the difference rather than to the size of the sets.
+ *
+ * Each GUID is added to one cell in each of three sub-tables. A cell holds the number of GUIDs added to it,
+ * the XOR of their digests and the XOR of a check hash of their digests. Subtracting the table of a node from the
+ * table of another cancels out the GUIDs they have in common. The GUIDs left are then peeled off the cells
+ * holding only one of them, which releases other cells, until the table is empty or no such cell is left.
+ *
+ * All the GUIDs of a table must have the same algorithm, so that their digests have the same length.
+ * Tables are not thread-safe, but tables built in parallel over parts of a set can be merged.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class InvertibleBloomFilter {
+
+    private static final int HASH_COUNT = 3;
+    private static final long CHECK_SEED = 0x5851f42d4c957f2dL;
+    private static final long[] INDEX_SEEDS = { 0x14057b7ef767814fL, 0x2545f4914f6cdd1dL, 0x9e3779b97f4a7c15L };
+
+    private final ALGORITHM algorithm;
+    private final int width;
+    private final int cells;
+    private final int[] counts;
+    private final byte[] keySums;
+    private final long[] hashSums;
+
+    /**
+     * @param algorithm the algorithm of the GUIDs of the table
+     * @param cells the number of cells, rounded up to a multiple of three. See {@link #cellsFor(int)}
+     * @throws GUIDGenerationException if the algorithm is not supported
+     */
+    public InvertibleBloomFilter(ALGORITHM algorithm, int cells) throws GUIDGenerationException {
+        this(algorithm, KeyFactory.messageDigest(algorithm).getDigestLength(), cells);
+    }
+
+    private InvertibleBloomFilter(ALGORITHM algorithm, int width, int cells) {
+        if (cells < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        this.algorithm = algorithm;
+        this.width = width;
+        this.cells = (cells + HASH_COUNT - 1) / HASH_COUNT * HASH_COUNT;
+        this.counts = new int[this.cells];
+        this.keySums = new byte[this.cells * width];
+        this.hashSums = new long[this.cells];
+    }
+
+    /**
+     * Build the table of a set of GUIDs. Parts of the set are added to separate tables in parallel, which are then merged.
+     *
+     * @param algorithm the algorithm of the GUIDs
+     * @param cells the number of cells of the table
+     * @param guids the GUIDs
+     * @return the table of the GUIDs
+     * @throws GUIDGenerationException if the algorithm is not supported
+     */
+    public static InvertibleBloomFilter encode(ALGORITHM algorithm, int cells, Collection<IGUID> guids) throws GUIDGenerationException {
+
+        int width = KeyFactory.messageDigest(algorithm).getDigestLength();
+        return guids.parallelStream().collect(
+                () -> new InvertibleBloomFilter(algorithm, width, cells),
+                InvertibleBloomFilter::add,
+                InvertibleBloomFilter::merge);
+    }
+
+    /**
+     * @param difference the expected number of GUIDs in the difference of two sets, e.g. from a {@link StrataEstimator}
+     * @return a number of cells large enough to decode a difference of that size with high probability
+     */
+    public static int cellsFor(int difference) {
+        return (int) Math.ceil(difference * 1.5) + 30;
+    }
+
+    public ALGORITHM algorithm() {
+        return algorithm;
+    }
+
+    public int cells() {
+        return cells;
+    }
+
+    public void add(IGUID guid) {
+        update(digest(guid), 1);
+    }
+
+    public void remove(IGUID guid) {
+        update(digest(guid), -1);
+    }
+
+    /**
+     * Add the GUIDs of another table, built with the same algorithm and number of cells, to this table.
+     *
+     * @param other the table to merge into this one
+     */
+    public void merge(InvertibleBloomFilter other) {
+        checkCompatible(other);
+
+        for(int cell = 0; cell < cells; cell++) {
+            counts[cell] += other.counts[cell];
+            hashSums[cell] ^= other.hashSums[cell];
+        }
+        for(int i = 0; i < keySums.length; i++) {
+            keySums[i] ^= other.keySums[i];
+        }
+    }
+
+    /**
+     * @param other the table of another set, built with the same algorithm and number of cells
+     * @return a table of the GUIDs of this set minus the GUIDs of the other set
+     */
+    public InvertibleBloomFilter subtract(InvertibleBloomFilter other) {
+        checkCompatible(other);
+
+        InvertibleBloomFilter result = new InvertibleBloomFilter(algorithm, width, cells);
+        for(int cell = 0; cell < cells; cell++) {
+            result.counts[cell] = counts[cell] - other.counts[cell];
+            result.hashSums[cell] = hashSums[cell] ^ other.hashSums[cell];
+        }
+        for(int i = 0; i < keySums.length; i++) {
+            result.keySums[i] = (byte) (keySums[i] ^ other.keySums[i]);
+        }
+        return result;
+    }
+
+    /**
+     * List the GUIDs of the table. Usually called on the result of {@link #subtract(InvertibleBloomFilter)},
+     * to list the GUIDs that only one of the two sets has. This table is not modified.
+     *
+     * @return the GUIDs of the table, split by sign, and whether all of them could be listed
+     */
+    public Difference decode() {
+
+        InvertibleBloomFilter table = new InvertibleBloomFilter(algorithm, width, cells);
+        table.merge(this);
+        Set<IGUID> added = new HashSet<>();
+        Set<IGUID> removed = new HashSet<>();
+
+        Deque<Integer> pure = new ArrayDeque<>();
+        for(int cell = 0; cell < cells; cell++) {
+            if (table.isPure(cell)) pure.add(cell);
+        }
+
+        byte[] digest = new byte[width];
+        while (!pure.isEmpty()) {
+            int cell = pure.poll();
+            if (!table.isPure(cell)) continue;
+
+            int count = table.counts[cell];
+            System.arraycopy(table.keySums, cell * width, digest, 0, width);
+            (count > 0 ? added : removed).add(guid(digest.clone()));
+
+            table.update(digest, -count);
+            for(int i = 0; i < HASH_COUNT; i++) {
+                int other = index(digest, i);
+                if (table.isPure(other)) pure.add(other);
+            }
+        }
+
+        return new Difference(added, removed, table.isEmpty());
+    }
+
+    /**
+     * @return the cells of the table, to send them to another node
+     */
+    public byte[] toBytes() {
+
+        ByteBuffer buffer = ByteBuffer.allocate(cells * (Integer.BYTES + width + Long.BYTES));
+        for(int cell = 0; cell < cells; cell++) {
+            buffer.putInt(counts[cell]);
+            buffer.put(keySums, cell * width, width);
+            buffer.putLong(hashSums[cell]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param algorithm the algorithm of the GUIDs of the table
+     * @param bytes the cells of a table, as returned by {@link #toBytes()}
+     * @return the table
+     * @throws GUIDGenerationException if the algorithm is not supported or the bytes are not a table of that algorithm
+     */
+    public static InvertibleBloomFilter fromBytes(ALGORITHM algorithm, byte[] bytes) throws GUIDGenerationException {
+
+        int width = KeyFactory.messageDigest(algorithm).getDigestLength();
+        int cellSize = Integer.BYTES + width + Long.BYTES;
+        if (bytes.length == 0 || bytes.length % (cellSize * HASH_COUNT) != 0) {
+            throw new GUIDGenerationException("Not a table of " + algorithm);
+        }
+
+        InvertibleBloomFilter table = new InvertibleBloomFilter(algorithm, width, bytes.length / cellSize);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for(int cell = 0; cell < table.cells; cell++) {
+            table.counts[cell] = buffer.getInt();
+            buffer.get(table.keySums, cell * width, width);
+            table.hashSums[cell] = buffer.getLong();
+        }
+        return table;
+    }
+
+    boolean isEmpty() {
+        for(int cell = 0; cell < cells; cell++) {
+            if (counts[cell] != 0 || hashSums[cell] != 0) return false;
+        }
+        for(byte b:keySums) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+
+    void update(byte[] digest, int count) {
+
+        long check = hash(digest, CHECK_SEED);
+        for(int i = 0; i < HASH_COUNT; i++) {
+            int cell = index(digest, i);
+            counts[cell] += count;
+            hashSums[cell] ^= check;
+
+            int offset = cell * width;
+            for(int j = 0; j < width; j++) {
+                keySums[offset + j] ^= digest[j];
+            }
+        }
+    }
+
+    byte[] digest(IGUID guid) {
+        if (!(guid instanceof KeyImpl) || guid.algorithm() != algorithm || ((KeyImpl) guid).byteLength() != width) {
+            throw new IllegalArgumentException("Not a " + algorithm + " GUID: " + guid);
+        }
+
+        return ((KeyImpl) guid).bytes();
+    }
+
+    private IGUID guid(byte[] digest) {
+        try {
+            return (KeyImpl) KeyFactory.recreateKey(algorithm, digest);
+        } catch (GUIDGenerationException e) {
+            // The algorithm was checked when the table was created
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // A cell holding a single GUID, added or removed
+    private boolean isPure(int cell) {
+        int count = counts[cell];
+        if (count != 1 && count != -1) return false;
+
+        return hashSums[cell] == hash(keySums, cell * width, width, CHECK_SEED);
+    }
+
+    // Each hash function maps to its own third of the table, so a GUID always has three distinct cells
+    private int index(byte[] digest, int i) {
+        int part = cells / HASH_COUNT;
+        return i * part + (int) Long.remainderUnsigned(hash(digest, INDEX_SEEDS[i]), part);
+    }
+
+    private void checkCompatible(InvertibleBloomFilter other) {
+        if (other.algorithm != algorithm || other.cells != cells) {
+            throw new IllegalArgumentException("Tables of different algorithms or sizes");
+        }
+    }
+
+    static long hash(byte[] bytes, long seed) {
+        return hash(bytes, 0, bytes.length, seed);
+    }
+
+    /**
+     * A 64-bit hash of the bytes, mixing them eight at a time with the MurmurHash3 finaliser.
+     */
+    static long hash(byte[] bytes, int offset, int length, long seed) {
+
+        long h = seed ^ length;
+        for(int i = 0; i < length; i += Long.BYTES) {
+            long word = 0;
+            for(int j = 0; j < Long.BYTES && i + j < length; j++) {
+                word |= (bytes[offset + i + j] & 0xffL) << (8 * j);
+            }
+            h = mix(h ^ mix(word));
+        }
+        return h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
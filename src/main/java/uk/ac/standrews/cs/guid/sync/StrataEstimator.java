@@ -0,0 +1,114 @@
+package uk.ac.standrews.cs.guid.sync;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+/**
+ * Estimates the size of the difference between two sets of GUIDs, to size the {@link InvertibleBloomFilter}
+ * used to decode it. The estimator is small and of fixed size, whatever the size of the sets.
+ *
+ * Each GUID goes into stratum i with probability 1 / 2^(i+1), and each stratum is a small invertible Bloom
+ * lookup table. The strata of the two sets are subtracted and decoded from the sparsest one down.
+ * When a stratum cannot be decoded, the GUIDs decoded in the sparser strata are scaled up
+ * by the fraction of GUIDs those strata sample.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class StrataEstimator {
+
+    public static final int STRATA = 32;
+    public static final int CELLS = 80;
+
+    private static final long STRATUM_SEED = 0x632be59bd9b4e019L;
+
+    private final ALGORITHM algorithm;
+    private final InvertibleBloomFilter[] strata;
+
+    public StrataEstimator(ALGORITHM algorithm) throws GUIDGenerationException {
+        this.algorithm = algorithm;
+        this.strata = new InvertibleBloomFilter[STRATA];
+        for(int i = 0; i < STRATA; i++) {
+            strata[i] = new InvertibleBloomFilter(algorithm, CELLS);
+        }
+    }
+
+    public static StrataEstimator encode(ALGORITHM algorithm, Collection<IGUID> guids) throws GUIDGenerationException {
+        StrataEstimator estimator = new StrataEstimator(algorithm);
+        for(IGUID guid:guids) {
+            estimator.add(guid);
+        }
+        return estimator;
+    }
+
+    public void add(IGUID guid) {
+        InvertibleBloomFilter stratum = strata[0];
+        byte[] digest = stratum.digest(guid);
+
+        int index = Math.min(STRATA - 1, Long.numberOfTrailingZeros(InvertibleBloomFilter.hash(digest, STRATUM_SEED)));
+        strata[index].update(digest, 1);
+    }
+
+    /**
+     * @param other the estimator of another set of GUIDs of the same algorithm
+     * @return the estimated number of GUIDs that are in only one of the two sets
+     */
+    public long estimate(StrataEstimator other) {
+        if (other.algorithm != algorithm) {
+            throw new IllegalArgumentException("Estimators of different algorithms");
+        }
+
+        long count = 0;
+        for(int i = STRATA - 1; i >= 0; i--) {
+            Difference difference = strata[i].subtract(other.strata[i]).decode();
+            if (!difference.isComplete()) {
+                // Strata i+1 and above sample 1 / 2^(i+1) of the GUIDs
+                return (count + 1) << (i + 1);
+            }
+            count += difference.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the strata of the estimator, to send them to another node
+     */
+    public byte[] toBytes() {
+        byte[][] encoded = new byte[STRATA][];
+        int length = 0;
+        for(int i = 0; i < STRATA; i++) {
+            encoded[i] = strata[i].toBytes();
+            length += encoded[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for(byte[] stratum:encoded) {
+            buffer.put(stratum);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param algorithm the algorithm of the GUIDs of the estimator
+     * @param bytes the strata of an estimator, as returned by {@link #toBytes()}
+     * @return the estimator
+     * @throws GUIDGenerationException if the algorithm is not supported or the bytes are not an estimator of that algorithm
+     */
+    public static StrataEstimator fromBytes(ALGORITHM algorithm, byte[] bytes) throws GUIDGenerationException {
+        if (bytes.length % STRATA != 0) {
+            throw new GUIDGenerationException("Not an estimator of " + algorithm);
+        }
+
+        StrataEstimator estimator = new StrataEstimator(algorithm);
+        int length = bytes.length / STRATA;
+        for(int i = 0; i < STRATA; i++) {
+            byte[] stratum = new byte[length];
+            System.arraycopy(bytes, i * length, stratum, 0, length);
+            estimator.strata[i] = InvertibleBloomFilter.fromBytes(algorithm, stratum);
+        }
+        return estimator;
+    }
+}
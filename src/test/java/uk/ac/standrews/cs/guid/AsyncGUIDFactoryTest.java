@@ -0,0 +1,145 @@
+package uk.ac.standrews.cs.guid;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static uk.ac.standrews.cs.guid.GUIDFactoryTest.HELLO_STRING_HASHED_SHA256;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class AsyncGUIDFactoryTest {
+
+    @Test
+    public void fileTest() throws Exception {
+
+        try (AsyncGUIDFactory factory = new AsyncGUIDFactory()) {
+            IGUID guid = factory.generateGUID(new File("src/test/resources/hello.txt")).get();
+            assertEquals(guid.toString(), HELLO_STRING_HASHED_SHA256);
+        }
+    }
+
+    @Test
+    public void bytesTest() throws Exception {
+
+        try (AsyncGUIDFactory factory = new AsyncGUIDFactory()) {
+            IGUID guid = factory.generateGUID(ALGORITHM.SHA1, "abc".getBytes()).get();
+            assertEquals(guid.toString(), "a9993e364706816aba3e25717850c26c9cd0d89d");
+        }
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+
+        try (AsyncGUIDFactory factory = new AsyncGUIDFactory()) {
+            factory.generateGUID(ALGORITHM.SHA1, new byte[0]).get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof GUIDGenerationException);
+            return;
+        }
+
+        throw new AssertionError("Expected failure");
+    }
+
+    @Test
+    public void boundedReadsTest() throws Exception {
+
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        try (AsyncGUIDFactory factory = new AsyncGUIDFactory(2, 1)) {
+            List<CompletableFuture<IGUID>> futures = new ArrayList<>();
+            for(int i = 0; i < 8; i++) {
+                futures.add(factory.generateGUID(ALGORITHM.SHA256, new CountingStream(32, active, maxActive)));
+            }
+
+            for(CompletableFuture<IGUID> future:futures) {
+                assertEquals(future.get(), futures.get(0).get());
+            }
+        }
+
+        assertTrue(maxActive.get() <= 2);
+    }
+
+    @Test
+    public void cancellationTest() throws Exception {
+
+        AtomicLong reads = new AtomicLong();
+        CountDownLatch started = new CountDownLatch(1);
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 0;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                reads.incrementAndGet();
+                started.countDown();
+                return len;
+            }
+        };
+
+        try (AsyncGUIDFactory factory = new AsyncGUIDFactory()) {
+            CompletableFuture<IGUID> future = factory.generateGUID(ALGORITHM.SHA256, endless);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            future.cancel(true);
+            Thread.sleep(100);
+            long count = reads.get();
+            Thread.sleep(100);
+
+            assertTrue(future.isCancelled());
+            assertEquals(reads.get(), count);
+        }
+    }
+
+    private static class CountingStream extends InputStream {
+
+        private final AtomicInteger active;
+        private final AtomicInteger maxActive;
+        private int remaining;
+        private boolean started;
+
+        CountingStream(int chunks, AtomicInteger active, AtomicInteger maxActive) {
+            this.remaining = chunks;
+            this.active = active;
+            this.maxActive = maxActive;
+        }
+
+        @Override
+        public int read() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+
+            if (!started) {
+                started = true;
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            }
+
+            if (remaining-- == 0) {
+                active.decrementAndGet();
+                return -1;
+            }
+
+            Thread.yield();
+            return len;
+        }
+    }
+}
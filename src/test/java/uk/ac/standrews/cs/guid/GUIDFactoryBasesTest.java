@@ -34,6 +34,28 @@ public class GUIDFactoryBasesTest {
         assertEquals("ungWv48Bz+pBQUDeXa4iI7ADYaOWF3qctBD/YfIAFa0=", guid.toString(BASE.BASE_64));
     }
 
+    @Test
+    public void generateGUID_abc_Base32_Test() throws Exception {
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA1, "abc");
+        assertEquals("vgmt4nsha2awvor6evyxqugcnsonbwe5", guid.toString(BASE.BASE_32));
+        assertEquals(guid, GUIDFactory.recreateGUID(guid.toMultiHash(BASE.BASE_32)));
+    }
+
+    @Test
+    public void generateGUID_abc_Base58_Test() throws Exception {
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA1, "abc");
+        assertEquals("3N3SPh7RsDDNbZDaMRaauXML5RG8", guid.toString(BASE.BASE_58));
+        assertEquals(guid, GUIDFactory.recreateGUID(guid.toMultiHash(BASE.BASE_58)));
+    }
+
+    @Test
+    public void generateGUID_256_Base64_URL_Test() throws Exception {
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA256, "abc");
+        assertEquals("ungWv48Bz-pBQUDeXa4iI7ADYaOWF3qctBD_YfIAFa0", guid.toString(BASE.BASE_64_URL));
+        assertEquals("SHA256_65_ungWv48Bz-pBQUDeXa4iI7ADYaOWF3qctBD_YfIAFa0", guid.toMultiHash(BASE.BASE_64_URL));
+        assertEquals(guid, GUIDFactory.recreateGUID(guid.toMultiHash(BASE.BASE_64_URL)));
+    }
+
     @Test
     public void generateGUID_abc_CANON_Test() throws Exception {
         IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA1, "abc");
@@ -0,0 +1,62 @@
+package uk.ac.standrews.cs.guid;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.testng.Assert.assertEquals;
+import static uk.ac.standrews.cs.guid.GUIDFactoryTest.HELLO_STRING_HASHED_SHA256;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDFactoryBuffersTest {
+
+    @Test
+    public void heapBufferTest() throws Exception {
+
+        ByteBuffer buffer = ByteBuffer.wrap("abc".getBytes());
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA1, buffer);
+
+        assertEquals(guid.toString(), "a9993e364706816aba3e25717850c26c9cd0d89d");
+        assertEquals(buffer.position(), 0);
+        assertEquals(buffer.limit(), 3);
+    }
+
+    @Test
+    public void directBufferSliceTest() throws Exception {
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+        buffer.put("xxabcxx".getBytes());
+        buffer.position(2).limit(5);
+
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA256, buffer);
+
+        assertEquals(guid.toString(), "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
+        assertEquals(buffer.position(), 2);
+        assertEquals(buffer.limit(), 5);
+    }
+
+    @Test
+    public void channelTest() throws Exception {
+
+        try (FileChannel channel = new FileInputStream("src/test/resources/hello.txt").getChannel()) {
+            IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA256, channel);
+            assertEquals(guid.toString(), HELLO_STRING_HASHED_SHA256);
+        }
+    }
+
+    @Test (expectedExceptions = GUIDGenerationException.class)
+    public void emptyBufferTest() throws Exception {
+        GUIDFactory.generateGUID(ALGORITHM.SHA256, ByteBuffer.allocate(0));
+    }
+
+    @Test (expectedExceptions = GUIDGenerationException.class)
+    public void nullBufferTest() throws Exception {
+        ByteBuffer buffer = null;
+        GUIDFactory.generateGUID(ALGORITHM.SHA256, buffer);
+    }
+}
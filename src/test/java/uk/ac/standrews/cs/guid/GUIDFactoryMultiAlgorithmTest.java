@@ -0,0 +1,87 @@
+package uk.ac.standrews.cs.guid;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.channels.Channels;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.testng.Assert.assertEquals;
+import static uk.ac.standrews.cs.guid.GUIDFactoryTest.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDFactoryMultiAlgorithmTest {
+
+    private static final Set<ALGORITHM> ALGORITHMS = EnumSet.of(ALGORITHM.SHA1, ALGORITHM.SHA256, ALGORITHM.SHA512, ALGORITHM.MD5);
+
+    @Test
+    public void fileTest() throws Exception {
+
+        File file = new File("src/test/resources/hello.txt");
+        Map<ALGORITHM, IGUID> guids = GUIDFactory.generateGUIDs(ALGORITHMS, file);
+
+        assertEquals(guids.size(), ALGORITHMS.size());
+        assertEquals(guids.get(ALGORITHM.SHA1).toString(), HELLO_STRING_HASHED_SHA1);
+        assertEquals(guids.get(ALGORITHM.SHA256).toString(), HELLO_STRING_HASHED_SHA256);
+        assertEquals(guids.get(ALGORITHM.SHA512).toString(), HELLO_STRING_HASHED_SHA512);
+    }
+
+    @Test
+    public void emptyFileTest() throws Exception {
+
+        File file = new File("src/test/resources/empty.txt");
+        Map<ALGORITHM, IGUID> guids = GUIDFactory.generateGUIDs(EnumSet.of(ALGORITHM.SHA1), file);
+
+        assertEquals(guids.get(ALGORITHM.SHA1).toString(), TEST_EMPTY_STRING_HASHED);
+    }
+
+    @Test
+    public void channelTest() throws Exception {
+
+        File file = new File("src/test/resources/hello.txt");
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            Map<ALGORITHM, IGUID> guids = GUIDFactory.generateGUIDs(ALGORITHMS, inputStream.getChannel());
+
+            assertEquals(guids.get(ALGORITHM.SHA384), null);
+            assertEquals(guids.get(ALGORITHM.SHA256).toString(), HELLO_STRING_HASHED_SHA256);
+        }
+    }
+
+    @Test
+    public void concurrentDigestsTest() throws Exception {
+
+        byte[] bytes = new byte[1024 * 1024 + 17];
+        new Random(7).nextBytes(bytes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Map<ALGORITHM, IGUID> guids = GUIDFactory.generateGUIDs(ALGORITHMS, Channels.newChannel(new ByteArrayInputStream(bytes)), executor);
+
+            for(ALGORITHM algorithm:ALGORITHMS) {
+                assertEquals(guids.get(algorithm), GUIDFactory.generateGUID(algorithm, bytes));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test (expectedExceptions = GUIDGenerationException.class)
+    public void noAlgorithmsTest() throws Exception {
+        GUIDFactory.generateGUIDs(EnumSet.noneOf(ALGORITHM.class), new ByteArrayInputStream(new byte[1]));
+    }
+
+    @Test (expectedExceptions = GUIDGenerationException.class)
+    public void unsupportedAlgorithmTest() throws Exception {
+        GUIDFactory.generateGUIDs(EnumSet.of(ALGORITHM.NONE), new ByteArrayInputStream(new byte[1]));
+    }
+}
@@ -1,5 +1,6 @@
 package uk.ac.standrews.cs.guid;
 
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
 
@@ -52,6 +53,16 @@ public class GUIDFactoryRecreateGUIDsTest {
         GUIDFactory.recreateGUID(null);
     }
 
+    @DataProvider(name = "empty-digests")
+    public static Object[][] emptyDigests() {
+        return new Object[][] { { "SHA256_16_" }, { "SHA256_64_" }, { "SHA256_65_" }, { "SHA256_58_" }, { "SHA256_32_" }, { "SHA256_1_" } };
+    }
+
+    @Test (dataProvider = "empty-digests", expectedExceptions = GUIDGenerationException.class)
+    public void recreateEmptyDigestTest(String multihash) throws GUIDGenerationException {
+        GUIDFactory.recreateGUID(multihash);
+    }
+
     @Test
     public void recreateGUID_SHA1_256_abc_NIST_Test() throws Exception {
         IGUID guid = GUIDFactory.recreateGUID("SHA256_16_ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad");
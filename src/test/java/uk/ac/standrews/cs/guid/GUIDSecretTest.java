@@ -0,0 +1,129 @@
+package uk.ac.standrews.cs.guid;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.codecs.HexCodec;
+import uk.ac.standrews.cs.guid.impl.digests.Blake2bDigest;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDSecretTest {
+
+    private static final byte[] JEFE = "Jefe".getBytes(StandardCharsets.US_ASCII);
+    private static final String MESSAGE = "what do ya want for nothing?";
+
+    // RFC 4231, test case 2
+    @Test
+    public void hmacVectorsTest() throws GUIDGenerationException {
+
+        GUIDSecret sha256 = new GUIDSecret(ALGORITHM.HMACSHA256, JEFE);
+        assertEquals(GUIDFactory.generateGUID(sha256, MESSAGE).toString(), "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843");
+
+        GUIDSecret sha512 = new GUIDSecret(ALGORITHM.HMACSHA512, JEFE);
+        assertEquals(GUIDFactory.generateGUID(sha512, MESSAGE).toString(),
+                "164b7a7bfcf819e2e395fbe73b56e0a387bd64222e831fd610270cd7ea2505549758bf75c05a994a6d034f65f8f0e6fdcaeab1a34d4a6b4b636e070a38bce737");
+    }
+
+    @Test
+    public void blake2bKeyedVectorsTest() throws GUIDGenerationException {
+
+        GUIDSecret secret = new GUIDSecret(ALGORITHM.BLAKE2B256MAC, JEFE);
+        assertEquals(GUIDFactory.generateGUID(secret, MESSAGE).toString(), "44a4b7e70bb4dcf7416a764ddbc4485238283605dd7781dc1ea7e1ce22707834");
+
+        // The BLAKE2b keyed known answer test, with a 64 byte key
+        byte[] key = new byte[64];
+        byte[] input = new byte[256];
+        for(int i = 0; i < input.length; i++) {
+            input[i] = (byte) i;
+            if (i < key.length) key[i] = (byte) i;
+        }
+        assertEquals(HexCodec.encode(new Blake2bDigest(64, key).digest(input)),
+                "b72071e096277edebb8ee5134dd3714996307ba3a55aa4733d412abbe28e909e10e57e6fbfb4ef53b3b960518294ff889a90829254412e2a60b85add07a3674f");
+        assertEquals(HexCodec.encode(new Blake2bDigest(32, JEFE).digest()), "76572c35a2b29cca02e94581f54b8ded563898b664e9f48dd61359faf1d65c3c");
+    }
+
+    @Test
+    public void inputsTest() throws GUIDGenerationException {
+
+        for(ALGORITHM algorithm:new ALGORITHM[] { ALGORITHM.HMACSHA256, ALGORITHM.HMACSHA512, ALGORITHM.BLAKE2B256MAC }) {
+            GUIDSecret secret = new GUIDSecret(algorithm, JEFE);
+            byte[] bytes = MESSAGE.getBytes(StandardCharsets.UTF_8);
+            IGUID guid = GUIDFactory.generateGUID(secret, bytes);
+
+            assertEquals(guid.algorithm(), algorithm);
+            assertEquals(GUIDFactory.generateGUID(secret, MESSAGE), guid);
+            assertEquals(GUIDFactory.generateGUID(secret, new ByteArrayInputStream(bytes)), guid);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+            direct.put(bytes).flip();
+            assertEquals(GUIDFactory.generateGUID(secret, direct), guid);
+            assertEquals(direct.remaining(), bytes.length);
+
+            assertEquals(guid.toMultiHash().substring(0, algorithm.toString().length() + 4), algorithm + "_16_");
+            assertEquals(GUIDFactory.recreateGUID(guid.toMultiHash()), guid);
+            assertEquals(GUIDFactory.recreateGUID(guid.toMultiHash(BASE.BASE_64)), guid);
+
+            assertNotEquals(GUIDFactory.generateGUID(new GUIDSecret(algorithm, "other".getBytes()), bytes), guid);
+        }
+    }
+
+    // An interrupted stream must not leave its bytes in the thread's MAC
+    @Test
+    public void resetTest() throws GUIDGenerationException {
+
+        GUIDSecret secret = new GUIDSecret(ALGORITHM.HMACSHA256, JEFE);
+        secret.mac().update(new byte[100]);
+        assertEquals(GUIDFactory.generateGUID(secret, MESSAGE).toString(), "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843");
+    }
+
+    @Test
+    public void threadsTest() throws Exception {
+
+        GUIDSecret secret = new GUIDSecret(ALGORITHM.HMACSHA256, JEFE);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<IGUID>> futures = new ArrayList<>();
+            for(int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(() -> GUIDFactory.generateGUID(secret, MESSAGE)));
+            }
+            for(Future<IGUID> future:futures) {
+                assertEquals(future.get().toString(), "5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = GUIDGenerationException.class)
+    public void unkeyedAlgorithmTest() throws GUIDGenerationException {
+        new GUIDSecret(ALGORITHM.SHA256, JEFE);
+    }
+
+    @Test(expectedExceptions = GUIDGenerationException.class)
+    public void emptyKeyTest() throws GUIDGenerationException {
+        new GUIDSecret(ALGORITHM.HMACSHA256, new byte[0]);
+    }
+
+    @Test(expectedExceptions = GUIDGenerationException.class)
+    public void longBlake2bKeyTest() throws GUIDGenerationException {
+        new GUIDSecret(ALGORITHM.BLAKE2B256MAC, new byte[65]);
+    }
+
+    @Test(expectedExceptions = GUIDGenerationException.class)
+    public void keyedAlgorithmWithoutSecretTest() throws GUIDGenerationException {
+        GUIDFactory.generateGUID(ALGORITHM.HMACSHA256, MESSAGE);
+    }
+}
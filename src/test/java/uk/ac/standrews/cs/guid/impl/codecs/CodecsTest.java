@@ -0,0 +1,170 @@
+package uk.ac.standrews.cs.guid.impl.codecs;
+
+import org.apache.commons.codec.binary.Hex;
+import org.testng.annotations.Test;
+
+import java.util.Base64;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class CodecsTest {
+
+    @Test
+    public void hexTest() {
+
+        Random random = new Random(13);
+        for(int length = 0; length < 100; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            String hex = HexCodec.encode(bytes);
+            assertEquals(hex, Hex.encodeHexString(bytes));
+            assertEquals(HexCodec.encodeUpperCase(bytes), hex.toUpperCase());
+            assertEquals(HexCodec.decode(hex), bytes);
+            assertEquals(HexCodec.decode(hex.toUpperCase()), bytes);
+        }
+    }
+
+    @Test
+    public void hexIgnoringDashesTest() {
+        assertEquals(HexCodec.decodeIgnoringDashes("0A1B-2C3D-4e5f"), new byte[] { 0x0a, 0x1b, 0x2c, 0x3d, 0x4e, 0x5f });
+    }
+
+    @Test
+    public void invalidHexTest() {
+        for(String invalid:new String[] { "abc", "zz", "0g", "\u00e90", "-0" }) {
+            try {
+                HexCodec.decode(invalid);
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void base64Test() {
+
+        Random random = new Random(17);
+        for(int length = 0; length < 100; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            String base64 = Base64Codec.encode(bytes);
+            assertEquals(base64, Base64.getEncoder().encodeToString(bytes));
+            assertEquals(Base64Codec.encodedLength(length), base64.length());
+            assertEquals(Base64Codec.decode(base64), bytes);
+            assertEquals(Base64Codec.decode(base64.replace("=", "")), bytes);
+        }
+    }
+
+    @Test
+    public void invalidBase64Test() {
+        for(String invalid:new String[] { "A", "AB=", "AB*D", "ABC===", "AB\u00e9D", "A===" }) {
+            try {
+                Base64Codec.decode(invalid);
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void base64UrlSafeTest() {
+
+        Random random = new Random(19);
+        for(int length = 0; length < 100; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            String base64 = Base64Codec.encodeUrlSafe(bytes);
+            assertEquals(base64, Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+            assertEquals(Base64Codec.encodedLengthUrlSafe(length), base64.length());
+            assertEquals(Base64Codec.decodeUrlSafe(base64), bytes);
+            assertEquals(Base64Codec.decodeUrlSafe(Base64.getUrlEncoder().encodeToString(bytes)), bytes);
+        }
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void invalidBase64UrlSafeTest() {
+        Base64Codec.decodeUrlSafe("ab+/");
+    }
+
+    @Test
+    public void base32Test() {
+
+        Random random = new Random(23);
+        for(int length = 0; length < 100; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            String base32 = Base32Codec.encode(bytes);
+            assertEquals(Base32Codec.encodedLength(length), base32.length());
+            assertEquals(base32, base32.toLowerCase());
+            assertEquals(Base32Codec.decode(base32), bytes);
+            assertEquals(Base32Codec.decode(base32.toUpperCase()), bytes);
+        }
+
+        // RFC 4648 test vectors
+        assertEquals(Base32Codec.encode("foobar".getBytes()), "mzxw6ytboi");
+        assertEquals(Base32Codec.decode("MZXW6YQ="), "foob".getBytes());
+    }
+
+    @Test
+    public void invalidBase32Test() {
+        for(String invalid:new String[] { "a", "abc", "abcdef", "ab1d", "ab\u00e9d", "mzxw6ytb0i" }) {
+            try {
+                Base32Codec.decode(invalid);
+                fail(invalid);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void base58Test() {
+
+        Random random = new Random(29);
+        for(int length = 0; length < 100; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            if (length % 3 == 0 && length > 1) {
+                bytes[0] = 0;
+                bytes[1] = 0;
+            }
+
+            String base58 = Base58Codec.encode(bytes);
+            assertTrue(base58.length() <= Base58Codec.maxEncodedLength(length));
+            assertEquals(Base58Codec.decode(base58), bytes);
+        }
+
+        assertEquals(Base58Codec.encode("Hello World!".getBytes()), "2NEpo7TZRRrLZSi2U");
+        assertEquals(Base58Codec.encode(new byte[] { 0, 0, 1, 2 }), "115T");
+        assertEquals(Base58Codec.decode("115T"), new byte[] { 0, 0, 1, 2 });
+        assertEquals(Base58Codec.decode(""), new byte[0]);
+    }
+
+    @Test
+    public void base58OffsetTest() {
+
+        byte[] bytes = "Hello World!".getBytes();
+        byte[] out = new byte[4 + Base58Codec.maxEncodedLength(bytes.length)];
+        int length = Base58Codec.encode(bytes, 0, bytes.length, out, 4);
+        assertEquals(new String(out, 4, length), "2NEpo7TZRRrLZSi2U");
+
+        byte[] decoded = new byte[2 + Base58Codec.maxDecodedLength(length)];
+        assertEquals(Base58Codec.decode("2NEpo7TZRRrLZSi2U", decoded, 2), bytes.length);
+        assertEquals(new String(decoded, 2, bytes.length), "Hello World!");
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void invalidBase58Test() {
+        Base58Codec.decode("2NEpo7TZRRrLZSi2l");
+    }
+}
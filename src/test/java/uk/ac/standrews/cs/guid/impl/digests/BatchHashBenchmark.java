@@ -0,0 +1,77 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * Compares the ways of hashing a batch of short messages with SHA256 and SHA1: a new JDK MessageDigest for each
+ * message, a single reused JDK MessageDigest, and {@link KeyFactory#generateKeys(ALGORITHM, byte[][])}.
+ *
+ * It is not a test and is not run by the build. Run it with the test classpath, e.g.
+ * java -cp target/test-classes:target/classes:... uk.ac.standrews.cs.guid.impl.digests.BatchHashBenchmark [messages] [message length]
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class BatchHashBenchmark {
+
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int length = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+
+        Random random = new Random(42);
+        byte[][] messages = new byte[count][length];
+        for(byte[] message:messages) {
+            random.nextBytes(message);
+        }
+
+        for(ALGORITHM algorithm:new ALGORITHM[] { ALGORITHM.SHA256, ALGORITHM.SHA1 }) {
+            String name = algorithm == ALGORITHM.SHA256 ? "SHA-256" : "SHA-1";
+
+            run(algorithm + " new digest per message", () -> {
+                int sink = 0;
+                for(byte[] message:messages) {
+                    sink += MessageDigest.getInstance(name).digest(message)[0];
+                }
+                return sink;
+            });
+            run(algorithm + " reused digest", () -> {
+                MessageDigest digest = MessageDigest.getInstance(name);
+                int sink = 0;
+                for(byte[] message:messages) {
+                    sink += digest.digest(message)[0];
+                }
+                return sink;
+            });
+            run(algorithm + " generateKeys", () -> KeyFactory.generateKeys(algorithm, messages).length);
+        }
+    }
+
+    // Prints the best of the runs, after as many runs to warm up
+    private static void run(String label, Batch batch) throws Exception {
+
+        long sink = 0;
+        for(int i = 0; i < RUNS; i++) {
+            sink += batch.run();
+        }
+
+        long best = Long.MAX_VALUE;
+        for(int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            sink += batch.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        System.out.printf("%-32s %8.1f ms%n", label, best / 1e6);
+        if (sink == 42) System.out.print("");
+    }
+
+    private interface Batch {
+        long run() throws Exception;
+    }
+}
@@ -0,0 +1,205 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.BASE;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.impl.codecs.HexCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class BlakeDigestTest {
+
+    // BLAKE3 of the first bytes of the sequence 0, 1, ..., 250, 0, 1, ..., as in the official test vectors
+    private static final Object[][] BLAKE3_VECTORS = {
+            { 0, "af1349b9f5f9a1a6a0404dea36dcc9499bcb25c9adc112b7cc9a93cae41f3262" },
+            { 1, "2d3adedff11b61f14c886e35afa036736dcd87a74d27b5c1510225d0f592e213" },
+            { 1023, "10108970eeda3eb932baac1428c7a2163b0e924c9a9e25b35bba72b28f70bd11" },
+            { 1024, "42214739f095a406f3fc83deb889744ac00df831c10daa55189b5d121c855af7" },
+            { 1025, "d00278ae47eb27b34faecf67b4fe263f82d5412916c1ffd97c8cb7fb814b8444" },
+            { 2048, "e776b6028c7cd22a4d0ba182a8bf62205d2ef576467e838ed6f2529b85fba24a" },
+            { 2049, "5f4d72f40d7a5f82b15ca2b2e44b1de3c2ef86c426c95c1af0b6879522563030" },
+            { 3072, "b98cb0ff3623be03326b373de6b9095218513e64f1ee2edd2525c7ad1e5cffd2" },
+            { 3073, "7124b49501012f81cc7f11ca069ec9226cecb8a2c850cfe644e327d22d3e1cd3" },
+            { 4096, "015094013f57a5277b59d8475c0501042c0b642e531b0a1c8f58d2163229e969" },
+            { 4097, "9b4052b38f1c5fc8b1f9ff7ac7b27cd242487b3d890d15c96a1c25b8aa0fb995" },
+            { 5120, "9cadc15fed8b5d854562b26a9536d9707cadeda9b143978f319ab34230535833" },
+            { 8192, "aae792484c8efe4f19e2ca7d371d8c467ffb10748d8a5a1ae579948f718a2a63" },
+            { 8193, "bab6c09cb8ce8cf459261398d2e7aef35700bf488116ceb94a36d0f5f1b7bc3b" },
+            { 16384, "f875d6646de28985646f34ee13be9a576fd515f76b5b0a26bb324735041ddde4" },
+            { 31744, "62b6960e1a44bcc1eb1a611a8d6235b6b4b78f32e7abc4fb4c6cdcce94895c47" },
+            { 102400, "bc3e3d41a1146b069abffad3c0d44860cf664390afce4d9661f7902e7943e085" }
+    };
+
+    // BLAKE2b-256 of the same sequence
+    private static final Object[][] BLAKE2B256_VECTORS = {
+            { 0, "0e5751c026e543b2e8ab2eb06099daa1d1e5df47778f7787faab45cdf12fe3a8" },
+            { 1, "03170a2e7597b7b7e3d84c05391d139a62b157e78786d8c082f29dcf4c111314" },
+            { 3, "3d8c3d594928271f44aad7a04b177154806867bcf918e1549c0bc16f9da2b09b" },
+            { 127, "f2fe67ff342e21b8f45e8f2e0bcd1d9243245d50ee6c78042e9c491388791c72" },
+            { 128, "c3582f71ebb2be66fa5dd750f80baae97554f3b015663c8be377cfcb2488c1d1" },
+            { 129, "f7f3c46ba2564ff4c4c162da1f5b605f9f1c4aa6a20652a9f9a337c1a2f5b9c9" },
+            { 255, "d9ef0fc521b4266d16df662bec231bc2ec3989e7adeaf63169c295dc239dbbea" },
+            { 256, "582f782226018ec33076bd8d1c42413530ac7e1126260ffc0f306ba3befc3f24" },
+            { 257, "227e15ed64ee8e93eb7bc53828f76eed974f2c4ab1408c3d08f212b7f8d69904" },
+            { 1000, "b372d0608f720c8c3dd41e9c8eecb10143b41abe520b616607e754bf79c08331" },
+            { 4096, "11c294a11dc67e3ddb25f8c06cca2721e58d2a044243abea6c7063fd17d589e5" }
+    };
+
+    @Test
+    public void blake3VectorsTest() {
+
+        byte[] input = sequence(102400);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for(Object[] vector:BLAKE3_VECTORS) {
+                int length = (int) vector[0];
+                assertEquals(HexCodec.encode(Blake3Digest.hash(ByteBuffer.wrap(input, 0, length))), vector[1], "length " + length);
+                assertEquals(HexCodec.encode(Blake3Digest.hash(ByteBuffer.wrap(input, 0, length), pool)), vector[1], "length " + length);
+
+                MessageDigest digest = new Blake3Digest();
+                digest.update(input, 0, length);
+                assertEquals(HexCodec.encode(digest.digest()), vector[1], "length " + length);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(HexCodec.encode(Blake3Digest.hash(ByteBuffer.wrap("abc".getBytes()))), "6437b3ac38465133ffb63b75273a8db548c558465d79db03fd359c6cd5bd9d85");
+    }
+
+    @Test
+    public void blake2bVectorsTest() {
+
+        byte[] input = sequence(4096);
+        for(Object[] vector:BLAKE2B256_VECTORS) {
+            int length = (int) vector[0];
+            MessageDigest digest = new Blake2bDigest(32);
+            digest.update(input, 0, length);
+            assertEquals(HexCodec.encode(digest.digest()), vector[1], "length " + length);
+        }
+
+        // RFC 7693, appendix A
+        assertEquals(HexCodec.encode(new Blake2bDigest(64).digest("abc".getBytes())),
+                "ba80a53f981c4d0d6a2797b69f12f6e94c212f14685ac4b74b12bb6fdbffa2d17d87c5392aab792dc252d5de4533cc9518d38aa8dbf1925ab92386edd4009923");
+        assertEquals(HexCodec.encode(new Blake2bDigest(32).digest("abc".getBytes())), "bddd813c634239723171ef3fee98579b94964e3bb1cb3e427262c8c068d52319");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void blake2bDigestLengthTest() {
+        new Blake2bDigest(65);
+    }
+
+    @Test
+    public void blake3StreamingTest() {
+        streamingTest(new Blake3Digest(), bytes -> Blake3Digest.hash(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    public void blake2bStreamingTest() {
+        streamingTest(new Blake2bDigest(32), bytes -> new Blake2bDigest(32).digest(bytes));
+    }
+
+    // The parallel tree must give the same root as the sequential chunk stack, for any shape of the tree
+    @Test
+    public void blake3ParallelTest() {
+
+        Random random = new Random(7);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for(int length:new int[] { 64 * 1024 - 1, 64 * 1024, 64 * 1024 + 1, 1 << 20, (1 << 20) + 1023, 3 * (1 << 20) + 12345 }) {
+                byte[] bytes = new byte[length];
+                random.nextBytes(bytes);
+
+                MessageDigest digest = new Blake3Digest();
+                digest.update(bytes);
+                byte[] expected = digest.digest();
+
+                assertEquals(Blake3Digest.hash(ByteBuffer.wrap(bytes), pool), expected, "length " + length);
+
+                ByteBuffer direct = ByteBuffer.allocateDirect(length + 3);
+                direct.position(3);
+                direct.put(bytes).flip().position(3);
+                assertEquals(Blake3Digest.hash(direct.slice(), pool), expected, "length " + length);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void guidTest() throws Exception {
+
+        for(ALGORITHM algorithm:new ALGORITHM[] { ALGORITHM.BLAKE2B256, ALGORITHM.BLAKE3 }) {
+            byte[] bytes = sequence(200000);
+            IGUID guid = GUIDFactory.generateGUID(algorithm, bytes);
+
+            assertEquals(guid.algorithm(), algorithm);
+            assertEquals(guid.toString().length(), 64);
+            assertEquals(GUIDFactory.generateGUID(algorithm, new ByteArrayInputStream(bytes)), guid);
+            assertEquals(GUIDFactory.generateGUID(algorithm, ByteBuffer.wrap(bytes)), guid);
+            assertEquals(GUIDFactory.recreateGUID(guid.toMultiHash()), guid);
+            assertEquals(GUIDFactory.recreateGUID(guid.toMultiHash(BASE.BASE_64)), guid);
+
+            File file = File.createTempFile("blake", ".bin");
+            try {
+                Files.write(file.toPath(), bytes);
+                assertEquals(GUIDFactory.generateGUID(algorithm, file), guid);
+            } finally {
+                file.delete();
+            }
+        }
+
+        assertEquals(GUIDFactory.generateGUID(ALGORITHM.BLAKE3, "abc").toString(), "6437b3ac38465133ffb63b75273a8db548c558465d79db03fd359c6cd5bd9d85");
+        assertEquals(GUIDFactory.generateGUID(ALGORITHM.BLAKE2B256, "abc").toString(), "bddd813c634239723171ef3fee98579b94964e3bb1cb3e427262c8c068d52319");
+    }
+
+    // Hash random lengths in random pieces, including single bytes, and compare with the one-shot hash
+    private static void streamingTest(MessageDigest digest, OneShot oneShot) {
+
+        Random random = new Random(31);
+        for(int length:new int[] { 0, 1, 63, 64, 65, 127, 128, 129, 1023, 1024, 1025, 2048, 4097, 10000, 70000 }) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            for(int attempt = 0; attempt < 5; attempt++) {
+                int offset = 0;
+                while (offset < length) {
+                    if (random.nextInt(4) == 0) {
+                        digest.update(bytes[offset++]);
+                    } else {
+                        int piece = Math.min(length - offset, random.nextInt(attempt == 0 ? 5000 : 300));
+                        digest.update(bytes, offset, piece);
+                        offset += piece;
+                    }
+                }
+                assertEquals(digest.digest(), oneShot.hash(bytes), "length " + length);
+            }
+        }
+    }
+
+    private interface OneShot {
+        byte[] hash(byte[] bytes);
+    }
+
+    // The input of the BLAKE3 test vectors
+    private static byte[] sequence(int length) {
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i % 251);
+        }
+        return bytes;
+    }
+}
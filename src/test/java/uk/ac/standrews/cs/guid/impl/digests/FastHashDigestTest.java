@@ -0,0 +1,149 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.BASE;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.impl.codecs.HexCodec;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class FastHashDigestTest {
+
+    // XXH128 of the first bytes of the xxHash sanity check buffer, as in its test vectors
+    private static final Object[][] XXH128_VECTORS = {
+            { 0, "99aa06d3014798d86001c324468d497f" },
+            { 1, "a6cd5e9392000f6ac44bdff4074eecdb" },
+            { 6, "082afe0b8162d12a3e7039bdda43cfc6" },
+            { 12, "6e3efd8fc7802b18061a192713f69ad9" },
+            { 24, "0ce966e4678d37611e7044d28b1b901d" },
+            { 48, "a002ac4e5478227ef942219aed80f67b" },
+            { 80, "fdf2cefde9eaac8a454ae6bf7a8a532d" },
+            { 195, "7729543a26b207ee3fb593c086a66075" },
+            { 403, "1b6de21e332dd73dcdeb804d65c6dea4" },
+            { 512, "18d2d110dcc9bca1617e49599013cb6b" },
+            { 2048, "f736557fd47073a5dd59e2c3a5f038e0" },
+            { 2240, "ccb134fbfa7ce49d6e73a90539cf2948" },
+            { 2367, "e89c0f6ff369b427cb37aeb9e5d361ed" }
+    };
+
+    @Test
+    public void xxh128VectorsTest() {
+
+        byte[] buffer = sanityBuffer(2367);
+        for(Object[] vector:XXH128_VECTORS) {
+            int length = (int) vector[0];
+            assertEquals(HexCodec.encode(XXH128Digest.hash(buffer, 0, length)), vector[1], "length " + length);
+
+            MessageDigest digest = new XXH128Digest();
+            digest.update(buffer, 0, length);
+            assertEquals(HexCodec.encode(digest.digest()), vector[1], "length " + length);
+        }
+    }
+
+    @Test
+    public void murmur3VectorsTest() {
+
+        assertEquals(HexCodec.encode(Murmur3Digest.hash(new byte[0], 0, 0)), "00000000000000000000000000000000");
+        assertEquals(HexCodec.encode(Murmur3Digest.hash("hello".getBytes(), 0, 5)), "029bbd41b3a7d8cb191dae486a901e5b");
+        assertEquals(HexCodec.encode(Murmur3Digest.hash("The quick brown fox jumps over the lazy dog".getBytes(), 0, 43)), "6c1b07bc7bbc4be347939ac4a93c437a");
+    }
+
+    /**
+     * The SMHasher verification code: hash the keys {}, {0}, {0, 1}, ... {0, ..., 254} with seeds 256 - length,
+     * then hash the concatenation of the results.
+     */
+    @Test
+    public void murmur3VerificationTest() {
+
+        byte[] key = new byte[256];
+        byte[] hashes = new byte[256 * Murmur3Digest.DIGEST_LENGTH];
+        for(int i = 0; i < 256; i++) {
+            key[i] = (byte) i;
+            byte[] hash = Murmur3Digest.hash(key, 0, i, 256 - i);
+            System.arraycopy(hash, 0, hashes, i * Murmur3Digest.DIGEST_LENGTH, hash.length);
+        }
+
+        byte[] result = Murmur3Digest.hash(hashes, 0, hashes.length);
+        int verification = (result[0] & 0xff) | (result[1] & 0xff) << 8 | (result[2] & 0xff) << 16 | (result[3] & 0xff) << 24;
+        assertEquals(verification, 0x6384BA69);
+    }
+
+    @Test
+    public void xxh128StreamingTest() {
+        streamingTest(new XXH128Digest(), (bytes, length) -> XXH128Digest.hash(bytes, 0, length));
+    }
+
+    @Test
+    public void murmur3StreamingTest() {
+        streamingTest(new Murmur3Digest(), (bytes, length) -> Murmur3Digest.hash(bytes, 0, length));
+    }
+
+    @Test
+    public void guidTest() throws Exception {
+
+        for(ALGORITHM algorithm:new ALGORITHM[] { ALGORITHM.XXH128, ALGORITHM.MURMUR3 }) {
+            byte[] bytes = sanityBuffer(5000);
+            IGUID guid = GUIDFactory.generateGUID(algorithm, bytes);
+
+            assertEquals(guid.algorithm(), algorithm);
+            assertEquals(guid.toString().length(), 32);
+            assertEquals(GUIDFactory.generateGUID(algorithm, new ByteArrayInputStream(bytes)), guid);
+            assertEquals(GUIDFactory.generateGUID(algorithm, ByteBuffer.wrap(bytes)), guid);
+            assertEquals(GUIDFactory.recreateGUID(guid.toMultiHash()), guid);
+            assertEquals(GUIDFactory.recreateGUID(guid.toMultiHash(BASE.BASE_64)), guid);
+            assertEquals(guid.toMultiHash().substring(0, algorithm.toString().length() + 4), algorithm + "_16_");
+        }
+
+        assertEquals(GUIDFactory.generateGUID(ALGORITHM.XXH128, "hello"), GUIDFactory.generateGUID(ALGORITHM.XXH128, "hello".getBytes()));
+        assertEquals(GUIDFactory.generateGUID(ALGORITHM.XXH128, "hello").toString(), HexCodec.encode(XXH128Digest.hash("hello".getBytes(), 0, 5)));
+    }
+
+    // Hash random lengths in random pieces, including single bytes, and compare with the one-shot hash
+    private static void streamingTest(MessageDigest digest, OneShot oneShot) {
+
+        Random random = new Random(31);
+        for(int length:new int[] { 0, 1, 3, 4, 8, 9, 16, 17, 128, 129, 240, 241, 255, 256, 257, 1024, 1025, 1088, 4096, 10000 }) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            for(int attempt = 0; attempt < 5; attempt++) {
+                int offset = 0;
+                while (offset < length) {
+                    if (random.nextInt(4) == 0) {
+                        digest.update(bytes[offset++]);
+                    } else {
+                        int piece = Math.min(length - offset, random.nextInt(attempt == 0 ? 2000 : 300));
+                        digest.update(bytes, offset, piece);
+                        offset += piece;
+                    }
+                }
+                assertEquals(digest.digest(), oneShot.hash(bytes, length), "length " + length);
+            }
+        }
+    }
+
+    private interface OneShot {
+        byte[] hash(byte[] bytes, int length);
+    }
+
+    // The buffer of the xxHash sanity checks
+    private static byte[] sanityBuffer(int length) {
+        byte[] buffer = new byte[length];
+        long generator = 2654435761L;
+        for(int i = 0; i < length; i++) {
+            buffer[i] = (byte) (generator >>> 56);
+            generator *= 0x9E3779B185EBCA8DL;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,77 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.IKey;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+
+import java.util.Random;
+
+/**
+ * Compares the throughput of the fast hashes with SHA256 and MD5, through {@link KeyFactory#generateKey(ALGORITHM, byte[])},
+ * for input sizes from dedup keys to large blobs.
+ *
+ * It is not a test and is not run by the build. Run it with the test classpath, e.g.
+ * java -cp target/test-classes:target/classes:... uk.ac.standrews.cs.guid.impl.digests.HashBenchmark [seconds per run]
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class HashBenchmark {
+
+    private static final ALGORITHM[] ALGORITHMS = { ALGORITHM.SHA256, ALGORITHM.MD5, ALGORITHM.XXH128, ALGORITHM.MURMUR3 };
+    private static final int[] SIZES = { 16, 64, 256, 1024, 16 * 1024, 1024 * 1024 };
+
+    public static void main(String[] args) throws Exception {
+
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1;
+
+        // Warm up every path before measuring, so the first sizes are not measured while being compiled
+        for(int size:SIZES) {
+            for(ALGORITHM algorithm:ALGORITHMS) {
+                run(algorithm, new byte[size], seconds / 10);
+            }
+        }
+
+        System.out.printf("%-10s", "bytes");
+        for(ALGORITHM algorithm:ALGORITHMS) {
+            System.out.printf("%22s", algorithm);
+        }
+        System.out.println();
+
+        Random random = new Random(42);
+        for(int size:SIZES) {
+            byte[] input = new byte[size];
+            random.nextBytes(input);
+
+            System.out.printf("%-10d", size);
+            for(ALGORITHM algorithm:ALGORITHMS) {
+                double nanos = run(algorithm, input, seconds);
+                System.out.printf("%12.1f ns %6.0f MB/s", nanos, size / nanos * 1e3);
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * @return the average time of a call, in nanoseconds
+     */
+    private static double run(ALGORITHM algorithm, byte[] input, double seconds) throws Exception {
+
+        long budget = (long) (seconds * 1e9);
+        long calls = 0;
+        int sink = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            for(int i = 0; i < 100; i++) {
+                input[0] = (byte) calls; // Defeats any caching of the result
+                IKey key = KeyFactory.generateKey(algorithm, input);
+                sink += key.hashCode();
+                calls++;
+            }
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < budget);
+
+        if (sink == 42) System.out.print("");
+        return (double) elapsed / calls;
+    }
+}
@@ -0,0 +1,86 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class ResumableDigestTest {
+
+    @Test
+    public void sameAsMessageDigestTest() throws Exception {
+        compare(ALGORITHM.SHA1, "SHA-1");
+        compare(ALGORITHM.SHA256, "SHA-256");
+    }
+
+    // Save and restore the state at random points, as a growing file would
+    @Test
+    public void saveAndRestoreTest() throws Exception {
+
+        Random random = new Random(3);
+        for(ALGORITHM algorithm:new ALGORITHM[] { ALGORITHM.SHA1, ALGORITHM.SHA256 }) {
+            byte[] bytes = new byte[20000];
+            random.nextBytes(bytes);
+
+            ResumableDigest digest = ResumableDigest.getInstance(algorithm);
+            int offset = 0;
+            while (offset < bytes.length) {
+                int piece = Math.min(bytes.length - offset, random.nextInt(300));
+                digest.update(bytes, offset, piece);
+                offset += piece;
+
+                byte[] state = digest.saveState();
+                digest = ResumableDigest.restore(state);
+                assertEquals(digest.length(), offset);
+                assertEquals(digest.saveState(), state);
+            }
+
+            MessageDigest expected = MessageDigest.getInstance(algorithm == ALGORITHM.SHA1 ? "SHA-1" : "SHA-256");
+            assertEquals(digest.digest(), expected.digest(bytes));
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void corruptedStateTest() {
+
+        ResumableDigest digest = ResumableDigest.getInstance(ALGORITHM.SHA256);
+        digest.update(new byte[100]);
+        byte[] state = digest.saveState();
+        state[30] ^= 1;
+        ResumableDigest.restore(state);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void truncatedStateTest() {
+        ResumableDigest.restore(new byte[3]);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void unsupportedAlgorithmTest() {
+        ResumableDigest.getInstance(ALGORITHM.MD5);
+    }
+
+    private static void compare(ALGORITHM algorithm, String name) throws Exception {
+
+        Random random = new Random(17);
+        ResumableDigest digest = ResumableDigest.getInstance(algorithm);
+        for(int length:new int[] { 0, 1, 55, 56, 57, 63, 64, 65, 119, 120, 128, 1000, 4099 }) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            int half = length / 2;
+            digest.update(bytes, 0, half);
+            if (half < length) {
+                digest.update(bytes[half]);
+                digest.update(bytes, half + 1, length - half - 1);
+            }
+            assertEquals(digest.digest(), MessageDigest.getInstance(name).digest(bytes), name + " length " + length);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package uk.ac.standrews.cs.guid.impl.digests;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class UTF8DigesterTest {
+
+    @Test
+    public void asciiTest() {
+        assertDigest("abc");
+    }
+
+    @Test
+    public void multiByteTest() {
+        assertDigest("caf\u00e9 \u00fcber \u20ac \u4e2d\u6587 \ud83d\ude00");
+    }
+
+    @Test
+    public void unpairedSurrogatesTest() {
+        assertDigest("a\ud83db\ude00c\ud83d");
+    }
+
+    @Test
+    public void longStringsTest() {
+
+        Random random = new Random(11);
+        for(int length:new int[]{8191, 8192, 8193, 20000, 100003}) {
+            StringBuilder builder = new StringBuilder(length);
+            for(int i = 0; i < length; i++) {
+                // Mostly ASCII, with multi-byte characters and surrogate pairs across the buffer boundaries
+                int r = random.nextInt(10);
+                if (r < 6) builder.append((char) ('a' + random.nextInt(26)));
+                else if (r < 7) builder.append((char) (0x80 + random.nextInt(0x780)));
+                else if (r < 8) builder.append((char) (0x800 + random.nextInt(0xd000)));
+                else if (r < 9) builder.appendCodePoint(0x10000 + random.nextInt(0xfffff));
+                else builder.append((char) (0xd800 + random.nextInt(0x800)));
+            }
+            assertDigest(builder.toString());
+        }
+    }
+
+    @Test
+    public void charSequenceGUIDTest() throws Exception {
+
+        StringBuilder builder = new StringBuilder("quick brown fox");
+        assertEquals(GUIDFactory.generateGUID(ALGORITHM.SHA1, builder).toString(), "a9762606f9e33e452f06b4562e253efb6038b512");
+    }
+
+    private static void assertDigest(String string) {
+
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        UTF8Digester.update(digest, string);
+
+        assertEquals(digest.digest(), DigestUtils.sha256(string.getBytes(StandardCharsets.UTF_8)));
+    }
+}
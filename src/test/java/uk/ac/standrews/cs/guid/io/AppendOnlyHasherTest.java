@@ -0,0 +1,92 @@
+package uk.ac.standrews.cs.guid.io;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class AppendOnlyHasherTest {
+
+    private Path file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = Files.createTempFile("append", ".log");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void appendTest() throws Exception {
+
+        Random random = new Random(5);
+        for(ALGORITHM algorithm:new ALGORITHM[] { ALGORITHM.SHA1, ALGORITHM.SHA256 }) {
+            Files.write(file, new byte[0]);
+            Checkpoint checkpoint = AppendOnlyHasher.hash(algorithm, file);
+            assertEquals(checkpoint.offset(), 0);
+
+            for(int i = 0; i < 20; i++) {
+                byte[] bytes = new byte[random.nextInt(5000) + 1];
+                random.nextBytes(bytes);
+                Files.write(file, bytes, StandardOpenOption.APPEND);
+
+                // Round trip through the stored state and offset, as a new process would
+                checkpoint = AppendOnlyHasher.resume(checkpoint.state(), checkpoint.offset(), file);
+                assertEquals(checkpoint.offset(), Files.size(file));
+                assertEquals(checkpoint.guid(), GUIDFactory.generateGUID(algorithm, file.toFile()));
+            }
+
+            assertEquals(AppendOnlyHasher.hash(algorithm, file).guid(), checkpoint.guid());
+        }
+    }
+
+    @Test
+    public void nothingAppendedTest() throws Exception {
+
+        Files.write(file, "hello".getBytes());
+        Checkpoint checkpoint = AppendOnlyHasher.hash(ALGORITHM.SHA256, file);
+        Checkpoint resumed = AppendOnlyHasher.resume(checkpoint, file);
+
+        assertEquals(resumed.guid(), checkpoint.guid());
+        assertEquals(resumed.offset(), 5);
+        assertEquals(resumed.guid(), GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello"));
+    }
+
+    @Test(expectedExceptions = GUIDGenerationException.class)
+    public void truncatedFileTest() throws Exception {
+
+        Files.write(file, new byte[100]);
+        Checkpoint checkpoint = AppendOnlyHasher.hash(ALGORITHM.SHA256, file);
+        Files.write(file, new byte[10]);
+        AppendOnlyHasher.resume(checkpoint, file);
+    }
+
+    @Test(expectedExceptions = GUIDGenerationException.class)
+    public void wrongOffsetTest() throws Exception {
+
+        Files.write(file, new byte[100]);
+        Checkpoint checkpoint = AppendOnlyHasher.hash(ALGORITHM.SHA256, file);
+        AppendOnlyHasher.resume(checkpoint.state(), 50, file);
+    }
+
+    @Test(expectedExceptions = GUIDGenerationException.class)
+    public void unsupportedAlgorithmTest() throws Exception {
+        AppendOnlyHasher.hash(ALGORITHM.BLAKE3, file);
+    }
+}
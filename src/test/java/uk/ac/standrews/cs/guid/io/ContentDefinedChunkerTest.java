@@ -0,0 +1,91 @@
+package uk.ac.standrews.cs.guid.io;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class ContentDefinedChunkerTest {
+
+    private static final int SIZE = 2 * 1024 * 1024;
+
+    @Test
+    public void chunksTest() throws Exception {
+
+        byte[] content = random(SIZE, 1);
+        Recipe recipe = new ContentDefinedChunker(ALGORITHM.SHA256).chunk(new ByteArrayInputStream(content));
+
+        assertEquals(recipe.length(), SIZE);
+        assertTrue(recipe.size() > SIZE / ContentDefinedChunker.DEFAULT_MAX_SIZE);
+
+        int offset = 0;
+        for(int i = 0; i < recipe.size(); i++) {
+            int length = recipe.length(i);
+            assertTrue(length <= ContentDefinedChunker.DEFAULT_MAX_SIZE);
+            if (i < recipe.size() - 1) {
+                assertTrue(length >= ContentDefinedChunker.DEFAULT_MIN_SIZE);
+            }
+
+            IGUID expected = GUIDFactory.generateGUID(ALGORITHM.SHA256, Arrays.copyOfRange(content, offset, offset + length));
+            assertEquals(recipe.chunks().get(i), expected);
+            offset += length;
+        }
+    }
+
+    @Test
+    public void deterministicTest() throws Exception {
+
+        byte[] content = random(SIZE, 2);
+        Recipe first = new ContentDefinedChunker(ALGORITHM.SHA1).chunk(new ByteArrayInputStream(content));
+        Recipe second = new ContentDefinedChunker(ALGORITHM.SHA1).chunk(new ByteArrayInputStream(content));
+
+        assertEquals(second.chunks(), first.chunks());
+        assertEquals(second.guid(), first.guid());
+    }
+
+    @Test
+    public void insertionTest() throws Exception {
+
+        byte[] content = random(SIZE, 3);
+        byte[] edited = new byte[SIZE + 10];
+        System.arraycopy(content, 0, edited, 0, SIZE / 2);
+        System.arraycopy(content, SIZE / 2, edited, SIZE / 2 + 10, SIZE / 2);
+
+        ContentDefinedChunker chunker = new ContentDefinedChunker(ALGORITHM.SHA256);
+        Recipe original = chunker.chunk(new ByteArrayInputStream(content));
+        Recipe modified = chunker.chunk(new ByteArrayInputStream(edited));
+
+        Set<IGUID> shared = new HashSet<>(original.chunks());
+        shared.retainAll(modified.chunks());
+
+        // Only the chunks around the insertion should differ
+        assertTrue(shared.size() >= original.size() - 3);
+        assertTrue(!original.guid().equals(modified.guid()));
+    }
+
+    @Test
+    public void emptyStreamTest() throws Exception {
+
+        Recipe recipe = new ContentDefinedChunker(ALGORITHM.SHA256).chunk(new ByteArrayInputStream(new byte[0]));
+        assertEquals(recipe.size(), 0);
+        assertEquals(recipe.length(), 0);
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,126 @@
+package uk.ac.standrews.cs.guid.io;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDProcessorTest {
+
+    @Test
+    public void interleavedMessagesTest() throws Exception {
+
+        GUIDProcessor processor = new GUIDProcessor(ALGORITHM.SHA256, 4);
+        CollectingSubscriber subscriber = new CollectingSubscriber(1);
+
+        List<Chunk> published = new ArrayList<>();
+        try (SubmissionPublisher<Chunk> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            processor.subscribe(subscriber);
+
+            published.add(new Chunk("a", buffer("ab"), false));
+            published.add(new Chunk("b", buffer("TE"), false));
+            published.add(new Chunk("a", buffer("c"), true));
+            published.add(new Chunk("b", buffer("ST"), true));
+            published.add(new Chunk("c", buffer("hello"), true));
+            for(Chunk chunk:published) {
+                publisher.submit(chunk);
+            }
+        }
+
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertEquals(subscriber.chunks.size(), published.size());
+
+        for(int i = 0; i < published.size(); i++) {
+            assertSame(subscriber.chunks.get(i).data(), published.get(i).data());
+            assertEquals(subscriber.chunks.get(i).data().remaining(), published.get(i).data().remaining());
+        }
+
+        assertNull(subscriber.chunks.get(0).guid());
+        assertEquals(subscriber.chunks.get(2).guid(), GUIDFactory.generateGUID(ALGORITHM.SHA256, "abc"));
+        assertEquals(subscriber.chunks.get(3).guid(), GUIDFactory.generateGUID(ALGORITHM.SHA256, "TEST"));
+        assertEquals(subscriber.chunks.get(4).guid(), GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello"));
+    }
+
+    @Test
+    public void boundedBufferingTest() {
+
+        GUIDProcessor processor = new GUIDProcessor(ALGORITHM.SHA1, 3);
+        AtomicLong requested = new AtomicLong();
+
+        processor.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requested.addAndGet(n);
+            }
+
+            @Override
+            public void cancel() {}
+        });
+        assertEquals(requested.get(), 3);
+
+        CollectingSubscriber subscriber = new CollectingSubscriber(0);
+        processor.subscribe(subscriber);
+
+        for(int i = 0; i < 3; i++) {
+            processor.onNext(new Chunk(i, buffer("abc"), true));
+        }
+        assertEquals(requested.get(), 3);
+        assertEquals(subscriber.chunks.size(), 0);
+
+        subscriber.subscription.request(2);
+        assertEquals(subscriber.chunks.size(), 2);
+        assertEquals(requested.get(), 5);
+    }
+
+    private static ByteBuffer buffer(String string) {
+        return ByteBuffer.wrap(string.getBytes());
+    }
+
+    private static class CollectingSubscriber implements Flow.Subscriber<Chunk> {
+
+        private final long batch;
+        private final List<Chunk> chunks = new ArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private Flow.Subscription subscription;
+
+        CollectingSubscriber(long batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (batch > 0) subscription.request(batch);
+        }
+
+        @Override
+        public void onNext(Chunk item) {
+            chunks.add(item);
+            if (batch > 0) subscription.request(batch);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
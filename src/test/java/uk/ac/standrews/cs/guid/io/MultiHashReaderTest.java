@@ -0,0 +1,144 @@
+package uk.ac.standrews.cs.guid.io;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.BASE;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+import uk.ac.standrews.cs.guid.impl.KeyFactory;
+import uk.ac.standrews.cs.guid.sort.GUIDBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class MultiHashReaderTest {
+
+    private Path file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        file = Files.createTempFile("multihash", ".txt");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void roundTripTest() throws Exception {
+
+        List<IGUID> guids = new ArrayList<>();
+        try (MultiHashWriter writer = new MultiHashWriter(file)) {
+            for(int i = 0; i < 1000; i++) {
+                IGUID guid = GUIDFactory.generateGUID(i % 2 == 0 ? ALGORITHM.SHA1 : ALGORITHM.SHA512, String.valueOf(i));
+                guids.add(guid);
+                writer.write(guid);
+            }
+            assertEquals(writer.count(), 1000);
+        }
+
+        // The writer produces the same lines as toMultiHash
+        List<String> lines = Files.readAllLines(file);
+        for(int i = 0; i < guids.size(); i++) {
+            assertEquals(lines.get(i), guids.get(i).toMultiHash());
+        }
+
+        List<IGUID> read = new ArrayList<>();
+        long count = MultiHashReader.read(file, (algorithm, digest, length) -> read.add(recreate(algorithm, digest, length)));
+        assertEquals(count, 1000);
+        assertEquals(read, guids);
+    }
+
+    @Test
+    public void parallelTest() throws Exception {
+
+        Set<IGUID> guids = new HashSet<>();
+        try (MultiHashWriter writer = new MultiHashWriter(file)) {
+            for(int i = 0; i < 10000; i++) {
+                IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA256, String.valueOf(i));
+                guids.add(guid);
+                writer.write(guid);
+            }
+        }
+
+        for(int parts:new int[] { 1, 3, 8, 20000 }) {
+            Set<IGUID> read = ConcurrentHashMap.newKeySet();
+            long count = MultiHashReader.read(file, (algorithm, digest, length) -> read.add(recreate(algorithm, digest, length)), ForkJoinPool.commonPool(), parts);
+
+            assertEquals(count, 10000);
+            assertEquals(read, guids);
+        }
+    }
+
+    @Test
+    public void guidBufferTest() throws Exception {
+
+        GUIDBuffer guids = new GUIDBuffer(ALGORITHM.SHA256, 100);
+        for(int i = 0; i < 100; i++) {
+            guids.add(GUIDFactory.generateGUID(ALGORITHM.SHA256, String.valueOf(i)));
+        }
+        try (MultiHashWriter writer = new MultiHashWriter(file)) {
+            writer.write(guids);
+        }
+
+        GUIDBuffer read = new GUIDBuffer(ALGORITHM.SHA256, 100);
+        assertEquals(MultiHashReader.read(file, read), 100);
+        for(int i = 0; i < 100; i++) {
+            assertEquals(read.get(i), guids.get(i));
+        }
+    }
+
+    @Test
+    public void otherBasesTest() throws Exception {
+
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello");
+        String content = guid.toMultiHash(BASE.BASE_64) + "\r\n" +
+                "\n" +
+                guid.toMultiHash(BASE.CANON) + "\r\n" +
+                guid.toMultiHash().toLowerCase();
+
+        List<IGUID> read = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length());
+        buffer.put(content.getBytes(StandardCharsets.US_ASCII)).flip();
+        assertEquals(MultiHashReader.read(buffer, (algorithm, digest, length) -> read.add(recreate(algorithm, digest, length))), 3);
+
+        assertEquals(read, Arrays.asList(guid, guid, guid));
+    }
+
+    @Test (expectedExceptions = GUIDGenerationException.class)
+    public void malformedLineTest() throws Exception {
+
+        Files.write(file, "SHA256_16_abc\n".getBytes(StandardCharsets.US_ASCII));
+        MultiHashReader.read(file, (algorithm, digest, length) -> fail());
+    }
+
+    @Test (expectedExceptions = GUIDGenerationException.class)
+    public void unknownAlgorithmTest() throws Exception {
+
+        Files.write(file, "SHA3_16_abcd\n".getBytes(StandardCharsets.US_ASCII));
+        MultiHashReader.read(file, (algorithm, digest, length) -> fail(), ForkJoinPool.commonPool(), 2);
+    }
+
+    private static IGUID recreate(ALGORITHM algorithm, byte[] digest, int length) {
+        try {
+            return (IGUID) KeyFactory.recreateKey(algorithm, Arrays.copyOf(digest, length));
+        } catch (GUIDGenerationException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
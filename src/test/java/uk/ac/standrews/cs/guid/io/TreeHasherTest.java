@@ -0,0 +1,109 @@
+package uk.ac.standrews.cs.guid.io;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class TreeHasherTest {
+
+    private Path root;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+
+        root = Files.createTempDirectory("guid-tree");
+        Files.createDirectories(root.resolve("a/b"));
+
+        Random random = new Random(3);
+        for(int i = 0; i < 300; i++) {
+            byte[] content = new byte[random.nextInt(100)];
+            random.nextBytes(content);
+            Files.write(root.resolve((i % 2 == 0 ? "a/" : "a/b/") + "small-" + i), content);
+        }
+
+        byte[] large = new byte[300 * 1024];
+        random.nextBytes(large);
+        Files.write(root.resolve("large"), large);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void entriesTest() throws Exception {
+
+        Manifest manifest = new TreeHasher(ALGORITHM.SHA256, 4).hash(root);
+
+        assertEquals(manifest.entries().size(), 301);
+        assertEquals(manifest.entries().get("large"), GUIDFactory.generateGUID(ALGORITHM.SHA256, root.resolve("large").toFile()));
+        assertEquals(manifest.entries().get("a/small-0"), GUIDFactory.generateGUID(ALGORITHM.SHA256, root.resolve("a/small-0").toFile()));
+        assertEquals(manifest.entries().get("a/b/small-299"), GUIDFactory.generateGUID(ALGORITHM.SHA256, root.resolve("a/b/small-299").toFile()));
+    }
+
+    // A root that is a file gives a manifest of that file alone, named by its file name
+    @Test
+    public void fileRootTest() throws Exception {
+
+        Path small = root.resolve("a/small-0");
+        Manifest manifest = new TreeHasher(ALGORITHM.SHA256, 2).hash(small);
+        assertEquals(manifest.entries().size(), 1);
+        assertEquals(manifest.entries().get("small-0"), GUIDFactory.generateGUID(ALGORITHM.SHA256, small.toFile()));
+
+        Path large = root.resolve("large");
+        manifest = new TreeHasher(ALGORITHM.SHA256, 2).hash(large);
+        assertEquals(manifest.entries().size(), 1);
+        assertEquals(manifest.entries().get("large"), GUIDFactory.generateGUID(ALGORITHM.SHA256, large.toFile()));
+    }
+
+    @Test
+    public void manifestGUIDTest() throws Exception {
+
+        Manifest manifest = new TreeHasher(ALGORITHM.SHA1).hash(root);
+
+        Path written = Files.createTempFile("manifest", ".txt");
+        try {
+            manifest.write(written);
+            IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA1, written.toFile());
+            assertEquals(manifest.guid(), guid);
+        } finally {
+            Files.delete(written);
+        }
+
+        assertEquals(new TreeHasher(ALGORITHM.SHA1, 1).hash(root).guid(), manifest.guid());
+    }
+
+    @Test
+    public void progressTest() throws Exception {
+
+        AtomicLong files = new AtomicLong();
+        TreeHasher hasher = new TreeHasher(ALGORITHM.MD5);
+        hasher.setProgressListener((hashed, bytes, throughput) -> {
+            files.set(hashed);
+            assertTrue(throughput >= 0);
+        });
+
+        hasher.hash(root);
+        assertEquals(files.get(), 301);
+    }
+}
@@ -0,0 +1,122 @@
+package uk.ac.standrews.cs.guid.io;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.exceptions.GUIDMismatchException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class VerifyingInputStreamTest {
+
+    @Test
+    public void matchingContentTest() throws Exception {
+
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA1, "hello world");
+        VerifyingInputStream stream = new VerifyingInputStream(new ByteArrayInputStream("hello world".getBytes()), guid);
+
+        assertEquals(readAll(stream), "hello world".getBytes());
+        assertTrue(stream.isVerified());
+    }
+
+    @Test (expectedExceptions = GUIDMismatchException.class)
+    public void mismatchingContentTest() throws Exception {
+
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello world");
+        readAll(new VerifyingInputStream(new ByteArrayInputStream("hello World".getBytes()), guid));
+    }
+
+    @Test
+    public void skipTest() throws Exception {
+
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello world");
+        VerifyingInputStream stream = new VerifyingInputStream(new ByteArrayInputStream("hello world".getBytes()), guid);
+
+        assertEquals(stream.skip(6), 6);
+        assertEquals(readAll(stream), "world".getBytes());
+        assertTrue(stream.isVerified());
+    }
+
+    @Test
+    public void channelTest() throws Exception {
+
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello world");
+        VerifyingChannel channel = new VerifyingChannel(Channels.newChannel(new ByteArrayInputStream("hello world".getBytes())), guid);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+        while (channel.read(buffer) != -1) {
+            buffer.clear();
+        }
+        assertTrue(channel.isVerified());
+    }
+
+    @Test
+    public void chunkedTest() throws Exception {
+
+        byte[] content = new byte[256 * 1024];
+        new Random(7).nextBytes(content);
+        Recipe recipe = new ContentDefinedChunker(ALGORITHM.SHA256).chunk(new ByteArrayInputStream(content));
+
+        VerifyingInputStream stream = new VerifyingInputStream(new ByteArrayInputStream(content), recipe);
+        assertEquals(readAll(stream), content);
+        assertTrue(stream.isVerified());
+    }
+
+    @Test
+    public void chunkedFailFastTest() throws Exception {
+
+        byte[] content = new byte[256 * 1024];
+        new Random(7).nextBytes(content);
+        Recipe recipe = new ContentDefinedChunker(ALGORITHM.SHA256).chunk(new ByteArrayInputStream(content));
+
+        // Corrupt the first chunk: the mismatch is reported as soon as that chunk has been read
+        content[0] ^= 1;
+        InputStream stream = new VerifyingInputStream(new ByteArrayInputStream(content), recipe);
+        byte[] buffer = new byte[1024];
+        long read = 0;
+        try {
+            int n;
+            while ((n = stream.read(buffer)) != -1) {
+                read += n;
+            }
+            fail();
+        } catch (GUIDMismatchException e) {
+            assertEquals(e.expected(), recipe.chunks().get(0));
+            assertTrue(read < recipe.length(0));
+        }
+    }
+
+    @Test (expectedExceptions = GUIDMismatchException.class)
+    public void chunkedTruncatedTest() throws Exception {
+
+        byte[] content = new byte[64 * 1024];
+        new Random(7).nextBytes(content);
+        Recipe recipe = new ContentDefinedChunker(ALGORITHM.SHA256).chunk(new ByteArrayInputStream(content));
+
+        byte[] truncated = new byte[recipe.length(0)];
+        System.arraycopy(content, 0, truncated, 0, truncated.length);
+        readAll(new VerifyingInputStream(new ByteArrayInputStream(truncated), recipe));
+    }
+
+    private static byte[] readAll(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
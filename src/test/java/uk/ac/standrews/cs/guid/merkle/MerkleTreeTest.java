@@ -0,0 +1,141 @@
+package uk.ac.standrews.cs.guid.merkle;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class MerkleTreeTest {
+
+    @Test
+    public void emptyTreeTest() throws Exception {
+
+        MerkleTree tree = new MerkleTree(ALGORITHM.SHA256);
+        assertEquals(tree.size(), 0);
+        assertEquals(tree.root(), GUIDFactory.recreateGUID(ALGORITHM.SHA256.toString() + "_16_" +
+                "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855"));
+        assertNull(tree.proof(guid(0)));
+    }
+
+    @Test
+    public void orderIndependenceTest() throws Exception {
+
+        List<IGUID> guids = guids(1000);
+        MerkleTree bulk = MerkleTree.build(ALGORITHM.SHA256, guids);
+
+        Collections.shuffle(guids, new Random(3));
+        MerkleTree incremental = new MerkleTree(ALGORITHM.SHA256);
+        for(IGUID guid:guids) {
+            assertTrue(incremental.insert(guid));
+        }
+
+        assertEquals(incremental.size(), 1000);
+        assertEquals(incremental.root(), bulk.root());
+        assertFalse(incremental.insert(guids.get(0)));
+    }
+
+    @Test
+    public void parallelBuildTest() throws Exception {
+
+        List<IGUID> guids = guids(20000);
+        guids.add(guids.get(0));
+
+        MerkleTree bulk = MerkleTree.build(ALGORITHM.SHA1, guids);
+        MerkleTree incremental = new MerkleTree(ALGORITHM.SHA1);
+        for(IGUID guid:guids) {
+            incremental.insert(guid);
+        }
+
+        assertEquals(bulk.size(), 20000);
+        assertEquals(bulk.root(), incremental.root());
+    }
+
+    @Test
+    public void deleteAndUpdateTest() throws Exception {
+
+        List<IGUID> guids = guids(100);
+        MerkleTree tree = MerkleTree.build(ALGORITHM.SHA256, guids);
+        IGUID before = tree.root();
+
+        assertTrue(tree.insert(guid(1000)));
+        assertNotEquals(tree.root(), before);
+        assertTrue(tree.delete(guid(1000)));
+        assertEquals(tree.root(), before);
+        assertFalse(tree.delete(guid(1000)));
+
+        assertTrue(tree.update(guids.get(5), guid(1001)));
+        assertFalse(tree.contains(guids.get(5)));
+        assertTrue(tree.contains(guid(1001)));
+
+        guids.set(5, guid(1001));
+        assertEquals(tree.root(), MerkleTree.build(ALGORITHM.SHA256, guids).root());
+
+        for(IGUID guid:guids) {
+            assertTrue(tree.delete(guid));
+        }
+        assertEquals(tree.size(), 0);
+        assertEquals(tree.root(), new MerkleTree(ALGORITHM.SHA256).root());
+    }
+
+    @Test
+    public void proofTest() throws Exception {
+
+        List<IGUID> guids = guids(500);
+        MerkleTree tree = MerkleTree.build(ALGORITHM.SHA256, guids);
+        IGUID root = tree.root();
+
+        for(IGUID guid:guids) {
+            MerkleProof proof = tree.proof(guid);
+            assertTrue(proof.verify(root));
+            assertTrue(proof.depth() < 40);
+        }
+
+        assertNull(tree.proof(guid(1000)));
+
+        MerkleProof proof = tree.proof(guids.get(0));
+        tree.insert(guid(1000));
+        assertFalse(proof.verify(tree.root()));
+    }
+
+    @Test
+    public void forgedProofTest() throws Exception {
+
+        MerkleTree tree = MerkleTree.build(ALGORITHM.SHA256, guids(50));
+        MerkleProof proof = tree.proof(guid(0));
+
+        int[] bits = new int[proof.depth()];
+        byte[][] siblings = new byte[proof.depth()][];
+        for(int i = 0; i < bits.length; i++) {
+            bits[i] = proof.bit(i);
+            siblings[i] = proof.sibling(i);
+        }
+
+        assertTrue(new MerkleProof(ALGORITHM.SHA256, guid(0), bits, siblings).verify(tree.root()));
+        assertFalse(new MerkleProof(ALGORITHM.SHA256, guid(1000), bits, siblings).verify(tree.root()));
+
+        siblings[0][0] ^= 1;
+        assertFalse(new MerkleProof(ALGORITHM.SHA256, guid(0), bits, siblings).verify(tree.root()));
+    }
+
+    private static List<IGUID> guids(int count) throws Exception {
+        List<IGUID> guids = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            guids.add(guid(i));
+        }
+        return guids;
+    }
+
+    private static IGUID guid(int i) throws Exception {
+        return GUIDFactory.generateGUID(ALGORITHM.SHA256, "member " + i);
+    }
+}
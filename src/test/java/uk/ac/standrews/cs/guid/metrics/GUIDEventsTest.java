@@ -0,0 +1,105 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDEventsTest {
+
+    private static final String GENERATE = "uk.ac.standrews.cs.guid.GenerateGUID";
+    private static final String FILE_HASH = "uk.ac.standrews.cs.guid.FileHash";
+    private static final String ENTROPY_WAIT = "uk.ac.standrews.cs.guid.EntropyWait";
+    private static final String FAILURE = "uk.ac.standrews.cs.guid.RecreateGUIDFailure";
+
+    @Test
+    public void settingsTest() throws Exception {
+
+        Configuration configuration = GUIDEvents.configuration();
+        assertEquals(configuration.getLabel(), "GUID");
+        assertEquals(configuration.getSettings().get(GENERATE + "#threshold"), "1 ms");
+        assertEquals(configuration.getSettings().get(FILE_HASH + "#threshold"), "10 ms");
+        assertEquals(configuration.getSettings().get(FAILURE + "#enabled"), "true");
+    }
+
+    @Test
+    public void eventsTest() throws Exception {
+
+        File file = File.createTempFile("events", ".bin");
+        Path dump = Files.createTempFile("events", ".jfr");
+        try {
+            Files.write(file.toPath(), new byte[100000]);
+
+            List<RecordedEvent> events;
+            try (Recording recording = new Recording(GUIDEvents.configuration())) {
+                // Record every call, however quick
+                recording.enable(GENERATE).withThreshold(Duration.ZERO);
+                recording.enable(FILE_HASH).withThreshold(Duration.ZERO);
+                recording.enable(ENTROPY_WAIT).withThreshold(Duration.ZERO);
+                recording.start();
+
+                GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello");
+                GUIDFactory.generateGUID(ALGORITHM.MD5, new ByteArrayInputStream(new byte[1234]));
+                GUIDFactory.generateGUID(ALGORITHM.SHA1, file);
+                GUIDFactory.generateGUIDs(EnumSet.of(ALGORITHM.SHA1, ALGORITHM.SHA256), file);
+                GUIDFactory.generateRandomGUID();
+                try {
+                    GUIDFactory.recreateGUID("SHA1_16_nonsense");
+                } catch (GUIDGenerationException e) {
+                    // Expected
+                }
+
+                recording.stop();
+                recording.dump(dump);
+            }
+            events = RecordingFile.readAllEvents(dump);
+
+            List<RecordedEvent> generated = named(events, GENERATE);
+            assertTrue(generated.stream().anyMatch(e -> e.getString("algorithm").equals("SHA256") && e.getString("input").equals("CHARS") && e.getLong("bytes") == 5));
+            assertTrue(generated.stream().anyMatch(e -> e.getString("algorithm").equals("MD5") && e.getString("input").equals("STREAM") && e.getLong("bytes") == 1234));
+            assertTrue(generated.stream().anyMatch(e -> e.getString("algorithm").equals("SHA1,SHA256") && e.getLong("bytes") == 100000));
+
+            List<RecordedEvent> files = named(events, FILE_HASH);
+            assertEquals(files.size(), 2);
+            for(RecordedEvent event:files) {
+                assertEquals(event.getString("path"), file.getPath());
+                assertEquals(event.getLong("bytes"), 100000);
+                assertTrue(event.getLong("throughput") > 0);
+            }
+            assertEquals(files.get(0).getString("algorithms"), "SHA1");
+
+            assertEquals(named(events, ENTROPY_WAIT).size(), 1);
+
+            List<RecordedEvent> failures = named(events, FAILURE);
+            assertEquals(failures.size(), 1);
+            assertEquals(failures.get(0).getString("multihash"), "SHA1_16_nonsense");
+            assertTrue(failures.get(0).getStackTrace() != null);
+        } finally {
+            file.delete();
+            Files.deleteIfExists(dump);
+        }
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+}
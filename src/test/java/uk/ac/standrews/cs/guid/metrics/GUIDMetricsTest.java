@@ -0,0 +1,226 @@
+package uk.ac.standrews.cs.guid.metrics;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.exceptions.GUIDGenerationException;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class GUIDMetricsTest {
+
+    @BeforeMethod
+    public void setUp() {
+        GUIDMetrics.reset();
+        GUIDMetrics.setEnabled(true);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        GUIDMetrics.setEnabled(false);
+        GUIDMetrics.reset();
+    }
+
+    @Test
+    public void inputsTest() throws Exception {
+
+        byte[] bytes = new byte[1000];
+        GUIDFactory.generateGUID(ALGORITHM.SHA256, bytes);
+        GUIDFactory.generateGUID(ALGORITHM.SHA256, bytes);
+        GUIDFactory.generateGUID(ALGORITHM.SHA256, "h\u00e9llo");
+        GUIDFactory.generateGUID(ALGORITHM.SHA1, new ByteArrayInputStream(bytes));
+        GUIDFactory.generateGUID(ALGORITHM.BLAKE3, ByteBuffer.wrap(bytes));
+        GUIDFactory.generateGUID(ALGORITHM.MD5, Channels.newChannel(new ByteArrayInputStream(bytes)));
+        GUIDFactory.generateGUIDs(ALGORITHM.SHA256, new byte[][] { bytes, new byte[10] });
+        GUIDFactory.generateGUIDs(EnumSet.of(ALGORITHM.SHA1, ALGORITHM.MD5), new ByteArrayInputStream(bytes));
+
+        assertSeries(ALGORITHM.SHA256, InputType.BYTES, 2, 2000);
+        assertSeries(ALGORITHM.SHA256, InputType.CHARS, 1, 6);
+        assertSeries(ALGORITHM.SHA1, InputType.STREAM, 2, 2000);
+        assertSeries(ALGORITHM.BLAKE3, InputType.BUFFER, 1, 1000);
+        assertSeries(ALGORITHM.MD5, InputType.CHANNEL, 1, 1000);
+        assertSeries(ALGORITHM.MD5, InputType.STREAM, 1, 1000);
+        assertSeries(ALGORITHM.SHA256, InputType.BATCH, 1, 1010);
+        assertEquals(GUIDMetrics.snapshot().size(), 7);
+
+        SeriesSnapshot snapshot = GUIDMetrics.snapshot(ALGORITHM.SHA256, InputType.BYTES);
+        assertTrue(snapshot.getMaxNanos() > 0);
+        assertTrue(snapshot.getMedianNanos() <= snapshot.getP99Nanos());
+        assertTrue(snapshot.getP99Nanos() <= snapshot.getMaxNanos());
+    }
+
+    @Test
+    public void disabledTest() throws Exception {
+
+        GUIDMetrics.setEnabled(false);
+        List<ALGORITHM> heard = new ArrayList<>();
+        MetricsListener listener = new MetricsListener() {
+            @Override
+            public void onHash(ALGORITHM algorithm, InputType input, long bytes, long nanos) {
+                heard.add(algorithm);
+            }
+        };
+        GUIDMetrics.addListener(listener);
+        try {
+            GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello");
+            try {
+                GUIDFactory.recreateGUID("nonsense");
+            } catch (GUIDGenerationException e) {
+                // Expected
+            }
+
+            assertTrue(GUIDMetrics.snapshot().isEmpty());
+            assertEquals(GUIDMetrics.parseFailures(), 0);
+            assertTrue(heard.isEmpty());
+        } finally {
+            GUIDMetrics.removeListener(listener);
+        }
+    }
+
+    @Test
+    public void listenerTest() throws Exception {
+
+        List<String> events = new ArrayList<>();
+        MetricsListener listener = new MetricsListener() {
+            @Override
+            public void onHash(ALGORITHM algorithm, InputType input, long bytes, long nanos) {
+                events.add(algorithm + " " + input + " " + bytes);
+            }
+
+            @Override
+            public void onParseFailure(String multihash) {
+                events.add("failure " + multihash);
+            }
+        };
+        GUIDMetrics.addListener(listener);
+        try {
+            GUIDFactory.generateGUID(ALGORITHM.SHA1, "hello".getBytes());
+            GUIDFactory.recreateGUID(GUIDFactory.generateGUID(ALGORITHM.SHA1, "hello".getBytes()).toMultiHash());
+            for(String invalid:new String[] { "nonsense", "SHA1_16_zz", "UNKNOWN_16_00" }) {
+                try {
+                    GUIDFactory.recreateGUID(invalid);
+                    fail();
+                } catch (GUIDGenerationException e) {
+                    // Expected
+                }
+            }
+        } finally {
+            GUIDMetrics.removeListener(listener);
+        }
+
+        assertEquals(events.get(0), "SHA1 BYTES 5");
+        assertEquals(events.subList(2, 5), List.of("failure nonsense", "failure SHA1_16_zz", "failure UNKNOWN_16_00"));
+        assertEquals(GUIDMetrics.parseFailures(), 3);
+    }
+
+    @Test
+    public void threadsTest() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for(int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(() -> GUIDFactory.generateGUID(ALGORITHM.SHA256, new byte[64])));
+            }
+            for(Future<?> future:futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // The counts of each thread are merged
+        SeriesSnapshot snapshot = GUIDMetrics.snapshot(ALGORITHM.SHA256, InputType.BYTES);
+        assertEquals(snapshot.getCalls(), 1000);
+        assertEquals(snapshot.latency().count(), 1000);
+    }
+
+    @Test
+    public void mbeanTest() throws Exception {
+
+        ObjectName name = GUIDMetrics.registerMBean();
+        assertEquals(GUIDMetrics.registerMBean(), name);
+
+        GUIDFactory.generateGUID(ALGORITHM.SHA256, new byte[100]);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(server.getAttribute(name, "Enabled"), true);
+        assertEquals(server.getAttribute(name, "Calls"), 1L);
+        assertEquals(server.getAttribute(name, "Bytes"), 100L);
+
+        CompositeData[] series = (CompositeData[]) server.getAttribute(name, "Series");
+        assertEquals(series.length, 1);
+        assertEquals(series[0].get("algorithm"), "SHA256");
+        assertEquals(series[0].get("input"), "BYTES");
+        assertEquals(series[0].get("calls"), 1L);
+
+        server.invoke(name, "reset", null, null);
+        assertEquals(server.getAttribute(name, "Calls"), 0L);
+    }
+
+    @Test
+    public void histogramTest() {
+
+        // Every value is within 12.5% of the highest value of its bucket
+        for(long value = 0; value < 1_000_000_000_000L; value = value * 3 / 2 + 1) {
+            long highest = LatencyHistogram.highest(LatencyHistogram.index(value));
+            assertTrue(highest >= value && highest - value <= value / 8, "value " + value);
+        }
+        assertEquals(LatencyHistogram.highest(LatencyHistogram.BUCKETS - 1), Long.MAX_VALUE);
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(snapshot.count(), 100);
+        assertEquals(snapshot.valueAtPercentile(50), 50_000, 50_000 / 8);
+        assertEquals(snapshot.valueAtPercentile(99), 99_000, 99_000 / 8);
+        assertEquals(snapshot.max(), 100_000, 100_000 / 8);
+        assertEquals(snapshot.mean(), 50_500, 50_500 / 8);
+    }
+
+    // Short-lived threads must not each leave counts behind
+    @Test
+    public void histogramThreadsTest() throws Exception {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for(int i = 0; i < 500; i++) {
+            Thread thread = new Thread(() -> histogram.record(1000));
+            thread.start();
+            thread.join();
+        }
+
+        assertEquals(histogram.snapshot().count(), 500);
+        assertTrue(histogram.allocatedStripes() <= LatencyHistogram.STRIPES);
+
+        histogram.reset();
+        assertEquals(histogram.snapshot().count(), 0);
+    }
+
+    private static void assertSeries(ALGORITHM algorithm, InputType input, long calls, long bytes) {
+        SeriesSnapshot snapshot = GUIDMetrics.snapshot(algorithm, input);
+        assertEquals(snapshot.getCalls(), calls, algorithm + " " + input);
+        assertEquals(snapshot.getBytes(), bytes, algorithm + " " + input);
+        assertEquals(snapshot.latency().count(), calls, algorithm + " " + input);
+    }
+}
@@ -0,0 +1,117 @@
+package uk.ac.standrews.cs.guid.sort;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class RadixSortTest {
+
+    @Test
+    public void comparatorTest() throws Exception {
+
+        IGUID sha1 = GUIDFactory.generateGUID(ALGORITHM.SHA1, "a");
+        IGUID sha256 = GUIDFactory.generateGUID(ALGORITHM.SHA256, "a");
+        IGUID low = GUIDFactory.recreateGUID("SHA256_16_00" + repeat("ff", 31));
+        IGUID high = GUIDFactory.recreateGUID("SHA256_16_ff" + repeat("00", 31));
+
+        // Algorithms are ordered by name
+        assertTrue(GUIDComparator.INSTANCE.compare(sha1, sha256) < 0);
+        assertTrue(GUIDComparator.INSTANCE.compare(sha256, sha1) > 0);
+
+        // Bytes are unsigned
+        assertTrue(GUIDComparator.INSTANCE.compare(low, high) < 0);
+        assertEquals(Integer.signum(GUIDComparator.INSTANCE.compare(low, high)), low.compareTo(high));
+        assertEquals(GUIDComparator.INSTANCE.compare(sha256, GUIDFactory.generateGUID(ALGORITHM.SHA256, "a")), 0);
+
+        // Digests of different lengths compare by value, not lexicographically
+        IGUID one = GUIDFactory.recreateGUID("SHA256_16_01");
+        IGUID two = GUIDFactory.recreateGUID("SHA256_16_0002");
+        assertTrue(GUIDComparator.INSTANCE.compare(one, two) < 0);
+        assertTrue(GUIDComparator.INSTANCE.compare(two, one) > 0);
+        assertTrue(GUIDComparator.INSTANCE.compare(GUIDFactory.recreateGUID("SHA256_16_0100"), one) > 0);
+        assertEquals(GUIDComparator.INSTANCE.compare(GUIDFactory.recreateGUID("SHA256_16_000001"), one), 0);
+        assertEquals(Integer.signum(GUIDComparator.INSTANCE.compare(one, two)), one.bigIntegerRepresentation().compareTo(two.bigIntegerRepresentation()));
+    }
+
+    @Test
+    public void sortArrayTest() throws Exception {
+
+        IGUID[] guids = new IGUID[50000];
+        for(int i = 0; i < guids.length; i++) {
+            guids[i] = GUIDFactory.generateGUID(i % 3 == 0 ? ALGORITHM.SHA1 : ALGORITHM.SHA256, String.valueOf(i % 40000));
+        }
+
+        IGUID[] expected = guids.clone();
+        Arrays.sort(expected, GUIDComparator.INSTANCE);
+
+        List<IGUID> shuffled = Arrays.asList(guids);
+        Collections.shuffle(shuffled, new Random(11));
+        RadixSort.sort(guids);
+
+        assertEquals(guids, expected);
+    }
+
+    @Test
+    public void sortBufferTest() throws Exception {
+
+        GUIDBuffer buffer = new GUIDBuffer(ALGORITHM.SHA256, 40000);
+        IGUID[] expected = new IGUID[40000];
+        for(int i = 0; i < expected.length; i++) {
+            expected[i] = GUIDFactory.generateGUID(ALGORITHM.SHA256, String.valueOf(i));
+            buffer.add(expected[i]);
+        }
+
+        Arrays.sort(expected, GUIDComparator.INSTANCE);
+        buffer.sort();
+
+        assertEquals(buffer.size(), expected.length);
+        for(int i = 0; i < expected.length; i++) {
+            assertEquals(buffer.get(i), expected[i]);
+        }
+    }
+
+    @Test
+    public void smallInputsTest() throws Exception {
+
+        RadixSort.sort(new IGUID[0]);
+
+        IGUID[] one = { GUIDFactory.generateGUID(ALGORITHM.MD5, "a") };
+        RadixSort.sort(one);
+        assertEquals(one[0], GUIDFactory.generateGUID(ALGORITHM.MD5, "a"));
+
+        GUIDBuffer buffer = new GUIDBuffer(ALGORITHM.SHA1, 3);
+        buffer.add(GUIDFactory.generateGUID(ALGORITHM.SHA1, "c"));
+        buffer.add(GUIDFactory.generateGUID(ALGORITHM.SHA1, "a"));
+        buffer.add(GUIDFactory.generateGUID(ALGORITHM.SHA1, "b"));
+        buffer.sort();
+        assertTrue(GUIDComparator.INSTANCE.compare(buffer.get(0), buffer.get(1)) < 0);
+        assertTrue(GUIDComparator.INSTANCE.compare(buffer.get(1), buffer.get(2)) < 0);
+    }
+
+    @Test (expectedExceptions = IllegalStateException.class)
+    public void bufferFullTest() throws Exception {
+
+        GUIDBuffer buffer = new GUIDBuffer(ALGORITHM.SHA1, 1);
+        buffer.add(GUIDFactory.generateGUID(ALGORITHM.SHA1, "a"));
+        buffer.add(GUIDFactory.generateGUID(ALGORITHM.SHA1, "b"));
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package uk.ac.standrews.cs.guid.store;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.impl.keys.KeyImpl;
+
+import java.nio.ByteBuffer;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class ContentCacheTest {
+
+    @Test
+    public void getPutTest() throws Exception {
+
+        ContentCache cache = new ContentCache(1024 * 1024);
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello");
+
+        assertNull(cache.get(guid));
+        assertTrue(cache.put(guid, "hello".getBytes()));
+
+        ByteBuffer content = cache.get(guid);
+        assertEquals(content.remaining(), 5);
+        assertTrue(content.isReadOnly());
+
+        assertEquals(cache.hits(), 1);
+        assertEquals(cache.misses(), 1);
+        assertEquals(cache.hitRatio(), 0.5);
+        assertEquals(cache.weightedSize(), 5);
+    }
+
+    @Test
+    public void offHeapTest() throws Exception {
+
+        ContentCache cache = new ContentCache(1024 * 1024, 4, true);
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello");
+        cache.put(guid, "hello".getBytes());
+
+        ByteBuffer content = cache.get(guid);
+        assertTrue(content.isDirect());
+
+        byte[] bytes = new byte[content.remaining()];
+        content.get(bytes);
+        assertEquals(bytes, "hello".getBytes());
+    }
+
+    @Test
+    public void boundedTest() throws Exception {
+
+        long maxBytes = 64 * 1024;
+        ContentCache cache = new ContentCache(maxBytes, 4, false);
+
+        for(int i = 0; i < 1000; i++) {
+            cache.put(guid(i), new byte[1000]);
+            assertTrue(cache.weightedSize() <= maxBytes);
+        }
+
+        assertTrue(cache.evictions() > 0);
+    }
+
+    @Test
+    public void tooLargeTest() throws Exception {
+
+        ContentCache cache = new ContentCache(1024, 1, false);
+        assertFalse(cache.put(guid(0), new byte[2048]));
+        assertEquals(cache.weightedSize(), 0);
+    }
+
+    @Test
+    public void scanResistanceTest() throws Exception {
+
+        ContentCache cache = new ContentCache(100 * 1024, 1, false);
+
+        // A small set of popular entries
+        for(int round = 0; round < 5; round++) {
+            for(int i = 0; i < 50; i++) {
+                if (cache.get(guid(i)) == null) {
+                    cache.put(guid(i), new byte[1024]);
+                }
+            }
+        }
+
+        // A scan of entries requested only once, while the popular entries are still being requested
+        for(int i = 1000; i < 3000; i++) {
+            cache.put(guid(i), new byte[1024]);
+            cache.get(guid(i % 50));
+        }
+
+        int retained = 0;
+        for(int i = 0; i < 50; i++) {
+            if (cache.contains(guid(i))) retained++;
+        }
+        assertTrue(retained >= 45, "retained " + retained);
+    }
+
+    // Lookups, insertions and evictions take the hash from the digest bits, never from KeyImpl.hashCode
+    @Test
+    public void digestBitsLookupTest() throws Exception {
+
+        ContentCache cache = new ContentCache(8 * 1024, 2, false);
+        IGUID guid = new UnhashableKey(guid(0));
+        assertNull(cache.get(guid));
+        assertTrue(cache.put(guid, new byte[1000]));
+        assertTrue(cache.contains(guid));
+        assertEquals(cache.get(new UnhashableKey(guid(0))).remaining(), 1000);
+
+        for(int i = 1; i < 100; i++) {
+            cache.put(new UnhashableKey(guid(i)), new byte[1000]);
+        }
+        assertTrue(cache.evictions() > 0);
+    }
+
+    private static class UnhashableKey extends KeyImpl {
+
+        UnhashableKey(IGUID guid) {
+            super(guid.algorithm(), ((KeyImpl) guid).bytes());
+        }
+
+        @Override
+        public int hashCode() {
+            throw new AssertionError("KeyImpl.hashCode used on the lookup path");
+        }
+    }
+
+    private static IGUID guid(int i) throws Exception {
+        return GUIDFactory.generateGUID(ALGORITHM.SHA256, String.valueOf(i));
+    }
+}
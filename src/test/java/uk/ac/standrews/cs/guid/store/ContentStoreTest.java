@@ -0,0 +1,163 @@
+package uk.ac.standrews.cs.guid.store;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+import uk.ac.standrews.cs.guid.metrics.GUIDMetrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class ContentStoreTest {
+
+    private Path root;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("guid-store");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void putAndGetTest() throws Exception {
+
+        ContentStore store = new ContentStore(root);
+        IGUID guid = store.put(new ByteArrayInputStream("hello".getBytes()));
+
+        assertEquals(guid, GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello"));
+        assertTrue(store.contains(guid));
+        assertEquals(store.size(guid), 5);
+        assertTrue(Files.exists(root.resolve("SHA256").resolve(guid.toString().substring(0, 2)).resolve(guid.toString().substring(2))));
+
+        try (InputStream stream = store.get(guid)) {
+            assertEquals(readAll(stream), "hello".getBytes());
+        }
+
+        ByteBuffer mapped = store.map(guid);
+        assertEquals(mapped.remaining(), 5);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(store.transferTo(guid, Channels.newChannel(out)), 5);
+        assertEquals(out.toByteArray(), "hello".getBytes());
+    }
+
+    @Test
+    public void deduplicationTest() throws Exception {
+
+        ContentStore store = new ContentStore(root, ALGORITHM.SHA1);
+        IGUID first = store.put("abc".getBytes());
+        IGUID second = store.put(new ByteArrayInputStream("abc".getBytes()));
+
+        assertEquals(second, first);
+        assertEquals(store.count(), 1);
+        try (Stream<Path> files = Files.list(root.resolve("tmp"))) {
+            assertEquals(files.count(), 0);
+        }
+    }
+
+    @Test
+    public void concurrentWritersTest() throws Exception {
+
+        byte[] content = new byte[256 * 1024];
+        new Random(5).nextBytes(content);
+
+        ContentStore store = new ContentStore(root);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<IGUID>> futures = new ArrayList<>();
+            for(int i = 0; i < 16; i++) {
+                boolean stream = i % 2 == 0;
+                futures.add(executor.submit(() -> stream ? store.put(new ByteArrayInputStream(content)) : store.put(content)));
+            }
+
+            for(Future<IGUID> future:futures) {
+                assertEquals(future.get(), futures.get(0).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(store.count(), 1);
+        assertEquals(store.size(store.put(content)), content.length);
+    }
+
+    @Test
+    public void reopenTest() throws Exception {
+
+        IGUID guid = new ContentStore(root).put("hello".getBytes());
+
+        ContentStore store = new ContentStore(root);
+        assertTrue(store.contains(guid));
+
+        assertTrue(store.delete(guid));
+        assertFalse(store.contains(guid));
+    }
+
+    // Files that are not objects are ignored, and are not reported as GUID parse failures
+    @Test
+    public void strayFilesTest() throws Exception {
+
+        IGUID guid = new ContentStore(root).put("hello".getBytes());
+        Path objects = root.resolve("SHA256");
+        Files.write(objects.resolve("README.txt"), new byte[0]);
+        Files.write(objects.resolve(guid.toString().substring(0, 2)).resolve(".DS_Store"), new byte[0]);
+        Files.createDirectories(root.resolve("notes"));
+        Files.write(root.resolve("notes").resolve("ab"), new byte[0]);
+
+        GUIDMetrics.reset();
+        GUIDMetrics.setEnabled(true);
+        try {
+            ContentStore store = new ContentStore(root);
+            assertTrue(store.contains(guid));
+            assertEquals(store.count(), 1);
+            assertEquals(GUIDMetrics.parseFailures(), 0);
+        } finally {
+            GUIDMetrics.setEnabled(false);
+            GUIDMetrics.reset();
+        }
+    }
+
+    @Test (expectedExceptions = NoSuchFileException.class)
+    public void missingObjectTest() throws Exception {
+        new ContentStore(root).get(GUIDFactory.generateGUID(ALGORITHM.SHA256, "missing"));
+    }
+
+    private static byte[] readAll(InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
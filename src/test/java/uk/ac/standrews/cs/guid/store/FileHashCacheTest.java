@@ -0,0 +1,156 @@
+package uk.ac.standrews.cs.guid.store;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class FileHashCacheTest {
+
+    private Path directory;
+    private Path journal;
+    private Path file;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("guid-cache");
+        journal = directory.resolve("cache");
+        file = directory.resolve("file");
+        write(file, "hello", 60);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void hitTest() throws Exception {
+
+        try (FileHashCache cache = new FileHashCache(journal)) {
+            IGUID first = cache.generateGUID(ALGORITHM.SHA256, file);
+            IGUID second = cache.generateGUID(ALGORITHM.SHA256, file);
+
+            assertEquals(first, GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello"));
+            assertEquals(second, first);
+            assertEquals(cache.misses(), 1);
+            assertEquals(cache.hits(), 1);
+        }
+    }
+
+    @Test
+    public void algorithmsAreCachedSeparatelyTest() throws Exception {
+
+        try (FileHashCache cache = new FileHashCache(journal)) {
+            cache.generateGUID(ALGORITHM.SHA256, file);
+            IGUID guid = cache.generateGUID(ALGORITHM.SHA1, file);
+
+            assertEquals(guid, GUIDFactory.generateGUID(ALGORITHM.SHA1, "hello"));
+            assertEquals(cache.misses(), 2);
+            assertEquals(cache.size(), 2);
+        }
+    }
+
+    @Test
+    public void changedFileTest() throws Exception {
+
+        try (FileHashCache cache = new FileHashCache(journal)) {
+            cache.generateGUID(ALGORITHM.SHA256, file);
+
+            write(file, "world", 30);
+            IGUID guid = cache.generateGUID(ALGORITHM.SHA256, file);
+
+            assertEquals(guid, GUIDFactory.generateGUID(ALGORITHM.SHA256, "world"));
+            assertEquals(cache.misses(), 2);
+        }
+    }
+
+    @Test
+    public void racyFileTest() throws Exception {
+
+        write(file, "hello", 0);
+        try (FileHashCache cache = new FileHashCache(journal)) {
+            cache.generateGUID(ALGORITHM.SHA256, file);
+            cache.generateGUID(ALGORITHM.SHA256, file);
+
+            assertEquals(cache.hits(), 0);
+            assertEquals(cache.misses(), 2);
+        }
+    }
+
+    @Test
+    public void persistenceTest() throws Exception {
+
+        try (FileHashCache cache = new FileHashCache(journal)) {
+            cache.generateGUID(ALGORITHM.SHA256, file);
+        }
+
+        // A torn record at the end of the journal is discarded
+        Files.write(journal, new byte[]{0, 0, 1, 0, 42}, StandardOpenOption.APPEND);
+
+        try (FileHashCache cache = new FileHashCache(journal)) {
+            assertEquals(cache.size(), 1);
+            assertEquals(cache.generateGUID(ALGORITHM.SHA256, file), GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello"));
+            assertEquals(cache.hits(), 1);
+
+            cache.compact();
+        }
+
+        try (FileHashCache cache = new FileHashCache(journal)) {
+            cache.generateGUID(ALGORITHM.SHA256, file);
+            assertEquals(cache.hits(), 1);
+        }
+    }
+
+    // A journal written by a build with more algorithms must not lose the records after an unknown one
+    @Test
+    public void unknownAlgorithmTest() throws Exception {
+
+        try (FileHashCache cache = new FileHashCache(journal)) {
+            cache.generateGUID(ALGORITHM.SHA1, file);
+            cache.generateGUID(ALGORITHM.SHA256, file);
+        }
+
+        // Rename the algorithm of the first record, and sign it again
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(journal));
+        int length = bytes.getInt(12);
+        bytes.put(18, (byte) 'X');
+        CRC32 crc = new CRC32();
+        crc.update(bytes.array(), 16, length);
+        bytes.putLong(16 + length, crc.getValue());
+        Files.write(journal, bytes.array());
+
+        try (FileHashCache cache = new FileHashCache(journal)) {
+            assertEquals(cache.size(), 1);
+            assertEquals(cache.generateGUID(ALGORITHM.SHA256, file), GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello"));
+            assertEquals(cache.hits(), 1);
+        }
+        assertEquals(Files.size(journal), bytes.capacity());
+    }
+
+    private static void write(Path path, String content, int secondsAgo) throws IOException {
+        Files.write(path, content.getBytes());
+        long modified = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(secondsAgo);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(modified));
+    }
+}
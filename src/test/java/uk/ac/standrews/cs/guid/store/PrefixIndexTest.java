@@ -0,0 +1,143 @@
+package uk.ac.standrews.cs.guid.store;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.*;
+
+/**
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class PrefixIndexTest {
+
+    @Test
+    public void resolveTest() throws Exception {
+
+        List<IGUID> guids = guids(ALGORITHM.SHA256, 5000);
+        PrefixIndex index = new PrefixIndex();
+        index.addAll(guids);
+        assertEquals(index.size(), 5000);
+        assertFalse(index.add(guids.get(0)));
+
+        for(IGUID guid:guids) {
+            int length = index.uniquePrefixLength(guid);
+            String hex = guid.toString();
+
+            PrefixIndex.Match match = index.resolve(hex.substring(0, length));
+            assertTrue(match.isUnique());
+            assertEquals(match.guid(), guid);
+            assertTrue(index.resolve(hex.substring(0, length - 1)).count() > 1 || length == 1);
+
+            assertEquals(index.resolve(hex.toUpperCase()).guid(), guid);
+            assertEquals(index.resolve(guid.toMultiHash()).guid(), guid);
+        }
+    }
+
+    @Test
+    public void shortStringTest() throws Exception {
+
+        PrefixIndex index = new PrefixIndex();
+        IGUID guid = GUIDFactory.generateGUID(ALGORITHM.SHA1, "hello");
+        index.add(guid);
+        index.add(GUIDFactory.generateGUID(ALGORITHM.SHA256, "hello"));
+
+        assertEquals(index.resolve(guid.toShortString()).guid(), guid);
+        assertEquals(index.resolve(guid.toShortMultiHash().substring(0, 13)).guid(), guid);
+        assertEquals(index.resolve("").count(), 2);
+        assertTrue(index.resolve("").isAmbiguous());
+        assertNull(index.resolve("").guid());
+    }
+
+    @Test
+    public void notFoundTest() throws Exception {
+
+        PrefixIndex index = new PrefixIndex();
+        index.addAll(guids(ALGORITHM.SHA256, 100));
+
+        IGUID missing = GUIDFactory.generateGUID(ALGORITHM.SHA256, "missing");
+        assertFalse(index.contains(missing));
+        assertEquals(index.resolve(missing.toString()).count(), 0);
+        assertEquals(index.resolve("MD5_16_").count(), 0);
+        assertEquals(index.resolve(guids(ALGORITHM.SHA256, 1).get(0).toString() + "0").count(), 0);
+    }
+
+    // recreateGUID accepts digests shorter than the algorithm's, one of which may be a prefix of another
+    @Test
+    public void differentLengthsTest() throws Exception {
+
+        IGUID one = GUIDFactory.recreateGUID("SHA256_16_01");
+        IGUID two = GUIDFactory.recreateGUID("SHA256_16_0102");
+        IGUID three = GUIDFactory.recreateGUID("SHA256_16_010203");
+
+        for(IGUID[] order:new IGUID[][] { { one, two, three }, { three, two, one }, { two, one, three } }) {
+            PrefixIndex index = new PrefixIndex();
+            for(IGUID guid:order) {
+                assertTrue(index.add(guid));
+            }
+            assertFalse(index.add(GUIDFactory.recreateGUID("SHA256_16_0102")));
+            assertEquals(index.size(), 3);
+
+            assertTrue(index.contains(one));
+            assertTrue(index.contains(two));
+            assertTrue(index.contains(three));
+            assertFalse(index.contains(GUIDFactory.recreateGUID("SHA256_16_0101")));
+
+            assertEquals(index.resolve("01").count(), 3);
+            assertEquals(index.resolve("0102").count(), 2);
+            assertEquals(index.resolve("01020").guid(), three);
+            assertEquals(index.resolve("0103").count(), 0);
+            assertEquals(index.uniquePrefixLength(three), 5);
+        }
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void invalidPrefixTest() {
+        new PrefixIndex().resolve("xyz");
+    }
+
+    @Test
+    public void concurrentReadsTest() throws Exception {
+
+        List<IGUID> guids = guids(ALGORITHM.SHA256, 20000);
+        PrefixIndex index = new PrefixIndex();
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get()) {
+                    int size = index.size();
+                    for(int i = 0; i < size; i += 97) {
+                        // Every GUID added before the size was read can be resolved
+                        assertEquals(index.resolve(guids.get(i).toString()).guid(), guids.get(i));
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+
+        reader.start();
+        index.addAll(guids);
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(index.size(), 20000);
+    }
+
+    private static List<IGUID> guids(ALGORITHM algorithm, int count) throws Exception {
+        List<IGUID> guids = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            guids.add(GUIDFactory.generateGUID(algorithm, String.valueOf(i)));
+        }
+        return guids;
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.standrews.cs.guid.sync;
+
+import org.testng.annotations.Test;
+import uk.ac.standrews.cs.guid.ALGORITHM;
+import uk.ac.standrews.cs.guid.GUIDFactory;
+import uk.ac.standrews.cs.guid.IGUID;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.testng.Assert.*;
+
+/**
+ * Reconciles the GUID sets of two simulated nodes, which only exchange the bytes of their estimators and tables.
+ *
+ * @author Simone I. Conte "sic2@st-andrews.ac.uk"
+ */
+public class InvertibleBloomFilterTest {
+
+    private static final ALGORITHM ALGORITHM = uk.ac.standrews.cs.guid.ALGORITHM.SHA256;
+
+    @Test
+    public void reconciliationTest() throws Exception {
+
+        Set<IGUID> common = guids(0, 20000);
+        Set<IGUID> alice = new HashSet<>(common);
+        Set<IGUID> bob = new HashSet<>(common);
+        alice.addAll(guids(100000, 100150));
+        bob.addAll(guids(200000, 200100));
+
+        // Alice sends her estimator to Bob, who estimates the size of the difference
+        byte[] aliceEstimator = StrataEstimator.encode(ALGORITHM, alice).toBytes();
+        long estimate = StrataEstimator.encode(ALGORITHM, bob).estimate(StrataEstimator.fromBytes(ALGORITHM, aliceEstimator));
+        assertTrue(estimate >= 125 && estimate <= 500, "estimate " + estimate);
+
+        // Bob asks Alice for a table of that size, and decodes the difference
+        int cells = InvertibleBloomFilter.cellsFor((int) estimate);
+        byte[] aliceTable = InvertibleBloomFilter.encode(ALGORITHM, cells, alice).toBytes();
+
+        InvertibleBloomFilter bobTable = InvertibleBloomFilter.encode(ALGORITHM, cells, bob);
+        Difference difference = bobTable.subtract(InvertibleBloomFilter.fromBytes(ALGORITHM, aliceTable)).decode();
+
+        assertTrue(difference.isComplete());
+        assertEquals(difference.local(), guids(200000, 200100));
+        assertEquals(difference.remote(), guids(100000, 100150));
+        assertTrue(aliceTable.length < 20000);
+    }
+
+    @Test
+    public void equalSetsTest() throws Exception {
+
+        Set<IGUID> guids = guids(0, 1000);
+        assertEquals(StrataEstimator.encode(ALGORITHM, guids).estimate(StrataEstimator.encode(ALGORITHM, guids)), 0);
+
+        Difference difference = InvertibleBloomFilter.encode(ALGORITHM, 30, guids)
+                .subtract(InvertibleBloomFilter.encode(ALGORITHM, 30, guids))
+                .decode();
+        assertTrue(difference.isComplete());
+        assertEquals(difference.size(), 0);
+    }
+
+    @Test
+    public void tableTooSmallTest() throws Exception {
+
+        InvertibleBloomFilter table = InvertibleBloomFilter.encode(ALGORITHM, 30, guids(0, 1000));
+        Difference difference = table.decode();
+
+        assertFalse(difference.isComplete());
+        assertTrue(difference.size() < 1000);
+    }
+
+    @Test
+    public void addAndRemoveTest() throws Exception {
+
+        InvertibleBloomFilter table = new InvertibleBloomFilter(ALGORITHM, 60);
+        for(IGUID guid:guids(0, 10)) {
+            table.add(guid);
+        }
+        for(IGUID guid:guids(5, 15)) {
+            table.remove(guid);
+        }
+
+        Difference difference = table.decode();
+        assertTrue(difference.isComplete());
+        assertEquals(difference.local(), guids(0, 5));
+        assertEquals(difference.remote(), guids(10, 15));
+    }
+
+    @Test (expectedExceptions = IllegalArgumentException.class)
+    public void mixedAlgorithmsTest() throws Exception {
+        new InvertibleBloomFilter(ALGORITHM, 30).add(GUIDFactory.generateGUID(uk.ac.standrews.cs.guid.ALGORITHM.SHA1, "sha1"));
+    }
+
+    private static Set<IGUID> guids(int from, int to) throws Exception {
+        Set<IGUID> guids = new HashSet<>();
+        for(int i = from; i < to; i++) {
+            guids.add(GUIDFactory.generateGUID(ALGORITHM, String.valueOf(i)));
+        }
+        return guids;
+    }
+}